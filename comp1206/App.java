@@ -6,8 +6,11 @@ import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import uk.ac.soton.comp1206.jfr.FlightRecording;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
+import java.util.Arrays;
+
 /**
  * JavaFX Application class
  */
@@ -33,6 +36,11 @@ public class App extends Application {
      */
     public static void main(String[] args) {
         logger.info("Starting client");
+
+        //--jfr records the whole session with the flight recorder
+        if (Arrays.asList(args).contains("--jfr")) {
+            FlightRecording.start();
+        }
         launch();
     }
 
@@ -1,60 +1,73 @@
 package uk.ac.soton.comp1206;
 
-import javafx.scene.image.Image;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.File;
-import java.net.URI;
-import java.util.Objects;
+import uk.ac.soton.comp1206.audio.AudioDispatcher;
+import uk.ac.soton.comp1206.audio.MusicLibrary;
+import uk.ac.soton.comp1206.audio.SoundEngine;
 
 
 /**
  * Multimedia class to handle bgm and audio
+ *
+ * All audio runs on its own thread, so these methods only queue the work and return.
  */
 public class Multimedia {
-  private static MediaPlayer audioPlayer;
-  private static MediaPlayer bgmPlayer;
-  private static Media media;
+
+  /**
+   * Most sound effects that can play at once
+   */
+  private static final int POLYPHONY = 8;
+
+  /**
+   * Plays the preloaded sound effects
+   */
+  private static final SoundEngine soundEngine = new SoundEngine(POLYPHONY);
+
+  /**
+   * Keeps the background music ready to play
+   */
+  private static final MusicLibrary musicLibrary = new MusicLibrary();
+
+  /**
+   * Runs the audio commands on the audio thread
+   */
+  private static final AudioDispatcher dispatcher = new AudioDispatcher(soundEngine, musicLibrary);
+
  private static final Logger logger = LogManager.getLogger(Multimedia.class);
 
   /**
-   * playAudioFile
+   * Load every sound effect and music track in the background, call once at startup
+   */
+  public static void preload() {
+    logger.info("Preloading audio");
+    soundEngine.preload();
+    musicLibrary.preload();
+  }
+
+  /**
+   * Play a preloaded sound effect, returns without loading anything
    * @param fileName fileName
    */
   public static void playAudioFile(String fileName){
-
-    try {
-      media = new Media(Objects.requireNonNull(Multimedia.class.getResource("/sounds/" + fileName)).toExternalForm());
-      audioPlayer = new MediaPlayer(media);
-      audioPlayer.play();
-      logger.info("Playing audio");
-    } catch (Exception e){
-      logger.error("Failed to play audio, {}", e.toString());
-    }
+    dispatcher.playEffect(fileName);
   }
 
 
   /**
-   * playBackgroundMusic
+   * playBackgroundMusic, keeps playing if the track is already on and crossfades otherwise
    * @param fileName fileName
    */
   public static void playBackgroundMusic(String fileName){
+    dispatcher.playMusic(fileName);
+  }
 
-    if(bgmPlayer != null){
-      bgmPlayer.stop();
-    }
-
-      try {
-          media = new Media(Objects.requireNonNull(Multimedia.class.getResource("/music/" + fileName)).toExternalForm());
-          bgmPlayer = new MediaPlayer(media);
-          bgmPlayer.setCycleCount(MediaPlayer.INDEFINITE);
-          bgmPlayer.play();
-      } catch (Exception e){
-        logger.error("Failed to play background music, {}", e.toString());
-      }
-    }
+  /**
+   * Get the audio dispatcher, for its latency figures
+   * @return dispatcher
+   */
+  public static AudioDispatcher getDispatcher() {
+    return dispatcher;
+  }
 }
-
@@ -0,0 +1,420 @@
+package uk.ac.soton.comp1206.audio;
+
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.jfr.SoundPlaybackEvent;
+import uk.ac.soton.comp1206.metrics.Histogram;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs all audio work on its own thread.
+ *
+ * Callers only add a command to a lock-free queue and wake the audio thread, so playing a sound from the JavaFX
+ * thread or the game loop costs no more than a queue insert. The audio thread plays effects by priority, lowers the
+ * background music while effects play and measures how long each command waited in the queue.
+ *
+ * Music comes from the preloaded MusicLibrary. Asking for the track that is already playing leaves it playing, and a
+ * new track is crossfaded in over the old one.
+ */
+public class AudioDispatcher {
+
+  /**
+   * Logger to debug
+   */
+  private static final Logger logger = LogManager.getLogger(AudioDispatcher.class);
+
+  /**
+   * Priority of effects not listed in PRIORITIES
+   */
+  public static final int DEFAULT_PRIORITY = 1;
+
+  /**
+   * Effect priorities, higher effects take voices from lower ones
+   */
+  private static final Map<String, Integer> PRIORITIES = Map.of(
+      "lifelose.wav", 4,
+      "level.wav", 3,
+      "lifegain.wav", 3,
+      "clear.wav", 2,
+      "explode.wav", 2,
+      "fail.wav", 1,
+      "place.wav", 1,
+      "rotate.wav", 0,
+      "transition.wav", 0
+  );
+
+  /**
+   * Music volume
+   */
+  private static final double MUSIC_VOLUME = 1.0;
+
+  /**
+   * Music volume while effects play
+   */
+  private static final double DUCKED_VOLUME = 0.35;
+
+  /**
+   * How long music stays lowered after the last effect ends
+   */
+  private static final long DUCK_RELEASE_NANOS = 150_000_000L;
+
+  /**
+   * How long a crossfade between tracks takes
+   */
+  private static final long CROSSFADE_NANOS = 800_000_000L;
+
+  /**
+   * How often volumes are updated during a crossfade
+   */
+  private static final long FADE_STEP_NANOS = 20_000_000L;
+
+  /**
+   * What a command does
+   */
+  private enum Action { EFFECT, MUSIC, MUSIC_LOADED, STOP_MUSIC }
+
+  /**
+   * A queued audio command
+   */
+  private static class Command {
+    private final Action action;
+    private final String fileName;
+    private final int priority;
+    private final long queuedAt;
+
+    private Command(Action action, String fileName, int priority) {
+      this.action = action;
+      this.fileName = fileName;
+      this.priority = priority;
+      this.queuedAt = System.nanoTime();
+    }
+  }
+
+  /**
+   * Commands waiting for the audio thread
+   */
+  private final Queue<Command> commands = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Plays the sound effects
+   */
+  private final SoundEngine soundEngine;
+
+  /**
+   * Preloaded music
+   */
+  private final MusicLibrary musicLibrary;
+
+  /**
+   * The audio thread
+   */
+  private final Thread thread;
+
+  /**
+   * Track that should be playing, only touched on the audio thread
+   */
+  private String currentTrack = null;
+
+  /**
+   * Player of the current track, only touched on the audio thread
+   */
+  private MediaPlayer musicPlayer = null;
+
+  /**
+   * Player fading out during a crossfade, only touched on the audio thread
+   */
+  private MediaPlayer fadingPlayer = null;
+
+  /**
+   * When the current crossfade started, only touched on the audio thread
+   */
+  private long fadeStart = 0;
+
+  /**
+   * Whether a crossfade is running, only touched on the audio thread
+   */
+  private boolean fading = false;
+
+  /**
+   * Music stays lowered until this time, only touched on the audio thread
+   */
+  private long duckUntil = Long.MIN_VALUE / 2;
+
+  /**
+   * Whether music is lowered, only touched on the audio thread
+   */
+  private boolean ducked = false;
+
+  /**
+   * Number of commands run
+   */
+  private final AtomicLong commandCount = new AtomicLong();
+
+  /**
+   * Total time commands waited in the queue
+   */
+  private final AtomicLong totalLatency = new AtomicLong();
+
+  /**
+   * Longest time a command waited in the queue
+   */
+  private final AtomicLong maxLatency = new AtomicLong();
+
+  /**
+   * Time from Multimedia asking for a sound to the audio thread playing it, in microseconds
+   */
+  private final Histogram playLatency = MetricsRegistry.get().histogram("audio.play.latency");
+
+  /**
+   * Create a dispatcher and start the audio thread
+   * @param soundEngine engine playing the effects
+   * @param musicLibrary preloaded music
+   */
+  public AudioDispatcher(SoundEngine soundEngine, MusicLibrary musicLibrary) {
+    this.soundEngine = soundEngine;
+    this.musicLibrary = musicLibrary;
+    thread = new Thread(this::run, "audio");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Queue a sound effect
+   * @param fileName effect file name
+   */
+  public void playEffect(String fileName) {
+    submit(new Command(Action.EFFECT, fileName, PRIORITIES.getOrDefault(fileName, DEFAULT_PRIORITY)));
+  }
+
+  /**
+   * Queue background music, crossfading from the current track unless it is the same one
+   * @param fileName music file name
+   */
+  public void playMusic(String fileName) {
+    submit(new Command(Action.MUSIC, fileName, 0));
+  }
+
+  /**
+   * Queue stopping the background music
+   */
+  public void stopMusic() {
+    submit(new Command(Action.STOP_MUSIC, null, 0));
+  }
+
+  /**
+   * Get the number of commands run
+   * @return commands
+   */
+  public long getCommandCount() {
+    return commandCount.get();
+  }
+
+  /**
+   * Get the average time commands waited in the queue
+   * @return latency in nanoseconds
+   */
+  public long getAverageLatencyNanos() {
+    long count = commandCount.get();
+    return count == 0 ? 0 : totalLatency.get() / count;
+  }
+
+  /**
+   * Get the longest time a command waited in the queue
+   * @return latency in nanoseconds
+   */
+  public long getMaxLatencyNanos() {
+    return maxLatency.get();
+  }
+
+  /**
+   * Add a command and wake the audio thread
+   * @param command command
+   */
+  private void submit(Command command) {
+    commands.offer(command);
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Audio thread loop
+   */
+  private void run() {
+    while (true) {
+      Command command = commands.poll();
+      if (command != null) {
+        execute(command);
+        continue;
+      }
+
+      //Nothing queued, update the music volume and sleep until woken or the volume next needs to change
+      long now = System.nanoTime();
+      updateDucking(now);
+      stepFade(now);
+      if (fading) {
+        LockSupport.parkNanos(this, FADE_STEP_NANOS);
+      } else if (ducked) {
+        LockSupport.parkNanos(this, Math.max(duckUntil - now, 1_000_000L));
+      } else {
+        LockSupport.park(this);
+      }
+    }
+  }
+
+  /**
+   * Run one command on the audio thread
+   * @param command command
+   */
+  private void execute(Command command) {
+    long latency = System.nanoTime() - command.queuedAt;
+    commandCount.incrementAndGet();
+    totalLatency.addAndGet(latency);
+    maxLatency.accumulateAndGet(latency, Math::max);
+    boolean playback = command.action == Action.EFFECT || command.action == Action.MUSIC;
+    if (playback) {
+      playLatency.record(latency / 1000);
+    }
+
+    SoundPlaybackEvent event = new SoundPlaybackEvent();
+    event.begin();
+    try {
+      switch (command.action) {
+        case EFFECT -> {
+          if (soundEngine.play(command.fileName, command.priority)) {
+            duckUntil = soundEngine.busyUntil() + DUCK_RELEASE_NANOS;
+            updateDucking(System.nanoTime());
+          }
+        }
+        case MUSIC -> startMusic(command.fileName);
+        case MUSIC_LOADED -> {
+          //Only start a late track if it is still the one wanted
+          if (command.fileName.equals(currentTrack) && musicPlayer == null) {
+            currentTrack = null;
+            startMusic(command.fileName);
+          }
+        }
+        case STOP_MUSIC -> stopCurrentMusic();
+      }
+    } catch (Exception e) {
+      logger.error("Failed to play {}, {}", command.fileName, e.toString());
+    }
+    if (playback && event.shouldCommit()) {
+      event.sound = command.fileName;
+      event.music = command.action == Action.MUSIC;
+      event.queueLatency = latency;
+      event.commit();
+    }
+  }
+
+  /**
+   * Lower the music while effects play and raise it again afterwards
+   * @param now current time
+   */
+  private void updateDucking(long now) {
+    boolean shouldDuck = duckUntil - now > 0;
+    if (shouldDuck != ducked) {
+      ducked = shouldDuck;
+      if (!fading && musicPlayer != null) {
+        musicPlayer.setVolume(musicVolume());
+      }
+    }
+  }
+
+  /**
+   * Get the full music volume, taking ducking into account
+   * @return volume
+   */
+  private double musicVolume() {
+    return ducked ? DUCKED_VOLUME : MUSIC_VOLUME;
+  }
+
+  /**
+   * Move the crossfade along, pausing the old track once it is silent
+   * @param now current time
+   */
+  private void stepFade(long now) {
+    if (!fading) {
+      return;
+    }
+    double progress = Math.min(1.0, (double) (now - fadeStart) / CROSSFADE_NANOS);
+    if (musicPlayer != null) {
+      musicPlayer.setVolume(musicVolume() * progress);
+    }
+    if (fadingPlayer != null) {
+      fadingPlayer.setVolume(musicVolume() * (1 - progress));
+    }
+    if (progress >= 1.0) {
+      fading = false;
+      rest(fadingPlayer);
+      fadingPlayer = null;
+    }
+  }
+
+  /**
+   * Crossfade to a track, leaving it alone if it is already playing
+   * @param fileName music file name
+   */
+  private void startMusic(String fileName) {
+    if (fileName.equals(currentTrack)) {
+      return;
+    }
+    currentTrack = fileName;
+
+    MediaPlayer next = musicLibrary.get(fileName);
+    if (next == null) {
+      //Not preloaded, fade out now and start the track once it has loaded in the background
+      fadeOutCurrent();
+      musicLibrary.load(fileName, () -> submit(new Command(Action.MUSIC_LOADED, fileName, 0)));
+      return;
+    }
+
+    fadeOutCurrent();
+    next.seek(Duration.ZERO);
+    next.setVolume(0);
+    next.play();
+    musicPlayer = next;
+    fading = true;
+    fadeStart = System.nanoTime();
+  }
+
+  /**
+   * Stop the background music, fading it out
+   */
+  private void stopCurrentMusic() {
+    currentTrack = null;
+    fadeOutCurrent();
+  }
+
+  /**
+   * Start fading out the current track
+   */
+  private void fadeOutCurrent() {
+    if (fadingPlayer != null) {
+      rest(fadingPlayer);
+    }
+    fadingPlayer = musicPlayer;
+    musicPlayer = null;
+    if (fadingPlayer != null) {
+      fading = true;
+      fadeStart = System.nanoTime();
+    }
+  }
+
+  /**
+   * Pause a player and keep it ready for the next time its track plays
+   * @param player player
+   */
+  private void rest(MediaPlayer player) {
+    if (player != null) {
+      player.pause();
+      player.setVolume(0);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package uk.ac.soton.comp1206.audio;
+
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps a ready MediaPlayer for every background music track.
+ *
+ * Tracks are loaded on a background thread at startup and kept for the rest of the game, so switching scenes never
+ * creates a player or decodes music. A track that was not preloaded can be loaded in the background on request.
+ */
+public class MusicLibrary {
+
+  /**
+   * Logger to debug
+   */
+  private static final Logger logger = LogManager.getLogger(MusicLibrary.class);
+
+  /**
+   * Music tracks loaded at startup
+   */
+  public static final String[] TRACKS = {
+      "menu.mp3",
+      "game.wav",
+      "game_start.wav",
+      "end.wav"
+  };
+
+  /**
+   * Loaded players by file name
+   */
+  private final Map<String, MediaPlayer> players = new ConcurrentHashMap<>();
+
+  /**
+   * Thread that loads the tracks
+   */
+  private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "music-preload");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Load every track in the background
+   */
+  public void preload() {
+    for (String track : TRACKS) {
+      loader.execute(() -> load(track));
+    }
+  }
+
+  /**
+   * Get the player for a track
+   * @param track file name
+   * @return player, or null if the track is not loaded yet
+   */
+  public MediaPlayer get(String track) {
+    return players.get(track);
+  }
+
+  /**
+   * Load a track in the background
+   * @param track file name
+   * @param whenLoaded run on the loading thread once the track is ready
+   */
+  public void load(String track, Runnable whenLoaded) {
+    loader.execute(() -> {
+      load(track);
+      if (players.containsKey(track)) {
+        whenLoaded.run();
+      }
+    });
+  }
+
+  /**
+   * Create the player for a track, unless it already exists. Runs on the loading thread.
+   * @param track file name
+   */
+  private void load(String track) {
+    if (players.containsKey(track)) {
+      return;
+    }
+    URL resource = MusicLibrary.class.getResource("/music/" + track);
+    if (resource == null) {
+      logger.error("Missing music track {}", track);
+      return;
+    }
+    try {
+      MediaPlayer player = new MediaPlayer(new Media(resource.toExternalForm()));
+      player.setCycleCount(MediaPlayer.INDEFINITE);
+      player.setVolume(0);
+      players.put(track, player);
+      logger.info("Loaded music track {}", track);
+    } catch (Exception e) {
+      logger.error("Failed to load music track {}, {}", track, e.toString());
+    }
+  }
+}
@@ -0,0 +1,247 @@
+package uk.ac.soton.comp1206.audio;
+
+import javafx.scene.media.AudioClip;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plays sound effects from clips decoded once at startup.
+ *
+ * Every effect is loaded into an AudioClip on a background thread when the game starts. Playing an effect takes a
+ * voice from a fixed pool, so only a limited number of effects sound at once. When every voice is busy a lower
+ * priority effect gives up its voice, and the same effect requested again within one frame is merged into the voice
+ * already playing it. Playing never loads or decodes anything on the
+ * calling thread; an effect that has not finished loading is skipped.
+ */
+public class SoundEngine {
+
+  /**
+   * Logger to debug
+   */
+  private static final Logger logger = LogManager.getLogger(SoundEngine.class);
+
+  /**
+   * Sound effects loaded at startup
+   */
+  public static final String[] EFFECTS = {
+      "clear.wav",
+      "explode.wav",
+      "fail.wav",
+      "level.wav",
+      "lifegain.wav",
+      "lifelose.wav",
+      "message.wav",
+      "place.wav",
+      "pling.wav",
+      "rotate.wav",
+      "transition.wav"
+  };
+
+  /**
+   * Requests for the same effect closer together than this are merged, about one frame
+   */
+  private static final long MERGE_WINDOW_NANOS = 16_000_000L;
+
+  /**
+   * Length assumed for effects whose length cannot be read
+   */
+  private static final long DEFAULT_DURATION_NANOS = 1_000_000_000L;
+
+  /**
+   * A loaded effect
+   */
+  private static class Effect {
+    private final AudioClip clip;
+    private final long durationNanos;
+    private long lastPlayed = Long.MIN_VALUE / 2;
+
+    private Effect(AudioClip clip, long durationNanos) {
+      this.clip = clip;
+      this.durationNanos = durationNanos;
+    }
+  }
+
+  /**
+   * Loaded effects by file name
+   */
+  private final Map<String, Effect> effects = new ConcurrentHashMap<>();
+
+  /**
+   * When each voice finishes playing, in System.nanoTime
+   */
+  private final long[] voiceEnds;
+
+  /**
+   * Priority of the effect on each voice
+   */
+  private final int[] voicePriorities;
+
+  /**
+   * Effect on each voice
+   */
+  private final Effect[] voiceEffects;
+
+  /**
+   * Create a sound engine
+   * @param polyphony most effects that can play at once
+   */
+  public SoundEngine(int polyphony) {
+    this.voiceEnds = new long[polyphony];
+    this.voicePriorities = new int[polyphony];
+    this.voiceEffects = new Effect[polyphony];
+    Arrays.fill(voiceEnds, Long.MIN_VALUE / 2);
+  }
+
+  /**
+   * Load every effect on a background thread
+   */
+  public void preload() {
+    Thread loader = new Thread(() -> {
+      for (String name : EFFECTS) {
+        load(name);
+      }
+      logger.info("Loaded {} sound effects", effects.size());
+    }, "sound-preload");
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  /**
+   * Play an effect. Returns straight away.
+   * @param name file name of the effect
+   * @param priority priority, higher effects take voices from lower ones
+   * @return whether the effect is playing, false if it is not loaded or no voice is free
+   */
+  public boolean play(String name, int priority) {
+    Effect effect = effects.get(name);
+    if (effect == null) {
+      logger.info("Sound effect not loaded: {}", name);
+      return false;
+    }
+
+    long now = System.nanoTime();
+    Effect stolen = null;
+    synchronized (this) {
+      if (now - effect.lastPlayed < MERGE_WINDOW_NANOS) {
+        return true;
+      }
+      int voice = freeVoice(now);
+      if (voice < 0) {
+        voice = lowestVoice(priority);
+        if (voice < 0) {
+          logger.info("No free voice for {}", name);
+          return false;
+        }
+        stolen = voiceEffects[voice];
+      }
+      voiceEnds[voice] = now + effect.durationNanos;
+      voicePriorities[voice] = priority;
+      voiceEffects[voice] = effect;
+      effect.lastPlayed = now;
+    }
+
+    if (stolen != null && stolen != effect) {
+      stolen.clip.stop();
+    }
+    effect.clip.play();
+    return true;
+  }
+
+  /**
+   * Get when the last playing effect finishes
+   * @return time in System.nanoTime, in the past if nothing is playing
+   */
+  public synchronized long busyUntil() {
+    long until = Long.MIN_VALUE / 2;
+    for (long end : voiceEnds) {
+      if (end - until > 0) {
+        until = end;
+      }
+    }
+    return until;
+  }
+
+  /**
+   * Stop every effect
+   */
+  public void stopAll() {
+    for (Effect effect : effects.values()) {
+      effect.clip.stop();
+    }
+    synchronized (this) {
+      Arrays.fill(voiceEnds, Long.MIN_VALUE / 2);
+      Arrays.fill(voiceEffects, null);
+    }
+  }
+
+  /**
+   * Find a voice that is not playing
+   * @param now current time
+   * @return voice index, or -1 if every voice is busy
+   */
+  private int freeVoice(long now) {
+    for (int i = 0; i < voiceEnds.length; i++) {
+      if (voiceEnds[i] - now <= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find the busy voice with the lowest priority below the given one
+   * @param priority priority of the new effect
+   * @return voice index, or -1 if no voice has a lower priority
+   */
+  private int lowestVoice(int priority) {
+    int lowest = -1;
+    for (int i = 0; i < voiceEnds.length; i++) {
+      if (voicePriorities[i] < priority && (lowest < 0 || voicePriorities[i] < voicePriorities[lowest])) {
+        lowest = i;
+      }
+    }
+    return lowest;
+  }
+
+  /**
+   * Load one effect, reading its length from the file header
+   * @param name file name
+   */
+  private void load(String name) {
+    URL resource = SoundEngine.class.getResource("/sounds/" + name);
+    if (resource == null) {
+      logger.error("Missing sound effect {}", name);
+      return;
+    }
+    try {
+      AudioClip clip = new AudioClip(resource.toExternalForm());
+      effects.put(name, new Effect(clip, duration(resource)));
+    } catch (Exception e) {
+      logger.error("Failed to load sound effect {}, {}", name, e.toString());
+    }
+  }
+
+  /**
+   * Read the length of a sound file
+   * @param resource sound file
+   * @return length in nanoseconds
+   */
+  private static long duration(URL resource) {
+    try {
+      AudioFileFormat format = AudioSystem.getAudioFileFormat(resource);
+      if (format.getFrameLength() > 0 && format.getFormat().getFrameRate() > 0) {
+        return (long) (format.getFrameLength() / format.getFormat().getFrameRate() * 1_000_000_000L);
+      }
+    } catch (Exception e) {
+      logger.info("Unknown length for {}", resource);
+    }
+    return DEFAULT_DURATION_NANOS;
+  }
+}
@@ -0,0 +1,282 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every look a block can have, drawn once into a single image.
+ *
+ * Each row of the atlas is one of the block colours, and its columns are the plain, hover, centre marker and hover
+ * with centre marker tiles. An extra row holds the steps of the line clear fade. Painting a block is then one
+ * drawImage from the atlas instead of fills, strokes and drop shadows.
+ *
+ * One atlas is kept per block size. Tiles are drawn at the size blocks appear on screen after GamePane scaling, so when
+ * the scale changes every atlas is dropped and rebuilt the next time it is used. Only use from the JavaFX thread.
+ */
+public class BlockSpriteAtlas {
+
+    private static final Logger logger = LogManager.getLogger(BlockSpriteAtlas.class);
+
+    /**
+     * How much the line clear fade drops each frame
+     */
+    public static final double FADE_STEP = 0.035;
+
+    /**
+     * Opacity at which the line clear fade ends
+     */
+    public static final double FADE_END = 0.2;
+
+    /**
+     * Number of fade tiles
+     */
+    public static final int FADE_STEPS = (int) ((1 - FADE_END) / FADE_STEP);
+
+    /**
+     * Columns per colour row: plain, hover, centre, hover with centre
+     */
+    private static final int VARIANTS = 4;
+
+    /**
+     * Row holding the fade tiles
+     */
+    private static final int FADE_ROW = GameBlock.COLOURS.length;
+
+    /**
+     * Colour of the hover highlight
+     */
+    private static final Color HOVER = Color.color(1, 0.3, 0.5, 0.5);
+
+    /**
+     * Colour of a ghost cell where the current piece could be played
+     */
+    private static final Color GHOST_LEGAL = Color.color(1, 1, 1, 0.45);
+
+    /**
+     * Colour of a ghost cell where the current piece could not be played
+     */
+    private static final Color GHOST_ILLEGAL = Color.color(1, 0, 0, 0.45);
+
+    /**
+     * Colour of a cell where the hint suggests playing the current piece
+     */
+    private static final Color GHOST_HINT = Color.color(0.3, 1, 0.4, 0.4);
+
+    /**
+     * Colour of the centre marker
+     */
+    private static final Color CENTRE = Color.color(1, 1, 1, 0.5);
+
+    /**
+     * Colour of a cleared block while it fades
+     */
+    private static final Color FADE = Color.color(0.9, 0.3, 1);
+
+    /**
+     * Atlases built so far, one per block size
+     */
+    private static final List<BlockSpriteAtlas> atlases = new ArrayList<>();
+
+    /**
+     * Current GamePane scale
+     */
+    private static double scale = 1;
+
+    /**
+     * Block width the atlas is for
+     */
+    private final double width;
+
+    /**
+     * Block height the atlas is for
+     */
+    private final double height;
+
+    /**
+     * Width of a tile in pixels
+     */
+    private final int tileWidth;
+
+    /**
+     * Height of a tile in pixels
+     */
+    private final int tileHeight;
+
+    /**
+     * The atlas image
+     */
+    private final WritableImage image;
+
+    /**
+     * Get the atlas for a block size, building it if needed
+     * @param width block width
+     * @param height block height
+     * @return atlas
+     */
+    public static BlockSpriteAtlas forSize(double width, double height) {
+        for (BlockSpriteAtlas atlas : atlases) {
+            if (atlas.width == width && atlas.height == height) {
+                return atlas;
+            }
+        }
+        BlockSpriteAtlas atlas = new BlockSpriteAtlas(width, height, scale);
+        atlases.add(atlas);
+        return atlas;
+    }
+
+    /**
+     * Set the scale blocks are shown at. Atlases for another scale are dropped and rebuilt when next used.
+     * @param newScale GamePane scale
+     */
+    public static void setScale(double newScale) {
+        if (newScale <= 0 || newScale == scale) {
+            return;
+        }
+        scale = newScale;
+        atlases.clear();
+    }
+
+    /**
+     * Render the atlas for a block size
+     * @param width block width
+     * @param height block height
+     * @param scale scale blocks are shown at
+     */
+    private BlockSpriteAtlas(double width, double height, double scale) {
+        this.width = width;
+        this.height = height;
+        this.tileWidth = Math.max(1, (int) Math.ceil(width * scale));
+        this.tileHeight = Math.max(1, (int) Math.ceil(height * scale));
+
+        int columns = Math.max(VARIANTS, FADE_STEPS);
+        Canvas canvas = new Canvas(columns * tileWidth, (FADE_ROW + 1) * tileHeight);
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+
+        for (int value = 0; value < GameBlock.COLOURS.length; value++) {
+            for (int variant = 0; variant < VARIANTS; variant++) {
+                drawTile(gc, variant, value, value, (variant & 1) != 0, (variant & 2) != 0, 0);
+            }
+        }
+        for (int step = 0; step < FADE_STEPS; step++) {
+            drawTile(gc, step, FADE_ROW, 0, false, false, fadeOpacity(step));
+        }
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        image = canvas.snapshot(parameters, null);
+        logger.info("Built block atlas for {} x {} at scale {}", width, height, scale);
+    }
+
+    /**
+     * Draw a block
+     * @param gc graphics to draw on
+     * @param x left of the block
+     * @param y top of the block
+     * @param value block value
+     * @param hover whether the mouse is over the block
+     * @param centre whether to show the centre marker
+     */
+    public void draw(GraphicsContext gc, double x, double y, int value, boolean hover, boolean centre) {
+        int variant = (hover ? 1 : 0) | (centre ? 2 : 0);
+        drawFromAtlas(gc, x, y, variant, value);
+    }
+
+    /**
+     * Draw a step of the line clear fade
+     * @param gc graphics to draw on
+     * @param x left of the block
+     * @param y top of the block
+     * @param step fade step, from 0 until FADE_STEPS
+     */
+    public void drawFade(GraphicsContext gc, double x, double y, int step) {
+        drawFromAtlas(gc, x, y, Math.min(step, FADE_STEPS - 1), FADE_ROW);
+    }
+
+    /**
+     * Tint a block to show part of the current piece's ghost or hint
+     * @param gc graphics to draw on
+     * @param x left of the block
+     * @param y top of the block
+     * @param state GameBoard.GHOST_LEGAL, GHOST_ILLEGAL or GHOST_HINT
+     */
+    public void drawGhost(GraphicsContext gc, double x, double y, int state) {
+        gc.setFill(state == GameBoard.GHOST_LEGAL ? GHOST_LEGAL : state == GameBoard.GHOST_HINT ? GHOST_HINT : GHOST_ILLEGAL);
+        gc.fillRect(x, y, width, height);
+    }
+
+    /**
+     * Get the opacity of the fade overlay at a step
+     * @param step fade step
+     * @return opacity
+     */
+    public static double fadeOpacity(int step) {
+        return 1 - FADE_STEP * (step + 1);
+    }
+
+    /**
+     * Copy a tile to the block position
+     */
+    private void drawFromAtlas(GraphicsContext gc, double x, double y, int column, int row) {
+        gc.drawImage(image, column * tileWidth, row * tileHeight, tileWidth, tileHeight, x, y, width, height);
+    }
+
+    /**
+     * Render one tile the same way GameBlock used to paint itself
+     */
+    private void drawTile(GraphicsContext gc, int column, int row, int value, boolean hover, boolean centre, double fade) {
+        double left = column * tileWidth;
+        double top = row * tileHeight;
+
+        gc.save();
+        gc.beginPath();
+        gc.rect(left, top, tileWidth, tileHeight);
+        gc.clip();
+
+        DropShadow shadow = new DropShadow();
+        shadow.setColor(Color.BLACK);
+        if (value == 0) {
+            //Empty tile with a small shadow
+            shadow.setOffsetX(3.5 * tileWidth / width);
+            shadow.setOffsetY(3.5 * tileHeight / height);
+            gc.setEffect(shadow);
+            gc.setFill(Color.WHITE);
+            gc.fillRect(left, top, tileWidth, tileHeight);
+        } else {
+            //Filled tile with a deeper shadow on the border
+            gc.setFill(GameBlock.COLOURS[value]);
+            gc.fillRect(left, top, tileWidth, tileHeight);
+            shadow.setOffsetX(8 * tileWidth / width);
+            shadow.setOffsetY(8 * tileHeight / height);
+            gc.setEffect(shadow);
+        }
+        gc.setStroke(Color.BLACK);
+        gc.strokeRect(left + 0.5, top + 0.5, tileWidth - 1, tileHeight - 1);
+        gc.setEffect(null);
+
+        if (fade > 0) {
+            gc.setGlobalAlpha(fade);
+            gc.setFill(FADE);
+            gc.fillRect(left, top, tileWidth, tileHeight);
+            gc.setGlobalAlpha(1);
+        }
+        if (hover) {
+            gc.setFill(HOVER);
+            gc.fillRect(left, top, tileWidth, tileHeight);
+        }
+        if (centre) {
+            double radius = Math.min(tileWidth, tileHeight) / 4.0;
+            gc.setFill(CENTRE);
+            gc.fillOval(left + tileWidth / 2.0 - radius, top + tileHeight / 2.0 - radius, radius * 2, radius * 2);
+        }
+        gc.restore();
+    }
+}
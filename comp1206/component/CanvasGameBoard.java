@@ -0,0 +1,279 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.ui.AnimationScheduler;
+import uk.ac.soton.comp1206.ui.PerformanceHud;
+
+import java.util.Arrays;
+
+/**
+ * A GameBoard drawn on a single canvas instead of one canvas per block.
+ *
+ * The board listens to the grid and marks changed cells dirty, then redraws only those cells on the next pulse of the
+ * AnimationScheduler. Mouse
+ * positions are turned into cells by division, and clicks are passed to the BlockClickedListener with a GameBlock for
+ * the clicked cell as before. Those GameBlocks are never added to the scene, so the scene graph holds one node and one
+ * texture however big the board is. Cells are copied from the BlockSpriteAtlas.
+ */
+public class CanvasGameBoard extends GameBoard {
+
+    private static final Logger logger = LogManager.getLogger(CanvasGameBoard.class);
+
+    /**
+     * The canvas holding the whole board
+     */
+    private Canvas canvas;
+
+    /**
+     * Whether each cell needs drawing, indexed by y * cols + x
+     */
+    private boolean[] dirty;
+
+    /**
+     * Cells that need drawing
+     */
+    private int[] dirtyCells;
+
+    /**
+     * Number of cells in dirtyCells
+     */
+    private int dirtyCount;
+
+    /**
+     * Next fade step of each cell, -1 when not fading
+     */
+    private int[] fade;
+
+    /**
+     * Number of cells fading
+     */
+    private int fadingCount;
+
+    /**
+     * Cell under the mouse, -1 for none
+     */
+    private int hoverCell;
+
+    /**
+     * Ghost shown on each cell, GHOST_NONE when there is none
+     */
+    private int[] ghost;
+
+    /**
+     * Redraws dirty cells once per pulse, only scheduled while there is something to draw
+     */
+    private AnimationScheduler.Effect repaintEffect;
+
+    /**
+     * Create a new canvas board, based off a given grid, with a visual width and height.
+     * @param grid linked grid
+     * @param width the visual width
+     * @param height the visual height
+     */
+    public CanvasGameBoard(Grid grid, double width, double height) {
+        super(grid, width, height);
+    }
+
+    /**
+     * Build the board as one canvas, with a GameBlock handle per cell for click listeners
+     */
+    @Override
+    protected void build() {
+        logger.info("Building canvas grid: {} x {}", cols, rows);
+
+        setMaxWidth(width);
+        setMaxHeight(height);
+
+        canvas = new Canvas(width, height);
+        add(canvas, 0, 0);
+
+        int cells = cols * rows;
+        dirty = new boolean[cells];
+        dirtyCells = new int[cells];
+        fade = new int[cells];
+        Arrays.fill(fade, -1);
+        hoverCell = -1;
+        ghost = new int[cells];
+
+        blocks = new GameBlock[cols][rows];
+        for (var y = 0; y < rows; y++) {
+            for (var x = 0; x < cols; x++) {
+                //Handle passed to click listeners, never added to the scene
+                blocks[x][y] = new GameBlock(this, x, y, 0, 0);
+            }
+        }
+
+        //One dirty mark per changed cell, however many times it was written in the batch
+        grid.addChangeListener((changedGrid, changed) -> {
+            for (int slot = changed.nextSlot(0); slot >= 0; slot = changed.nextSlot(slot + 1)) {
+                int cell = changed.get(slot);
+                markDirty(Coordinates.y(cell) * cols + Coordinates.x(cell));
+            }
+        });
+
+        repaintEffect = (now) -> repaint();
+
+        canvas.setOnMouseMoved(this::mouseMoved);
+        canvas.setOnMouseExited((e) -> setHover(-1));
+        canvas.setOnMouseClicked((e) -> {
+            int cell = cellAt(e.getX(), e.getY());
+            if (cell >= 0) {
+                blockClicked(e, blocks[cell % cols][cell / cols]);
+            }
+        });
+
+        //Draw every cell for the first pulse
+        for (int cell = 0; cell < cells; cell++) {
+            markDirty(cell);
+        }
+    }
+
+    /**
+     * Fade out one cell
+     * @param x column
+     * @param y row
+     */
+    @Override
+    protected void fadeOut(int x, int y) {
+        int cell = y * cols + x;
+        if (fade[cell] < 0) {
+            fadingCount++;
+        }
+        fade[cell] = 0;
+        markDirty(cell);
+    }
+
+    /**
+     * Track the cell under the mouse
+     * @param event mouse event
+     */
+    private void mouseMoved(MouseEvent event) {
+        setHover(cellAt(event.getX(), event.getY()));
+    }
+
+    /**
+     * Move the hover highlight to another cell
+     * @param cell cell, or -1 for none
+     */
+    private void setHover(int cell) {
+        if (cell == hoverCell) {
+            return;
+        }
+        if (hoverCell >= 0) {
+            markDirty(hoverCell);
+        }
+        hoverCell = cell;
+        if (cell >= 0) {
+            markDirty(cell);
+            showGhost(cell % cols, cell / cols);
+        } else {
+            hideGhost();
+        }
+    }
+
+    /**
+     * Show or hide the ghost on one cell
+     * @param x column
+     * @param y row
+     * @param state GHOST_NONE, GHOST_LEGAL, GHOST_ILLEGAL or GHOST_HINT
+     */
+    @Override
+    protected void setGhost(int x, int y, int state) {
+        int cell = y * cols + x;
+        if (ghost[cell] != state) {
+            ghost[cell] = state;
+            markDirty(cell);
+        }
+    }
+
+    /**
+     * Work out which cell is at a point on the canvas
+     * @param x x position
+     * @param y y position
+     * @return cell index, or -1 if outside the board
+     */
+    private int cellAt(double x, double y) {
+        int column = (int) (x * cols / width);
+        int row = (int) (y * rows / height);
+        if (x < 0 || y < 0 || column >= cols || row >= rows) {
+            return -1;
+        }
+        return row * cols + column;
+    }
+
+    /**
+     * Mark a cell to be drawn on the next pulse
+     * @param cell cell index
+     */
+    private void markDirty(int cell) {
+        if (!dirty[cell]) {
+            dirty[cell] = true;
+            dirtyCells[dirtyCount++] = cell;
+        }
+        AnimationScheduler.get().add(repaintEffect);
+    }
+
+    /**
+     * Draw the dirty cells and move fades along
+     * @return whether to run again next pulse
+     */
+    private boolean repaint() {
+        //Fading cells change every frame
+        if (fadingCount > 0) {
+            for (int cell = 0; cell < fade.length; cell++) {
+                if (fade[cell] >= 0) {
+                    if (!dirty[cell]) {
+                        dirty[cell] = true;
+                        dirtyCells[dirtyCount++] = cell;
+                    }
+                }
+            }
+        }
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        BlockSpriteAtlas atlas = BlockSpriteAtlas.forSize(width / cols, height / rows);
+        for (int i = 0; i < dirtyCount; i++) {
+            int cell = dirtyCells[i];
+            dirty[cell] = false;
+            paintCell(gc, atlas, cell);
+        }
+        dirtyCount = 0;
+
+        return fadingCount > 0;
+    }
+
+    /**
+     * Draw one cell from the atlas, moving its fade along
+     * @param gc canvas graphics
+     * @param atlas block atlas
+     * @param cell cell index
+     */
+    private void paintCell(GraphicsContext gc, BlockSpriteAtlas atlas, int cell) {
+        int x = cell % cols;
+        int y = cell / cols;
+        double blockWidth = width / cols;
+        double blockHeight = height / rows;
+        double left = x * blockWidth;
+        double top = y * blockHeight;
+
+        PerformanceHud.countRepaint();
+        gc.clearRect(left, top, blockWidth, blockHeight);
+        if (fade[cell] >= 0 && fade[cell] < BlockSpriteAtlas.FADE_STEPS) {
+            atlas.drawFade(gc, left, top, fade[cell]++);
+            return;
+        }
+        if (fade[cell] >= 0) {
+            fade[cell] = -1;
+            fadingCount--;
+        }
+        atlas.draw(gc, left, top, grid.get(x, y), cell == hoverCell, false);
+        if (ghost[cell] != GHOST_NONE) {
+            atlas.drawGhost(gc, left, top, ghost[cell]);
+        }
+    }
+}
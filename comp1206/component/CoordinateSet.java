@@ -0,0 +1,240 @@
+package uk.ac.soton.comp1206.component;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of packed coordinates (see Coordinates) kept in an open addressing table of ints.
+ *
+ * Adding, removing and looking up coordinates allocates nothing once the table is big enough, and clear() keeps the
+ * table, so one set can be reused for every event. Not thread safe.
+ *
+ * The coordinate (-32768, -32768) marks empty slots and cannot be added.
+ */
+public class CoordinateSet {
+
+  /**
+   * Marks an empty slot
+   */
+  private static final int EMPTY = Coordinates.pack(Short.MIN_VALUE, Short.MIN_VALUE);
+
+  private int[] slots;
+  private int mask;
+  private int size = 0;
+
+  /**
+   * Create a set big enough for a board
+   * @param expected number of coordinates expected, the table grows past this if needed
+   */
+  public CoordinateSet(int expected) {
+    int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+    slots = new int[capacity];
+    Arrays.fill(slots, EMPTY);
+    mask = capacity - 1;
+  }
+
+  /**
+   * Add a coordinate
+   * @param packed packed coordinate
+   * @return whether it was not already in the set
+   */
+  public boolean add(int packed) {
+    if (packed == EMPTY) {
+      throw new IllegalArgumentException("Cannot store " + Coordinates.toString(packed));
+    }
+    int slot = find(packed);
+    if (slots[slot] == packed) {
+      return false;
+    }
+    slots[slot] = packed;
+    if (++size * 2 > slots.length) {
+      grow();
+    }
+    return true;
+  }
+
+  /**
+   * Add a coordinate
+   * @param x column
+   * @param y row
+   * @return whether it was not already in the set
+   */
+  public boolean add(int x, int y) {
+    return add(Coordinates.pack(x, y));
+  }
+
+  /**
+   * Check for a coordinate
+   * @param packed packed coordinate
+   * @return whether it is in the set
+   */
+  public boolean contains(int packed) {
+    return packed != EMPTY && slots[find(packed)] == packed;
+  }
+
+  /**
+   * Check for a coordinate
+   * @param x column
+   * @param y row
+   * @return whether it is in the set
+   */
+  public boolean contains(int x, int y) {
+    return contains(Coordinates.pack(x, y));
+  }
+
+  /**
+   * Remove a coordinate
+   * @param packed packed coordinate
+   * @return whether it was in the set
+   */
+  public boolean remove(int packed) {
+    if (packed == EMPTY) {
+      return false;
+    }
+    int slot = find(packed);
+    if (slots[slot] != packed) {
+      return false;
+    }
+    //Shift later entries of the same run back so lookups never stop early at the gap
+    int gap = slot;
+    int next = (gap + 1) & mask;
+    while (slots[next] != EMPTY) {
+      int home = hash(slots[next]);
+      boolean movable = gap <= next ? (home <= gap || home > next) : (home <= gap && home > next);
+      if (movable) {
+        slots[gap] = slots[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    slots[gap] = EMPTY;
+    size--;
+    return true;
+  }
+
+  /**
+   * Get the number of coordinates
+   * @return size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Whether the set is empty
+   * @return empty
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Remove every coordinate, keeping the table
+   */
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(slots, EMPTY);
+      size = 0;
+    }
+  }
+
+  /**
+   * Run an action on every coordinate, in no particular order
+   * @param action action given each packed coordinate
+   */
+  public void forEach(IntConsumer action) {
+    for (int packed : slots) {
+      if (packed != EMPTY) {
+        action.accept(packed);
+      }
+    }
+  }
+
+  /**
+   * Walk the coordinates without allocating:
+   * {@code for (int slot = set.nextSlot(0); slot >= 0; slot = set.nextSlot(slot + 1)) set.get(slot)}
+   * @param fromSlot slot to start at
+   * @return the first filled slot at or after fromSlot, or -1 if there are none
+   */
+  public int nextSlot(int fromSlot) {
+    for (int slot = fromSlot; slot < slots.length; slot++) {
+      if (slots[slot] != EMPTY) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Get the coordinate in a slot found with nextSlot
+   * @param slot slot
+   * @return packed coordinate
+   */
+  public int get(int slot) {
+    return slots[slot];
+  }
+
+  /**
+   * Iterate the coordinates, in no particular order. The set must not change while iterating
+   * @return iterator over packed coordinates
+   */
+  public PrimitiveIterator.OfInt iterator() {
+    return new PrimitiveIterator.OfInt() {
+      private int slot = nextSlot(0);
+
+      @Override
+      public boolean hasNext() {
+        return slot >= 0;
+      }
+
+      @Override
+      public int nextInt() {
+        if (slot < 0) {
+          throw new NoSuchElementException();
+        }
+        int packed = slots[slot];
+        slot = nextSlot(slot + 1);
+        return packed;
+      }
+    };
+  }
+
+  /**
+   * Find the slot holding a coordinate, or the empty slot it would go in
+   * @param packed packed coordinate
+   * @return slot
+   */
+  private int find(int packed) {
+    int slot = hash(packed);
+    while (slots[slot] != EMPTY && slots[slot] != packed) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Get the home slot of a coordinate, spreading the bits with a Fibonacci hash
+   * @param packed packed coordinate
+   * @return slot
+   */
+  private int hash(int packed) {
+    return (packed * 0x9E3779B9 >>> 16) & mask;
+  }
+
+  /**
+   * Double the table
+   */
+  private void grow() {
+    int[] old = slots;
+    slots = new int[old.length * 2];
+    Arrays.fill(slots, EMPTY);
+    mask = slots.length - 1;
+    for (int packed : old) {
+      if (packed != EMPTY) {
+        slots[find(packed)] = packed;
+      }
+    }
+  }
+}
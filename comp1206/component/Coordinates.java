@@ -0,0 +1,81 @@
+package uk.ac.soton.comp1206.component;
+
+/**
+ * Block coordinates packed into a single int, so they can be stored, compared and moved around without allocating.
+ *
+ * The column goes in the high 16 bits and the row in the low 16 bits, both signed, so coordinates from -32768 to
+ * 32767 can be packed and offsets off the edge of the board still work.
+ */
+public class Coordinates {
+
+  private Coordinates() {
+  }
+
+  /**
+   * Pack a column and row
+   * @param x column
+   * @param y row
+   * @return packed coordinate
+   */
+  public static int pack(int x, int y) {
+    return (x << 16) | (y & 0xFFFF);
+  }
+
+  /**
+   * Get the column of a packed coordinate
+   * @param packed packed coordinate
+   * @return column
+   */
+  public static int x(int packed) {
+    return packed >> 16;
+  }
+
+  /**
+   * Get the row of a packed coordinate
+   * @param packed packed coordinate
+   * @return row
+   */
+  public static int y(int packed) {
+    return (short) packed;
+  }
+
+  /**
+   * Offset a packed coordinate
+   * @param packed packed coordinate
+   * @param x columns to add
+   * @param y rows to add
+   * @return packed result
+   */
+  public static int add(int packed, int x, int y) {
+    return pack(x(packed) + x, y(packed) + y);
+  }
+
+  /**
+   * Add two packed coordinates
+   * @param a packed coordinate
+   * @param b packed coordinate
+   * @return packed result
+   */
+  public static int add(int a, int b) {
+    return add(a, x(b), y(b));
+  }
+
+  /**
+   * Subtract one packed coordinate from another
+   * @param a packed coordinate
+   * @param b packed coordinate to take away
+   * @return packed result
+   */
+  public static int subtract(int a, int b) {
+    return add(a, -x(b), -y(b));
+  }
+
+  /**
+   * Describe a packed coordinate
+   * @param packed packed coordinate
+   * @return text
+   */
+  public static String toString(int packed) {
+    return "(" + x(packed) + ", " + y(packed) + ")";
+  }
+}
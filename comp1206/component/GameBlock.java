@@ -1,16 +1,15 @@
 package uk.ac.soton.comp1206.component;
 
-import javafx.animation.AnimationTimer;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.effect.DropShadow;
 import javafx.scene.paint.*;
-import javafx.scene.shape.Circle;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ui.AnimationScheduler;
+import uk.ac.soton.comp1206.ui.PerformanceHud;
 
 /**
  * The Visual User Interface component representing a single block in the grid.
@@ -19,21 +18,31 @@ import org.apache.logging.log4j.Logger;
  *
  * Displays an empty square (when the value is 0) or a coloured square depending on value.
  *
- * The GameBlock value should be bound to a corresponding block in the Grid model.
+ * The GameBlock value follows a corresponding block in the Grid model, set by the GameBoard as the grid changes.
  */
 public class GameBlock extends Canvas {
     private static final Logger logger = LogManager.getLogger(GameBlock.class);
 
     /**
-     * For fade out method
+     * Line clear fade of this block, created once and reused for every clear
      */
-    private AnimationTimer animationTimer = null;
+    private final AnimationScheduler.Effect fade = this::advanceFade;
+
+    /**
+     * Next step of the fade, -1 when not fading
+     */
+    private int fadeStep = -1;
 
     /**
      * To design whether to use hover effect or not
      */
     private boolean hover = false;
 
+    /**
+     * Ghost shown on this block, one of GameBoard.GHOST_NONE, GHOST_LEGAL, GHOST_ILLEGAL or GHOST_HINT
+     */
+    private int ghost = GameBoard.GHOST_NONE;
+
     /**
      * Check if it is the middle block, then put the ot on it
      */
@@ -107,7 +116,8 @@ public class GameBlock extends Canvas {
         this.x = x;
         this.y = y;
 
-        this.isMiddleBlock = (x == 1 && y == 1);
+        //Only piece boards have a centre to mark
+        this.isMiddleBlock = gameBoard instanceof PieceBoard && x == 1 && y == 1;
 
         //A canvas needs a fixed width and height
         setWidth(width);
@@ -139,112 +149,67 @@ public class GameBlock extends Canvas {
      * @param newValue the new value
      */
     private void updateValue(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-        paint();
+        if (fadeStep < 0) {
+            paint();
+        }
     }
 
     /**
-     * Handle painting of the block canvas
+     * Handle painting of the block canvas, copying the look for its value and hover state from the atlas
      */
     public void paint() {
-        GraphicsContext gc = getGraphicsContext2D();
-        //If the block is empty, paint as empty
-        if(value.get() == 0) {
-            paintEmpty();
-        } else {
-            //If the block is not empty, paint with the colour represented by the value
-            paintColor(COLOURS[value.get()]);
+        //Handles used by CanvasGameBoard have no size and are never shown
+        if (width == 0 || height == 0) {
+            return;
         }
-
-        if(hover) {
-            gc.setFill(Color.color(1, 0.3, 0.5, 0.5));
-            gc.fillRect(0, 0, width, height);
-        }
-
-        if(isMiddleBlock) {
-            Circle circle = new Circle();
-            circle.setFill(Color.color(1,1, 1, 0.5));
-            circle.getFill();
+        PerformanceHud.countRepaint();
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        BlockSpriteAtlas atlas = BlockSpriteAtlas.forSize(width, height);
+        atlas.draw(gc, 0, 0, value.get(), hover, isMiddleBlock);
+        if (ghost != GameBoard.GHOST_NONE) {
+            atlas.drawGhost(gc, 0, 0, ghost);
         }
-
-
     }
 
     /**
-     * Paint this canvas empty
+     * Show or hide part of the current piece's ghost or hint on this block
+     * @param ghost GameBoard.GHOST_NONE, GHOST_LEGAL, GHOST_ILLEGAL or GHOST_HINT
      */
-    private void paintEmpty() {
-        var gc = getGraphicsContext2D();
-
-        //Clear
-        gc.clearRect(0,0,width,height);
-
-        //Fill
-        gc.setFill(Color.WHITE);
-
-        //Set empty tiles
-        DropShadow ds = new DropShadow();
-        ds.setOffsetX(3.5);
-        ds.setOffsetY(3.5);
-        ds.setColor(Color.BLACK);
-        gc.setEffect(ds);
-        gc.fillRect(0,0, width, height);
-
-        //Border
-        gc.setStroke(Color.BLACK);
-        gc.strokeRect(0,0,width,height);
+    public void setGhost(int ghost) {
+        if (this.ghost == ghost) {
+            return;
+        }
+        this.ghost = ghost;
+        if (fadeStep < 0) {
+            paint();
+        }
     }
 
     /**
-     * Paint this canvas with the given colour
-     * @param colour the colour to paint
+     * Use this to flash and then fades out to indicate a cleared block
      */
-    private void paintColor(Paint colour) {
-        var gc = getGraphicsContext2D();
-
-
-        //Clear
-        gc.clearRect(0,0,width,height);
-
-        //Colour fill
-        gc.setFill(colour);
-        gc.fillRect(0,0, width, height);
-
-        //Filled tiles
-        DropShadow ds = new DropShadow();
-        ds.setOffsetX(8);
-        ds.setOffsetY(8);
-        ds.setColor(Color.BLACK);
-        gc.setEffect(ds);
-
-        //Border
-        gc.setStroke(Color.BLACK);
-        gc.strokeRect(0,0,width,height);
+    public void fadeOut(){
+        fadeStep = 0;
+        AnimationScheduler.get().add(fade);
     }
 
     /**
-     * Use this to flash and then fades out to indicate a cleared block
+     * Draw the next step of the fade
+     * @param now pulse time
+     * @return whether the fade is still running
      */
-    public void fadeOut(){
-        animationTimer = new AnimationTimer() {
-            double op = 1;
-            @Override
-            public void handle(long now) {
-
-                paintEmpty();
-                op -= 0.035;
-                if(op <= 0.2){
-                    this.stop();
-                }
-                else {
-                    var gc = getGraphicsContext2D();
-                    gc.setFill(Color.color(0.9, 0.3, 1, op));
-
-                    gc.fillRect(0, 0, width, height);
-                }
-
-            }
-        };
-        animationTimer.start();
+    private boolean advanceFade(long now) {
+        var gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, width, height);
+        if(fadeStep >= BlockSpriteAtlas.FADE_STEPS){
+            fadeStep = -1;
+            paint();
+            return false;
+        }
+        BlockSpriteAtlas.forSize(width, height).drawFade(gc, 0, 0, fadeStep);
+        fadeStep++;
+        return true;
     }
 
     /**
@@ -271,6 +236,14 @@ public class GameBlock extends Canvas {
         return this.value.get();
     }
 
+    /**
+     * Set the value of this block, repainting it if the value changed
+     * @param newValue new value
+     */
+    public void setValue(int newValue) {
+        value.set(newValue);
+    }
+
     /**
      * Bind the value of this block to another property. Used to link the visual block to a corresponding block in the Grid.
      * @param input property to bind the value to
@@ -5,7 +5,9 @@ import javafx.beans.NamedArg;
 /**
  * Represents a row and column representation of a block in the grid. Holds the x (column) and y (row).
  *
- * Useful for use in a set or list or other form of collection.
+ * Useful for use in a set or list or other form of collection. Coordinates on and around a normal board are interned,
+ * so of() and the arithmetic methods hand back shared instances rather than allocating. Code that handles many cells
+ * at once should use packed coordinates (see Coordinates and CoordinateSet) instead.
  */
 public class GameBlockCoordinate {
 
@@ -20,9 +22,19 @@ public class GameBlockCoordinate {
     private final int y;
 
     /**
-     * A hash is computed to enable comparisons between this and other GameBlockCoordinates.
+     * Smallest column and row that is interned
      */
-    private int hash = 0;
+    private static final int CACHE_MIN = -8;
+
+    /**
+     * Width and height of the interned range
+     */
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * Interned coordinates, filled in as they are first asked for
+     */
+    private static final GameBlockCoordinate[] cache = new GameBlockCoordinate[CACHE_SIZE * CACHE_SIZE];
 
 
     /**
@@ -35,6 +47,45 @@ public class GameBlockCoordinate {
         this.y = y;
     }
 
+    /**
+     * Get the coordinate for a column and row, shared when it is in the interned range
+     * @param x column
+     * @param y row
+     * @return coordinate
+     */
+    public static GameBlockCoordinate of(int x, int y) {
+        int cacheX = x - CACHE_MIN;
+        int cacheY = y - CACHE_MIN;
+        if (cacheX < 0 || cacheY < 0 || cacheX >= CACHE_SIZE || cacheY >= CACHE_SIZE) {
+            return new GameBlockCoordinate(x, y);
+        }
+        int index = cacheY * CACHE_SIZE + cacheX;
+        GameBlockCoordinate coordinate = cache[index];
+        if (coordinate == null) {
+            //Racing threads may both create one, which is harmless as they are equal
+            coordinate = new GameBlockCoordinate(x, y);
+            cache[index] = coordinate;
+        }
+        return coordinate;
+    }
+
+    /**
+     * Get the coordinate for a packed coordinate
+     * @param packed packed coordinate
+     * @return coordinate
+     */
+    public static GameBlockCoordinate fromPacked(int packed) {
+        return of(Coordinates.x(packed), Coordinates.y(packed));
+    }
+
+    /**
+     * Pack this coordinate into an int
+     * @return packed coordinate
+     */
+    public int pack() {
+        return Coordinates.pack(x, y);
+    }
+
     /**
      * Return the column (x)
      * @return column number
@@ -52,41 +103,41 @@ public class GameBlockCoordinate {
     }
 
     /**
-     * Add a row and column reference to this one and return a new GameBlockCoordinate
+     * Add a row and column reference to this one and return the resulting GameBlockCoordinate
      * @param x additional columns
      * @param y additional rows
-     * @return a new GameBlockCoordinate with the result of the addition
+     * @return a GameBlockCoordinate with the result of the addition
      */
     public GameBlockCoordinate add(int x, int y) {
-        return new GameBlockCoordinate(
+        return of(
                 getX() + x,
                 getY() + y);
     }
 
     /**
-     * Add another GameBlockCoordinate to this one, returning a new GameBlockCoordinate
+     * Add another GameBlockCoordinate to this one, returning the resulting GameBlockCoordinate
      * @param point point to add
-     * @return a new GameBlockCoordinate with the result of the addition
+     * @return a GameBlockCoordinate with the result of the addition
      */
     public GameBlockCoordinate add(GameBlockCoordinate point) {
         return add(point.getX(), point.getY());
     }
 
-    /** Subtract a row and column reference to this one and return a new GameBlockCoordinate
+    /** Subtract a row and column reference to this one and return the resulting GameBlockCoordinate
      * @param x columns to remove
      * @param y rows to remove
-     * @return a new GameBlockCoordinate with the result of the subtraction
+     * @return a GameBlockCoordinate with the result of the subtraction
      */
     public GameBlockCoordinate subtract(int x, int y) {
-        return new GameBlockCoordinate(
+        return of(
                 getX() - x,
                 getY() - y);
     }
 
     /**
-     * Subtract another GameBlockCoordinate to this one, returning a new GameBlockCoordinate
+     * Subtract another GameBlockCoordinate to this one, returning the resulting GameBlockCoordinate
      * @param point point to subtract
-     * @return a new GameBlockCoordinate with the result of the subtraction
+     * @return a GameBlockCoordinate with the result of the subtraction
      */
     public GameBlockCoordinate subtract(GameBlockCoordinate point) {
         return subtract(point.getX(), point.getY());
@@ -106,17 +157,12 @@ public class GameBlockCoordinate {
     }
 
     /**
-     * Calculate a hash code of this GameBlockCoordinate, used for comparisons
+     * Calculate a hash code of this GameBlockCoordinate, used for comparisons. Plain int arithmetic, distinct for
+     * every cell of a board up to 31 rows high, so it needs no caching
      * @return hash code
      */
     @Override public int hashCode() {
-        if (hash == 0) {
-            long bits = 7L;
-            bits = 31L * bits + Double.doubleToLongBits(getX());
-            bits = 31L * bits + Double.doubleToLongBits(getY());
-            hash = (int) (bits ^ (bits >> 32));
-        }
-        return hash;
+        return 31 * x + y;
     }
 
     /**
@@ -6,10 +6,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
 import uk.ac.soton.comp1206.event.RightClickListener;
+import uk.ac.soton.comp1206.game.ClearedLines;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.Grid;
-
-import java.util.Set;
+import uk.ac.soton.comp1206.game.PieceMasks;
 
 /**
  * A GameBoard is a visual component to represent the visual GameBoard.
@@ -28,6 +28,26 @@ public class GameBoard extends GridPane {
      */
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
+    /**
+     * No ghost on a block
+     */
+    public static final int GHOST_NONE = 0;
+
+    /**
+     * Ghost of a piece that can be played
+     */
+    public static final int GHOST_LEGAL = 1;
+
+    /**
+     * Ghost of a piece that cannot be played
+     */
+    public static final int GHOST_ILLEGAL = 2;
+
+    /**
+     * Where the hint suggests playing the current piece
+     */
+    public static final int GHOST_HINT = 3;
+
     /**
      * RightClickListener
      */
@@ -37,22 +57,22 @@ public class GameBoard extends GridPane {
     /**
      * Number of columns in the board
      */
-    private final int cols;
+    protected final int cols;
 
     /**
      * Number of rows in the board
      */
-    private final int rows;
+    protected final int rows;
 
     /**
      * The visual width of the board - has to be specified due to being a Canvas
      */
-    private final double width;
+    protected final double width;
 
     /**
      * The visual height of the board - has to be specified due to being a Canvas
      */
-    private final double height;
+    protected final double height;
 
     /**
      * The grid this GameBoard represents
@@ -74,6 +94,24 @@ public class GameBoard extends GridPane {
      */
     private Game game;
 
+    /**
+     * Block the ghost is centred on, -1 when the mouse is off the board
+     */
+    private int ghostX = -1;
+    private int ghostY = -1;
+
+    /**
+     * Blocks currently showing the ghost, packed as y * cols + x
+     */
+    private final int[] ghostCells = new int[PieceMasks.SIZE * PieceMasks.SIZE];
+    private int ghostCount = 0;
+
+    /**
+     * Blocks currently showing the hint, packed as y * cols + x. The ghost is drawn over the hint
+     */
+    private final int[] hintCells = new int[PieceMasks.SIZE * PieceMasks.SIZE];
+    private int hintCount = 0;
+
     /**
      * Create a new GameBoard, based off a given grid, with a visual width and height.
      * @param grid linked grid
@@ -140,6 +178,21 @@ public class GameBoard extends GridPane {
                 createBlock(x,y);
             }
         }
+
+        //Apply each batch of grid changes to the blocks that changed
+        grid.addChangeListener(this::gridChanged);
+    }
+
+    /**
+     * Copy the changed grid values into their blocks, each block repaints once
+     * @param grid grid that changed
+     * @param cells packed coordinates of the changed cells
+     */
+    private void gridChanged(Grid grid, CoordinateSet cells) {
+        for (int slot = cells.nextSlot(0); slot >= 0; slot = cells.nextSlot(slot + 1)) {
+            int cell = cells.get(slot);
+            blocks[Coordinates.x(cell)][Coordinates.y(cell)].setValue(grid.get(Coordinates.x(cell), Coordinates.y(cell)));
+        }
     }
 
     /**
@@ -160,12 +213,16 @@ public class GameBoard extends GridPane {
         //Add to our block directory
         blocks[x][y] = block;
 
-        //Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x,y));
+        //Start from the value in the Grid, later changes arrive through gridChanged
+        block.setValue(grid.get(x,y));
 
         //Add a mouse click handler to the block to trigger GameBoard blockClicked method
         block.setOnMouseClicked((e) -> blockClicked(e, block));
 
+        //Move the ghost of the current piece with the mouse
+        block.addEventHandler(MouseEvent.MOUSE_ENTERED, (e) -> showGhost(x, y));
+        block.addEventHandler(MouseEvent.MOUSE_EXITED, (e) -> hideGhost());
+
         //Add a mouse click handler for left or right-clicked
 
         return block;
@@ -209,14 +266,133 @@ public class GameBoard extends GridPane {
         this.game = game;
     }
 
+    /**
+     * Show the ghost of the current piece centred on a block
+     * @param x column
+     * @param y row
+     */
+    public void showGhost(int x, int y) {
+        ghostX = x;
+        ghostY = y;
+        refreshGhost();
+    }
+
+    /**
+     * Hide the ghost, for when the mouse leaves the board
+     */
+    public void hideGhost() {
+        ghostX = -1;
+        ghostY = -1;
+        refreshGhost();
+    }
+
+    /**
+     * Redraw the ghost, for when the current piece is rotated or swapped. Uses the piece masks and the grid occupancy,
+     * so it never goes through canPlayPiece.
+     */
+    public void refreshGhost() {
+        for (int i = 0; i < ghostCount; i++) {
+            int cell = ghostCells[i];
+            setGhost(cell % cols, cell / cols, contains(hintCells, hintCount, cell) ? GHOST_HINT : GHOST_NONE);
+        }
+        ghostCount = 0;
+
+        if (game == null || ghostX < 0 || game.getCurrentPiece() == null) {
+            return;
+        }
+        int mask = PieceMasks.mask(game.getCurrentPiece());
+        int state = grid.fits(mask, ghostX, ghostY) ? GHOST_LEGAL : GHOST_ILLEGAL;
+        for (int row = 0; row < PieceMasks.SIZE; row++) {
+            int bits = PieceMasks.row(mask, row);
+            for (int column = 0; column < PieceMasks.SIZE; column++) {
+                int x = ghostX - 1 + column;
+                int y = ghostY - 1 + row;
+                if ((bits & 1 << column) == 0 || x < 0 || y < 0 || x >= cols || y >= rows) {
+                    continue;
+                }
+                ghostCells[ghostCount++] = y * cols + x;
+                setGhost(x, y, state);
+            }
+        }
+    }
+
+    /**
+     * Highlight where the hint suggests playing a piece
+     * @param mask piece mask from PieceMasks
+     * @param hintX column of the centre of the piece
+     * @param hintY row of the centre of the piece
+     */
+    public void showHint(int mask, int hintX, int hintY) {
+        hideHint();
+        for (int row = 0; row < PieceMasks.SIZE; row++) {
+            int bits = PieceMasks.row(mask, row);
+            for (int column = 0; column < PieceMasks.SIZE; column++) {
+                int x = hintX - 1 + column;
+                int y = hintY - 1 + row;
+                if ((bits & 1 << column) == 0 || x < 0 || y < 0 || x >= cols || y >= rows) {
+                    continue;
+                }
+                int cell = y * cols + x;
+                hintCells[hintCount++] = cell;
+                if (!contains(ghostCells, ghostCount, cell)) {
+                    setGhost(x, y, GHOST_HINT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the hint highlight
+     */
+    public void hideHint() {
+        for (int i = 0; i < hintCount; i++) {
+            int cell = hintCells[i];
+            if (!contains(ghostCells, ghostCount, cell)) {
+                setGhost(cell % cols, cell / cols, GHOST_NONE);
+            }
+        }
+        hintCount = 0;
+    }
+
+    /**
+     * Check if a packed cell is in the first count entries of a list
+     */
+    private static boolean contains(int[] cells, int count, int cell) {
+        for (int i = 0; i < count; i++) {
+            if (cells[i] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Show or hide the ghost on one block
+     * @param x column
+     * @param y row
+     * @param state GHOST_NONE, GHOST_LEGAL, GHOST_ILLEGAL or GHOST_HINT
+     */
+    protected void setGhost(int x, int y, int state) {
+        blocks[x][y].setGhost(state);
+    }
+
     /**
      * Help trigger fadeOut method from GameBlock
-     * @param gameBlockCoordinates gameBlockCoordinates
+     * @param clearedLines cleared cells
      */
-    public void fadeOut(Set<GameBlockCoordinate> gameBlockCoordinates) {
-        for(GameBlockCoordinate gameBlockCoordinate : gameBlockCoordinates){
-            getBlock(gameBlockCoordinate.getX(), gameBlockCoordinate.getY()).fadeOut();
+    public void fadeOut(ClearedLines clearedLines) {
+        for (int cell = clearedLines.nextCleared(0); cell >= 0; cell = clearedLines.nextCleared(cell + 1)) {
+            fadeOut(cell % cols, cell / cols);
         }
     }
 
+    /**
+     * Fade out one cell
+     * @param x column
+     * @param y row
+     */
+    protected void fadeOut(int x, int y) {
+        getBlock(x, y).fadeOut();
+    }
+
 }
@@ -0,0 +1,172 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import uk.ac.soton.comp1206.ui.AnimationScheduler;
+
+/**
+ * A canvas drawn over the board that shows particle bursts for line clears, combos and level ups.
+ *
+ * Particles are kept as parallel arrays of primitives sized to a fixed budget when the layer is made, with the live
+ * particles packed at the front. Spawning, moving and drawing particles allocates nothing, and once the budget is full
+ * new bursts are trimmed rather than growing the arrays. The layer only runs on the AnimationScheduler while particles
+ * are alive.
+ */
+public class ParticleLayer extends Canvas implements AnimationScheduler.Effect {
+
+  /**
+   * Downward pull on particles, in pixels per second squared
+   */
+  private static final float GRAVITY = 400f;
+
+  /**
+   * Size of a particle in pixels
+   */
+  private static final double SIZE = 4;
+
+  /**
+   * Colours particles can take, the same as the blocks
+   */
+  private static final Color[] PALETTE = GameBlock.COLOURS;
+
+  private final float[] x;
+  private final float[] y;
+  private final float[] vx;
+  private final float[] vy;
+  private final float[] life;
+  private final float[] maxLife;
+  private final int[] colour;
+
+  /**
+   * Number of live particles, packed at the front of the arrays
+   */
+  private int count = 0;
+
+  /**
+   * Time of the last frame, -1 before the first
+   */
+  private long lastFrame = -1;
+
+  /**
+   * State of the random number generator
+   */
+  private int seed = 1206;
+
+  /**
+   * Create a particle layer
+   * @param width width
+   * @param height height
+   * @param budget most particles alive at once
+   */
+  public ParticleLayer(double width, double height, int budget) {
+    super(width, height);
+    x = new float[budget];
+    y = new float[budget];
+    vx = new float[budget];
+    vy = new float[budget];
+    life = new float[budget];
+    maxLife = new float[budget];
+    colour = new int[budget];
+    setMouseTransparent(true);
+  }
+
+  /**
+   * Spawn a burst of particles
+   * @param centreX x position
+   * @param centreY y position
+   * @param particles number of particles, trimmed to the free budget
+   * @param colourIndex index into the block colours, 0 for a mix
+   * @param speed top speed in pixels per second
+   */
+  public void burst(double centreX, double centreY, int particles, int colourIndex, double speed) {
+    int spawn = Math.min(particles, x.length - count);
+    for (int i = 0; i < spawn; i++) {
+      int p = count++;
+      double angle = random() * Math.PI * 2;
+      double velocity = speed * (0.3 + 0.7 * random());
+      x[p] = (float) centreX;
+      y[p] = (float) centreY;
+      vx[p] = (float) (Math.cos(angle) * velocity);
+      vy[p] = (float) (Math.sin(angle) * velocity);
+      maxLife[p] = (float) (0.4 + 0.6 * random());
+      life[p] = maxLife[p];
+      colour[p] = colourIndex > 0 ? colourIndex : 1 + (int) (random() * (PALETTE.length - 1));
+    }
+    if (spawn > 0) {
+      AnimationScheduler.get().add(this);
+    }
+  }
+
+  /**
+   * Get the number of live particles
+   * @return live particles
+   */
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Move and draw the particles
+   * @param now pulse time
+   * @return whether any particles are left
+   */
+  @Override
+  public boolean tick(long now) {
+    float dt = lastFrame < 0 ? 0 : Math.min((now - lastFrame) / 1e9f, 0.05f);
+    lastFrame = now;
+
+    GraphicsContext gc = getGraphicsContext2D();
+    gc.clearRect(0, 0, getWidth(), getHeight());
+
+    int i = 0;
+    while (i < count) {
+      life[i] -= dt;
+      if (life[i] <= 0) {
+        remove(i);
+        continue;
+      }
+      vy[i] += GRAVITY * dt;
+      x[i] += vx[i] * dt;
+      y[i] += vy[i] * dt;
+
+      gc.setGlobalAlpha(life[i] / maxLife[i]);
+      gc.setFill(PALETTE[colour[i]]);
+      gc.fillRect(x[i] - SIZE / 2, y[i] - SIZE / 2, SIZE, SIZE);
+      i++;
+    }
+    gc.setGlobalAlpha(1);
+
+    if (count == 0) {
+      lastFrame = -1;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Remove a particle by moving the last live particle into its place
+   * @param i particle index
+   */
+  private void remove(int i) {
+    int last = --count;
+    x[i] = x[last];
+    y[i] = y[last];
+    vx[i] = vx[last];
+    vy[i] = vy[last];
+    life[i] = life[last];
+    maxLife[i] = maxLife[last];
+    colour[i] = colour[last];
+  }
+
+  /**
+   * Cheap xorshift random number, avoiding the shared Random
+   * @return number from 0 up to but not including 1
+   */
+  private double random() {
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+    return (seed >>> 1) / (double) (1L << 31);
+  }
+}
@@ -33,8 +33,14 @@ public class PieceBoard extends GameBoard{
    * @param piece the game piece to display inside
    */
   public void setPiece(GamePiece piece) {
-    grid.clear();
-    grid.playPiece(piece, 1, 1);
+    //One batch, so cells the old and new piece share are not repainted
+    grid.beginBatch();
+    try {
+      grid.clear();
+      grid.playPiece(piece, 1, 1);
+    } finally {
+      grid.commit();
+    }
   }
 
 }
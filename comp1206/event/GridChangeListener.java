@@ -0,0 +1,17 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.component.CoordinateSet;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * Grid change listener, called once per batch of changed cells
+ */
+public interface GridChangeListener {
+
+  /**
+   * grid changed. The set is reused by the next change, so do not keep it
+   * @param grid grid that changed
+   * @param cells packed coordinates of the cells whose value changed
+   */
+  void gridChanged(Grid grid, CoordinateSet cells);
+}
@@ -0,0 +1,15 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.Hint;
+
+/**
+ * Hint listener, called on the JavaFX thread each time the hint engine finds a better move
+ */
+public interface HintListener {
+
+  /**
+   * hint updated
+   * @param hint best move found so far, or null when no move fits
+   */
+  void hintUpdated(Hint hint);
+}
@@ -1,8 +1,6 @@
 package uk.ac.soton.comp1206.event;
 
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
-
-import java.util.Set;
+import uk.ac.soton.comp1206.game.ClearedLines;
 
 /**
  * Line cleared listener
@@ -10,8 +8,8 @@ import java.util.Set;
 public interface LineClearedListener {
 
   /**
-   * line cleared
-   * @param gameBlockCoordinates gameBlockCoordinates
+   * line cleared. The view is reused by the next move, so do not keep it
+   * @param clearedLines rows, columns and cells cleared
    */
-  void lineCleared(Set<GameBlockCoordinate> gameBlockCoordinates);
+  void lineCleared(ClearedLines clearedLines);
 }
@@ -0,0 +1,13 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * Puzzle finished listener
+ */
+public interface PuzzleFinishedListener {
+
+  /**
+   * The puzzle is over, either the board was emptied or the pieces ran out
+   * @param solved whether the board was emptied
+   */
+  void puzzleFinished(boolean solved);
+}
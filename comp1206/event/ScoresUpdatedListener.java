@@ -0,0 +1,17 @@
+package uk.ac.soton.comp1206.event;
+
+import javafx.util.Pair;
+
+import java.util.List;
+
+/**
+ * Scores updated listener
+ */
+public interface ScoresUpdatedListener {
+
+  /**
+   * Handle the stored scores changing
+   * @param scores all stored scores
+   */
+  void scoresUpdated(List<Pair<String, Integer>> scores);
+}
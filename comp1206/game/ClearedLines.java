@@ -0,0 +1,63 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Read-only view of the lines cleared by one move.
+ *
+ * The view is reused by the next move, so read what you need while handling the event rather than keeping it.
+ */
+public interface ClearedLines {
+
+  /**
+   * Get the number of rows and columns cleared
+   * @return lines
+   */
+  int getLines();
+
+  /**
+   * Get the number of cells cleared, counting a cell where a row and column cross once
+   * @return cells
+   */
+  int getBlockCount();
+
+  /**
+   * Whether a row was cleared
+   * @param y row
+   * @return cleared
+   */
+  boolean isRowCleared(int y);
+
+  /**
+   * Whether a column was cleared
+   * @param x column
+   * @return cleared
+   */
+  boolean isColumnCleared(int x);
+
+  /**
+   * Whether a cell was cleared
+   * @param x column
+   * @param y row
+   * @return cleared
+   */
+  boolean isCleared(int x, int y);
+
+  /**
+   * Find the next cleared cell, to walk them without allocating:
+   * {@code for (int cell = lines.nextCleared(0); cell >= 0; cell = lines.nextCleared(cell + 1))}
+   * @param fromCell cell to start at, as y * cols + x
+   * @return the first cleared cell at or after fromCell, or -1 if there are none
+   */
+  int nextCleared(int fromCell);
+
+  /**
+   * Get the number of columns on the board
+   * @return columns
+   */
+  int getCols();
+
+  /**
+   * Get the number of rows on the board
+   * @return rows
+   */
+  int getRows();
+}
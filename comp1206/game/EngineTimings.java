@@ -0,0 +1,58 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * How long the game engine takes over each stage of a move, for the performance HUD.
+ *
+ * Recording is just a few array writes so it is always on. Timings are only written and read on the JavaFX thread.
+ */
+public class EngineTimings {
+
+  /**
+   * Stages of a move that are timed
+   */
+  public enum Stage {
+    PLACEMENT,
+    LINE_CLEAR,
+    SCORE
+  }
+
+  /**
+   * Weight given to each new timing in the running average, as a shift: 3 means 1/8
+   */
+  private static final int SMOOTHING = 3;
+
+  private static final long[] last = new long[Stage.values().length];
+  private static final long[] average = new long[Stage.values().length];
+
+  private EngineTimings() {
+  }
+
+  /**
+   * Record how long a stage took
+   * @param stage stage
+   * @param nanos time taken in nanoseconds
+   */
+  public static void record(Stage stage, long nanos) {
+    int i = stage.ordinal();
+    last[i] = nanos;
+    average[i] = average[i] == 0 ? nanos : average[i] + ((nanos - average[i]) >> SMOOTHING);
+  }
+
+  /**
+   * Get the last time a stage took
+   * @param stage stage
+   * @return nanoseconds
+   */
+  public static long getLastNanos(Stage stage) {
+    return last[stage.ordinal()];
+  }
+
+  /**
+   * Get the running average time a stage takes
+   * @param stage stage
+   * @return nanoseconds
+   */
+  public static long getAverageNanos(Stage stage) {
+    return average[stage.ordinal()];
+  }
+}
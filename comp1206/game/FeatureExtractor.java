@@ -0,0 +1,538 @@
+package uk.ac.soton.comp1206.game;
+
+import uk.ac.soton.comp1206.component.CoordinateSet;
+import uk.ac.soton.comp1206.component.Coordinates;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the features an evaluation function looks at up to date as cells change, rather than working them out from
+ * the whole board for every position:
+ *
+ * - how full each row and column is, and how many lines are one block from complete
+ * - holes, empty cells that no piece but the Dot can fill
+ * - the largest connected empty region, worked out lazily when asked for
+ * - a Zobrist hash of the filled cells
+ *
+ * Changing a cell costs the same whatever the size of the board. Whether a cell is a hole only depends on the 5x5
+ * window around it, since every placement covering the cell fits inside that window, so a change only marks the 25
+ * cells around it to be rechecked against a precomputed list of 5x5 placement masks the next time holes are read.
+ * Search code that never reads holes does not pay for them.
+ *
+ * Attach it to a Grid to follow the game, or drive it directly with setCell, place and clearFullLines when searching.
+ * snapshot and restore undo changes for search, in time proportional to the cells changed since the snapshot.
+ */
+public class FeatureExtractor {
+
+  /**
+   * Size of the window around a cell that holds every placement covering it
+   */
+  private static final int WINDOW = 5;
+
+  /**
+   * Every placement of every piece except the Dot that covers the centre of a 5x5 window, bit y * 5 + x. A cell is a
+   * hole when each of these overlaps a filled cell
+   */
+  private static final int[] COVERS = coveringPlacements();
+
+  /**
+   * Filled cells and padding around the board, like the occupancy in Grid
+   */
+  private static final int PAD = 2;
+
+  /**
+   * Number of columns and rows
+   */
+  private final int cols;
+  private final int rows;
+
+  /**
+   * One bitmask per padded row, bit x + PAD set when the cell is filled. The padding counts as filled
+   */
+  private final int[] occupancy;
+
+  /**
+   * Filled cells in each row and column
+   */
+  private final int[] rowFill;
+  private final int[] columnFill;
+
+  /**
+   * Holes in each row, bit x set when cell x is a hole
+   */
+  private final int[] holeRows;
+
+  /**
+   * Cells whose hole status needs rechecking, bit x of each row
+   */
+  private final int[] holeDirty;
+
+  /**
+   * Zobrist hash of the filled cells
+   */
+  private long hash = 0;
+
+  /**
+   * Running totals
+   */
+  private int filled = 0;
+  private int holes = 0;
+  private int nearLines = 0;
+  private int fullLines = 0;
+
+  /**
+   * Largest empty region, valid when regionDirty is false
+   */
+  private int largestRegion;
+  private boolean regionDirty = true;
+
+  /**
+   * Scratch for the region flood fill
+   */
+  private final int[] visited;
+  private final int[] stack;
+
+  /**
+   * Cells changed since the oldest open snapshot, packed as y * cols + x, to undo on restore
+   */
+  private int[] trail = new int[64];
+  private int trailSize = 0;
+
+  /**
+   * Number of snapshots not yet restored, nothing is recorded when there are none
+   */
+  private int openSnapshots = 0;
+
+  /**
+   * Create an extractor for an empty board
+   * @param cols number of columns
+   * @param rows number of rows
+   */
+  public FeatureExtractor(int cols, int rows) {
+    this.cols = cols;
+    this.rows = rows;
+    int fullRow = (1 << (cols + PAD * 2)) - 1;
+    occupancy = new int[rows + PAD * 2];
+    Arrays.fill(occupancy, fullRow);
+    Arrays.fill(occupancy, PAD, PAD + rows, fullRow & ~(((1 << cols) - 1) << PAD));
+    rowFill = new int[rows];
+    columnFill = new int[cols];
+    holeRows = new int[rows];
+    holeDirty = new int[rows];
+    visited = new int[rows];
+    stack = new int[cols * rows];
+    largestRegion = cols * rows;
+    //A board too small for anything but the Dot starts with holes
+    Arrays.fill(holeDirty, (1 << cols) - 1);
+  }
+
+  /**
+   * Copy a grid and follow every change to it from now on
+   * @param grid grid to follow, the same size as this extractor
+   */
+  public void attach(Grid grid) {
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        setCell(x, y, grid.get(x, y) > 0);
+      }
+    }
+    grid.addChangeListener(this::gridChanged);
+  }
+
+  /**
+   * Apply a batch of grid changes
+   */
+  private void gridChanged(Grid grid, CoordinateSet cells) {
+    for (int slot = cells.nextSlot(0); slot >= 0; slot = cells.nextSlot(slot + 1)) {
+      int cell = cells.get(slot);
+      int x = Coordinates.x(cell);
+      int y = Coordinates.y(cell);
+      setCell(x, y, grid.get(x, y) > 0);
+    }
+  }
+
+  /**
+   * Fill or empty a cell and update every feature it affects
+   * @param x column
+   * @param y row
+   * @param fill whether the cell is filled
+   */
+  public void setCell(int x, int y, boolean fill) {
+    int bit = 1 << (x + PAD);
+    if (((occupancy[y + PAD] & bit) != 0) == fill) {
+      return;
+    }
+    if (openSnapshots > 0) {
+      record(y * cols + x);
+    }
+
+    int rowBefore = rowFill[y];
+    int columnBefore = columnFill[x];
+    int change = fill ? 1 : -1;
+    occupancy[y + PAD] ^= bit;
+    hash ^= Zobrist.cell(x, y);
+    rowFill[y] += change;
+    columnFill[x] += change;
+    filled += change;
+    countLine(rowBefore, cols, -1);
+    countLine(rowFill[y], cols, 1);
+    countLine(columnBefore, rows, -1);
+    countLine(columnFill[x], rows, 1);
+    regionDirty = true;
+
+    //Only cells whose 5x5 window holds this cell can change hole status
+    int columns = (x >= 2 ? 0x1F << (x - 2) : 0x1F >> (2 - x)) & ((1 << cols) - 1);
+    for (int ny = Math.max(0, y - 2); ny <= Math.min(rows - 1, y + 2); ny++) {
+      holeDirty[ny] |= columns;
+    }
+  }
+
+  /**
+   * Check if a piece mask fits on the board, the same as Grid.fits
+   * @param mask piece mask from PieceMasks
+   * @param placeX column of the centre of the piece
+   * @param placeY row of the centre of the piece
+   * @return whether the piece can be played there
+   */
+  public boolean fits(int mask, int placeX, int placeY) {
+    if (placeX < -1 || placeX > cols || placeY < -1 || placeY > rows) {
+      return false;
+    }
+    int shift = placeX - 1 + PAD;
+    for (int row = 0; row < PieceMasks.SIZE; row++) {
+      if ((PieceMasks.row(mask, row) << shift & occupancy[placeY - 1 + row + PAD]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Fill the cells of a piece mask, without checking it fits
+   * @param mask piece mask from PieceMasks
+   * @param placeX column of the centre of the piece
+   * @param placeY row of the centre of the piece
+   */
+  public void place(int mask, int placeX, int placeY) {
+    for (int row = 0; row < PieceMasks.SIZE; row++) {
+      int bits = PieceMasks.row(mask, row);
+      for (int column = 0; column < PieceMasks.SIZE; column++) {
+        if ((bits & 1 << column) != 0) {
+          setCell(placeX - 1 + column, placeY - 1 + row, true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Empty every full row and column, the same as Game does after a piece
+   * @return number of lines cleared
+   */
+  public int clearFullLines() {
+    if (fullLines == 0) {
+      return 0;
+    }
+    int fullRows = 0;
+    int fullColumns = 0;
+    for (int y = 0; y < rows; y++) {
+      if (rowFill[y] == cols) {
+        fullRows |= 1 << y;
+      }
+    }
+    for (int x = 0; x < cols; x++) {
+      if (columnFill[x] == rows) {
+        fullColumns |= 1 << x;
+      }
+    }
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        if ((fullRows >> y & 1) != 0 || (fullColumns >> x & 1) != 0) {
+          setCell(x, y, false);
+        }
+      }
+    }
+    return Integer.bitCount(fullRows) + Integer.bitCount(fullColumns);
+  }
+
+  /**
+   * Mark the current state so it can be restored. Snapshots nest, restore the newest first
+   * @return snapshot to pass to restore
+   */
+  public int snapshot() {
+    openSnapshots++;
+    return trailSize;
+  }
+
+  /**
+   * Undo every change made since a snapshot
+   * @param snapshot value returned by snapshot
+   */
+  public void restore(int snapshot) {
+    if (openSnapshots == 0 || snapshot > trailSize) {
+      throw new IllegalStateException("No such snapshot: " + snapshot);
+    }
+    //Changes are undone without being recorded again
+    int open = openSnapshots;
+    openSnapshots = 0;
+    while (trailSize > snapshot) {
+      int cell = trail[--trailSize];
+      int x = cell % cols;
+      int y = cell / cols;
+      setCell(x, y, !isFilled(x, y));
+    }
+    openSnapshots = open - 1;
+  }
+
+  /**
+   * Check if a cell is filled
+   * @param x column
+   * @param y row
+   * @return filled
+   */
+  public boolean isFilled(int x, int y) {
+    return (occupancy[y + PAD] >> (x + PAD) & 1) != 0;
+  }
+
+  /**
+   * Check if a cell is a hole, empty and only fillable by the Dot
+   * @param x column
+   * @param y row
+   * @return hole
+   */
+  public boolean isHole(int x, int y) {
+    updateHoles();
+    return (holeRows[y] >> x & 1) != 0;
+  }
+
+  /**
+   * Get the number of filled cells in a row
+   * @param y row
+   * @return fill
+   */
+  public int getRowFill(int y) {
+    return rowFill[y];
+  }
+
+  /**
+   * Get the number of filled cells in a column
+   * @param x column
+   * @return fill
+   */
+  public int getColumnFill(int x) {
+    return columnFill[x];
+  }
+
+  /**
+   * Get the number of filled cells
+   * @return filled
+   */
+  public int getFilled() {
+    return filled;
+  }
+
+  /**
+   * Get the number of rows and columns with exactly one empty cell
+   * @return near complete lines
+   */
+  public int getNearCompleteLines() {
+    return nearLines;
+  }
+
+  /**
+   * Get the number of full rows and columns, waiting to be cleared
+   * @return full lines
+   */
+  public int getFullLines() {
+    return fullLines;
+  }
+
+  /**
+   * Get the number of empty cells that only the Dot can fill
+   * @return holes
+   */
+  public int getHoles() {
+    updateHoles();
+    return holes;
+  }
+
+  /**
+   * Get the Zobrist hash of the filled cells, the same as Grid.getHash for the same board
+   * @return hash
+   */
+  public long getHash() {
+    return hash;
+  }
+
+  /**
+   * Get the size of the largest group of empty cells joined up, down, left or right. Worked out on the first call after
+   * a change
+   * @return cells in the largest empty region
+   */
+  public int getLargestEmptyRegion() {
+    if (regionDirty) {
+      largestRegion = findLargestRegion();
+      regionDirty = false;
+    }
+    return largestRegion;
+  }
+
+  /**
+   * Add a line's contribution to the near and full counts
+   * @param fill cells filled in the line
+   * @param length cells in the line
+   * @param sign 1 to add, -1 to remove
+   */
+  private void countLine(int fill, int length, int sign) {
+    if (fill == length) {
+      fullLines += sign;
+    } else if (fill == length - 1) {
+      nearLines += sign;
+    }
+  }
+
+  /**
+   * Recheck every cell marked since holes were last read
+   */
+  private void updateHoles() {
+    for (int y = 0; y < rows; y++) {
+      int dirty = holeDirty[y];
+      holeDirty[y] = 0;
+      while (dirty != 0) {
+        updateHole(Integer.numberOfTrailingZeros(dirty), y);
+        dirty &= dirty - 1;
+      }
+    }
+  }
+
+  /**
+   * Work out if a cell is a hole and update the count
+   */
+  private void updateHole(int x, int y) {
+    boolean hole = !isFilled(x, y) && blocked(window(x, y));
+    boolean was = (holeRows[y] >> x & 1) != 0;
+    if (hole != was) {
+      holeRows[y] ^= 1 << x;
+      holes += hole ? 1 : -1;
+    }
+  }
+
+  /**
+   * Get the 5x5 window of occupancy centred on a cell, bit dy * 5 + dx, with everything off the board filled
+   */
+  private int window(int x, int y) {
+    int window = 0;
+    //Padded row y + r holds board row y - 2 + r, and padded column x holds board column x - 2
+    for (int r = 0; r < WINDOW; r++) {
+      int padded = y + r;
+      int bits = padded < occupancy.length ? occupancy[padded] >> x & 0x1F : 0x1F;
+      window |= bits << (r * WINDOW);
+    }
+    return window;
+  }
+
+  /**
+   * Check if every placement covering the centre of a window overlaps a filled cell
+   */
+  private static boolean blocked(int window) {
+    for (int cover : COVERS) {
+      if ((window & cover) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Flood fill every empty region and return the size of the largest
+   */
+  private int findLargestRegion() {
+    for (int y = 0; y < rows; y++) {
+      visited[y] = occupancy[y + PAD] >> PAD & ((1 << cols) - 1);
+    }
+    int largest = 0;
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        if ((visited[y] >> x & 1) != 0) {
+          continue;
+        }
+        int size = 0;
+        int top = 0;
+        visited[y] |= 1 << x;
+        stack[top++] = y * cols + x;
+        while (top > 0) {
+          int cell = stack[--top];
+          int cx = cell % cols;
+          int cy = cell / cols;
+          size++;
+          top = visit(cx - 1, cy, top);
+          top = visit(cx + 1, cy, top);
+          top = visit(cx, cy - 1, top);
+          top = visit(cx, cy + 1, top);
+        }
+        largest = Math.max(largest, size);
+      }
+    }
+    return largest;
+  }
+
+  /**
+   * Push a cell onto the flood fill stack if it is empty and not yet visited
+   * @return new stack size
+   */
+  private int visit(int x, int y, int top) {
+    if (x < 0 || y < 0 || x >= cols || y >= rows || (visited[y] >> x & 1) != 0) {
+      return top;
+    }
+    visited[y] |= 1 << x;
+    stack[top] = y * cols + x;
+    return top + 1;
+  }
+
+  /**
+   * Remember a changed cell for restore
+   */
+  private void record(int cell) {
+    if (trailSize == trail.length) {
+      trail = Arrays.copyOf(trail, trail.length * 2);
+    }
+    trail[trailSize++] = cell;
+  }
+
+  /**
+   * Work out every placement of a piece with more than one block that covers the centre of a 5x5 window
+   */
+  private static int[] coveringPlacements() {
+    int[] found = new int[GamePiece.PIECES * 4 * PieceMasks.SIZE * PieceMasks.SIZE];
+    int count = 0;
+    for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+      for (int rotation = 0; rotation < 4; rotation++) {
+        int mask = PieceMasks.mask(piece, rotation);
+        if (Integer.bitCount(mask) < 2) {
+          continue;
+        }
+        //Line the piece up so each of its blocks in turn sits on the centre
+        for (int block = 0; block < PieceMasks.SIZE * PieceMasks.SIZE; block++) {
+          if ((mask >> block & 1) == 0) {
+            continue;
+          }
+          int offsetX = 2 - block % PieceMasks.SIZE;
+          int offsetY = 2 - block / PieceMasks.SIZE;
+          int cover = 0;
+          for (int cell = 0; cell < PieceMasks.SIZE * PieceMasks.SIZE; cell++) {
+            if ((mask >> cell & 1) != 0) {
+              cover |= 1 << ((cell / PieceMasks.SIZE + offsetY) * WINDOW + cell % PieceMasks.SIZE + offsetX);
+            }
+          }
+          boolean seen = false;
+          for (int i = 0; i < count && !seen; i++) {
+            seen = found[i] == cover;
+          }
+          if (!seen) {
+            found[count++] = cover;
+          }
+        }
+      }
+    }
+    return Arrays.copyOf(found, count);
+  }
+}
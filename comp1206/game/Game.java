@@ -6,12 +6,10 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.Multimedia;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.UUID;
 import java.util.concurrent.*;
 
 import javafx.beans.property.IntegerProperty;
@@ -19,7 +17,13 @@ import javafx.beans.property.SimpleIntegerProperty;
 import uk.ac.soton.comp1206.event.GameLoopListener;
 import uk.ac.soton.comp1206.event.LineClearedListener;
 import uk.ac.soton.comp1206.event.NextPieceListener;
-import uk.ac.soton.comp1206.scene.ScoreScene;
+import uk.ac.soton.comp1206.jfr.GameLoopTickEvent;
+import uk.ac.soton.comp1206.jfr.LifeLostEvent;
+import uk.ac.soton.comp1206.jfr.LineClearEvent;
+import uk.ac.soton.comp1206.jfr.PiecePlacementEvent;
+import uk.ac.soton.comp1206.metrics.Counter;
+import uk.ac.soton.comp1206.metrics.Histogram;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
 /**
@@ -34,9 +38,19 @@ public class Game {
     private static final Logger logger = LogManager.getLogger(Game.class);
 
     /**
-     * Use random to spawn piece
+     * Upcoming pieces known when -Dtetrecs.lookahead is not set
      */
-    private final Random random = new Random();
+    private static final int DEFAULT_LOOKAHEAD = 3;
+
+    /**
+     * Seed for the piece generator, logged so a game can be replayed with -Dtetrecs.seed
+     */
+    private final long seed = Long.getLong("tetrecs.seed", System.nanoTime());
+
+    /**
+     * Upcoming pieces, guarded by this game
+     */
+    private final PieceQueue pieceQueue;
 
     /**
      * nextLoop scheduler
@@ -53,6 +67,19 @@ public class Game {
      */
     private final ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
 
+    /**
+     * Time the next game loop should fire, to measure how late the timer is
+     */
+    private volatile long loopDue;
+
+    /**
+     * Metrics for moves and the game loop
+     */
+    private static final Histogram moveLatency = MetricsRegistry.get().histogram("game.move.latency");
+    private static final Histogram loopJitter = MetricsRegistry.get().histogram("game.loop.jitter");
+    private static final Histogram linesPerMove = MetricsRegistry.get().histogram("game.move.lines");
+    private static final Counter rejectedMoves = MetricsRegistry.get().counter("game.move.rejected");
+
     /**
      * NextPieceListener field
      */
@@ -63,11 +90,26 @@ public class Game {
      */
     private LineClearedListener lineClearedListener = null;
 
+    /**
+     * Lines cleared by the last move, reused every move
+     */
+    private final LineClearResult clearResult;
+
+    /**
+     * Board features for evaluation, following the grid
+     */
+    private final FeatureExtractor features;
+
     /**
      * gameWindow
      */
     private GameWindow gameWindow;
 
+    /**
+     * ID of this game, used so its score is only submitted once
+     */
+    private final String gameId = UUID.randomUUID().toString();
+
     /**
      * Number of rows
      */
@@ -88,11 +130,6 @@ public class Game {
      */
     private GamePiece currentPiece;
 
-    /**
-     * gamePiece for followingPiece
-     */
-    private GamePiece followingPiece;
-
     /**
      * Bindable game properties
      * 0 score
@@ -127,11 +164,26 @@ public class Game {
      * @param rows number of rows
      */
     public Game(int cols, int rows, GameWindow gameWindow) {
+        this(cols, rows, gameWindow, null);
+    }
+
+    /**
+     * Create a new game that takes its pieces from the given generator
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param generator piece generator, or null for the one chosen by -Dtetrecs.randomizer
+     */
+    protected Game(int cols, int rows, GameWindow gameWindow, PieceGenerator generator) {
         this.gameWindow = gameWindow;
+        this.pieceQueue = new PieceQueue(generator != null ? generator : PieceGenerator.create(seed),
+            lookahead());
         this.cols = cols;
         this.rows = rows;
         //Create a new grid model to represent the game state
         this.grid = new Grid(cols,rows);
+        this.clearResult = new LineClearResult(cols, rows);
+        this.features = new FeatureExtractor(cols, rows);
+        features.attach(grid);
     }
 
     /**
@@ -147,11 +199,7 @@ public class Game {
      * Initialise a new game and set up anything that needs to be done at the start
      */
     public void initialiseGame() {
-        logger.info("Initialising game");
-
-        //Initialise followingPiece at the start of the game.
-        followingPiece = spawnPiece();
-
+        logger.info("Initialising game, piece seed {}", seed);
     }
 
     /**
@@ -177,27 +225,22 @@ public class Game {
      * @return currentPiece
      */
     public GamePiece nextPiece(){
-            currentPiece = followingPiece;
-            followingPiece = spawnPiece();
+            GamePiece piece = spawnPiece();
             for (NextPieceListener listener : nextPieceListener) {
-                listener.nextPiece(currentPiece);
+                listener.nextPiece(piece);
             }
-            logger.info("The current piece is {}", currentPiece);
-            logger.info("Next Piece: {}", followingPiece);
-            return currentPiece;
+            logger.info("The current piece is {}", piece);
+            return piece;
 
     }
 
     /**
-     * Return a GamePiece
+     * Take the next piece off the queue and make it the current piece
      * @return piece
      */
-    public GamePiece spawnPiece(){
-        var maxPieces = GamePiece.PIECES;
-        var randomPiece = random.nextInt(maxPieces);
-        logger.info("Picking random piece: {} ", randomPiece);
-        var piece = GamePiece.createPiece(randomPiece);
-        return piece;
+    public synchronized GamePiece spawnPiece(){
+        currentPiece = pieceQueue.next();
+        return currentPiece;
     }
 
 
@@ -206,32 +249,45 @@ public class Game {
      * @return gamePiece
      */
     public GamePiece getSpawnPiece() {
-        return followingPiece;
+        return getFollowingPiece();
     }
 
     /**
-     * Clear any full vertical/horizontal lines that have been made
+     * Find and clear any full rows and columns, then score them
      */
     public void afterPiece(){
-        //Store number of lines to clear
-        int lines =0;
-        //blocks to clear
-        HashSet<GameBlockCoordinate> clearBlocks = new HashSet<>();
-
-        //I will separate rows and columns into different methods to make the code clear.
-        lines += clearRows(lines, clearBlocks);
-        lines = clearColumns(lines, clearBlocks);
-        score(lines, clearBlocks);
+        LineClearEvent lineClear = new LineClearEvent();
+        lineClear.begin();
+        int scoredMultiplier = multiplier.get();
+        long start = System.nanoTime();
+
+        //Find every full line before clearing any, so a row and column that cross are both cleared
+        clearResult.reset();
+        findFullRows(clearResult);
+        findFullColumns(clearResult);
+        clearLines(clearResult);
+        long cleared = System.nanoTime();
+        EngineTimings.record(EngineTimings.Stage.LINE_CLEAR, cleared - start);
+
+        score(clearResult);
+        EngineTimings.record(EngineTimings.Stage.SCORE, System.nanoTime() - cleared);
+        linesPerMove.record(clearResult.getLines());
+        if (clearResult.getLines() > 0 && lineClear.shouldCommit()) {
+            lineClear.lines = clearResult.getLines();
+            lineClear.blocks = clearResult.getBlockCount();
+            lineClear.multiplier = scoredMultiplier;
+            lineClear.commit();
+        }
     }
 
     /**
-     * Clear rows
-     * @param lines store number of lines to clear
-     * @param clearBlocks blocks to clear
-     * @return lines
+     * Mark the full rows
+     * @param result result to mark them in
+     * @return number of full rows
      */
-    public int clearRows(int lines, HashSet<GameBlockCoordinate> clearBlocks) {
-        for (int y = 0; y < getRows(); y++){
+    public int findFullRows(LineClearResult result) {
+        int found = 0;
+        for (int y = 0; y < rows; y++){
             boolean isRowFull = true;
             for(int x = 0; x < cols; x++){
                 if (grid.get(x,y) == 0){
@@ -241,28 +297,21 @@ public class Game {
             }
 
             if(isRowFull){
-                logger.info("Clearing rows");
-                clearColumns(lines, clearBlocks);
-                lines++;
-                for (int x = 0; x<getCols();x++){
-                    grid.set(x,y,0);
-                    logger.info("Playing clear row sound effect");
-                    Multimedia.playAudioFile("clear.wav");
-                    clearBlocks.add(new GameBlockCoordinate(x,y));
-                }
+                result.markRow(y);
+                found++;
             }
         }
-        return lines;
+        return found;
     }
 
     /**
-     * Clear columns
-     * @param lines store number of lines to clear
-     * @param clearBlocks blocks to clear
-     * @return lines
+     * Mark the full columns
+     * @param result result to mark them in
+     * @return number of full columns
      */
-    public int clearColumns(int lines, HashSet<GameBlockCoordinate> clearBlocks){
-        for(int x = 0; x < getCols(); x++){
+    public int findFullColumns(LineClearResult result){
+        int found = 0;
+        for(int x = 0; x < cols; x++){
             boolean isColFull = true;
             for(int y = 0; y < rows; y++){
                 if(grid.get(x,y) == 0){
@@ -272,26 +321,37 @@ public class Game {
             }
 
             if(isColFull){
-                logger.info("Clearing column");
-                lines++;
-                for(int y = 0 ; y < getRows() ; y++){
-                    grid.set(x,y,0);
-                    logger.info("Playing clear column sound effect");
-                    Multimedia.playAudioFile("clear.wav");
-                    clearBlocks.add(new GameBlockCoordinate(x,y));
-                }
+                result.markColumn(x);
+                found++;
             }
         }
-        return lines;
+        return found;
+    }
+
+    /**
+     * Empty every cell in the marked lines
+     * @param cleared lines to clear
+     */
+    public void clearLines(ClearedLines cleared){
+        if (cleared.getLines() == 0) {
+            return;
+        }
+        logger.info("Clearing {} lines", cleared.getLines());
+        for (int line = 0; line < cleared.getLines(); line++) {
+            Multimedia.playAudioFile("clear.wav");
+        }
+        for (int cell = cleared.nextCleared(0); cell >= 0; cell = cleared.nextCleared(cell + 1)) {
+            grid.set(cell % cols, cell / cols, 0);
+        }
     }
 
     /**
      * Add a score based on the following formula
-     * @param lines number of lines
-     * @param clearBlocks number of blocks
+     * @param cleared lines cleared by the move
      */
-    public void score(int lines, HashSet<GameBlockCoordinate> clearBlocks){
-        int scoreFormula = lines * clearBlocks.size() * 10 * multiplier.get();
+    public void score(ClearedLines cleared){
+        int lines = cleared.getLines();
+        int scoreFormula = lines * cleared.getBlockCount() * 10 * multiplier.get();
         if(lines > 0){
             scores.set(getScores() + scoreFormula);
             //Multiplier
@@ -304,7 +364,7 @@ public class Game {
         }
 
         if (lineClearedListener != null){
-            lineClearedListener.lineCleared(clearBlocks);
+            lineClearedListener.lineCleared(cleared);
         }
     }
 
@@ -324,12 +384,17 @@ public class Game {
      */
     public void swapCurrentPiece(){
         logger.info("Swapping piece !");
-        GamePiece tmp = currentPiece;
-        currentPiece = followingPiece;
-        followingPiece = tmp;
+        GamePiece piece;
+        synchronized (this) {
+            if (currentPiece == null) {
+                return;
+            }
+            currentPiece = pieceQueue.replace(0, currentPiece);
+            piece = currentPiece;
+        }
 
         for (NextPieceListener listener : nextPieceListener) {
-            listener.nextPiece(currentPiece);
+            listener.nextPiece(piece);
         }
 
     }
@@ -362,11 +427,10 @@ public class Game {
     public void stopGame(){
         try {
             stopGameLoop();
-            ScoreScene scoreScene = new ScoreScene(gameWindow);
-            scoreScene.addScore(new Pair<>("Karso", scores.get()));
-            scoreScene.saveCurrentScores();
+            gameWindow.getScoreRepository().addScore(new Pair<>(gameWindow.getPlayerName(), scores.get()));
+            gameWindow.getScoreOutbox().submit(gameId, gameWindow.getPlayerName(), scores.get());
             stop();
-            gameWindow.startScore();
+            gameWindow.startScore(scores.get());
         } catch (Exception e){
             logger.error("Fail to stop the game, {}", e.toString());
         }
@@ -377,6 +441,7 @@ public class Game {
      * Start game loop
      */
     public void startGameLoop() {
+        loopDue = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(getTimerDelay());
         nextLoop = executorService.schedule(this::gameLoop, getTimerDelay(), TimeUnit.MILLISECONDS);
         if(gameLoopListener != null) {
             gameLoopListener.gameLoopListener(getTimerDelay());
@@ -389,6 +454,10 @@ public class Game {
      * The multiplier is set back to 1.
      */
     public void gameLoop() {
+        long lateness = System.nanoTime() - loopDue;
+        loopJitter.record(Math.abs(lateness) / 1000);
+        GameLoopTickEvent tick = new GameLoopTickEvent();
+        tick.begin();
         logger.info("Wait what the gameLoop() is working ??? Am i dreaming ???");
         if(multiplier.get() > 1) {
             logger.info("Reset multiplier : {}", getMultiplier());
@@ -405,12 +474,18 @@ public class Game {
             }, 1, TimeUnit.MILLISECONDS);
             logger.info("Lives now : {}", getLives());
             Multimedia.playAudioFile("lifelose.wav");
+            LifeLostEvent lifeLost = new LifeLostEvent();
+            if (lifeLost.shouldCommit()) {
+                lifeLost.livesLeft = lives.get() - 1;
+                lifeLost.commit();
+            }
             int timerDelay = getTimerDelay();
 
             if(gameLoopListener != null) {
                 gameLoopListener.gameLoopListener(timerDelay);
             }
 
+            loopDue = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timerDelay);
             nextLoop = executorService.schedule(this::gameLoop, timerDelay, TimeUnit.MILLISECONDS);
         }
         else {
@@ -421,6 +496,11 @@ public class Game {
 
         nextPiece();
 
+        if (tick.shouldCommit()) {
+            tick.timerDelay = getTimerDelay();
+            tick.lateness = lateness;
+            tick.commit();
+        }
     }
 
 
@@ -475,16 +555,38 @@ public class Game {
         int y = gameBlock.getY();
 
         //Get the new value for this block
-        if(grid.canPlayPiece(currentPiece,x,y)) {
+        PiecePlacementEvent placement = new PiecePlacementEvent();
+        placement.begin();
+        long start = System.nanoTime();
+        boolean canPlay = grid.canPlayPiece(currentPiece,x,y);
+        EngineTimings.record(EngineTimings.Stage.PLACEMENT, System.nanoTime() - start);
+        if (placement.shouldCommit()) {
+            placement.piece = currentPiece.toString();
+            placement.x = x;
+            placement.y = y;
+            placement.legal = canPlay;
+        }
+        if(canPlay) {
             logger.info("Playing place music");
             Multimedia.playAudioFile("place.wav");
-            grid.playPiece(currentPiece, x, y);
-            restartGameLoop();
-            afterPiece();
+            //Placement and line clears reach the board as one change, cells filled and cleared in the same move
+            //never repaint
+            grid.beginBatch();
+            try {
+                grid.playPiece(currentPiece, x, y);
+                placement.commit();
+                restartGameLoop();
+                afterPiece();
+            } finally {
+                grid.commit();
+            }
             nextPiece();
+            moveLatency.record((System.nanoTime() - start) / 1000);
 
         } else{
             logger.info("Playing fail music");
+            rejectedMoves.increment();
+            placement.commit();
             Multimedia.playAudioFile("fail.wav");
             logger.error("Cannot play the piece at {} {}", x,y);
         }
@@ -618,9 +720,48 @@ public class Game {
 
     /**
      * Get following piece
-     * @return followingPiece
+     * @return the next piece in the queue
+     */
+    public synchronized GamePiece getFollowingPiece() {
+        return pieceQueue.peek(0);
+    }
+
+    /**
+     * Get the board features, kept up to date as pieces are played and lines cleared
+     * @return features
      */
-    public GamePiece getFollowingPiece() {
-        return followingPiece;
+    public FeatureExtractor getFeatures() {
+        return features;
+    }
+
+    /**
+     * Get an upcoming piece, for the previews and for bots planning ahead. Do not rotate it
+     * @param index 0 for the following piece, up to getLookahead() - 1
+     * @return piece
+     */
+    public synchronized GamePiece getUpcomingPiece(int index) {
+        return pieceQueue.peek(index);
+    }
+
+    /**
+     * Get the number of upcoming pieces that can be looked at
+     * @return look-ahead
+     */
+    public int getLookahead() {
+        return pieceQueue.getLookahead();
+    }
+
+    /**
+     * Read the look-ahead from -Dtetrecs.lookahead. A value below 1 is logged and the default used instead, so it never
+     * stops a game starting
+     * @return look-ahead
+     */
+    private static int lookahead() {
+        int lookahead = Integer.getInteger("tetrecs.lookahead", DEFAULT_LOOKAHEAD);
+        if (lookahead < 1) {
+            logger.error("Fail to use a look-ahead of {}, using {}", lookahead, DEFAULT_LOOKAHEAD);
+            return DEFAULT_LOOKAHEAD;
+        }
+        return lookahead;
     }
 }
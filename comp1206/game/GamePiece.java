@@ -28,6 +28,11 @@ public class GamePiece {
      */
     private final String name;
 
+    /**
+     * Number of quarter turns applied to this piece, from 0 to 3
+     */
+    private int rotation = 0;
+
     /**
      * Create a new GamePiece of the specified piece number
      * @param piece piece number
@@ -180,6 +185,14 @@ public class GamePiece {
         return blocks;
     }
 
+    /**
+     * Get how many quarter turns this piece has been rotated by
+     * @return rotation from 0 to 3
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
     /**
      * Rotate this piece the given number of rotations
      * @param rotations number of rotations
@@ -219,6 +232,7 @@ public class GamePiece {
         rotated[0][2] = blocks[2][2];
 
         blocks = rotated;
+        rotation = (rotation + 1) % 4;
     }
 
 
@@ -5,6 +5,13 @@ import javafx.beans.property.SimpleIntegerProperty;
 import javafx.scene.input.KeyCode;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.CoordinateSet;
+import uk.ac.soton.comp1206.component.Coordinates;
+import uk.ac.soton.comp1206.event.GridChangeListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
@@ -16,6 +23,9 @@ import org.apache.logging.log4j.Logger;
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  *
  * The Grid should be linked to a GameBoard for it's display.
+ *
+ * Several changes can be grouped with beginBatch and commit. Inside a batch the properties are left alone, and on
+ * commit only the cells whose value actually changed are updated and published to GridChangeListeners in one go.
  */
 public class Grid {
 
@@ -39,12 +49,70 @@ public class Grid {
      */
     private final SimpleIntegerProperty[][] grid;
 
+    /**
+     * Empty rows and columns kept around the occupancy masks so a piece hanging off the edge still has bits to test
+     */
+    private static final int PAD = 2;
+
+    /**
+     * Widest grid whose padded rows still fit in an int
+     */
+    public static final int MAX_COLS = Integer.SIZE - 1 - PAD * 2;
+
+    /**
+     * One bitmask per row, bit x + PAD set when the cell is filled. The padding rows and columns count as filled
+     */
+    private final int[] occupancy;
+
+    /**
+     * Occupancy of an empty row, only the padding columns are set
+     */
+    private final int emptyRow;
+
+    /**
+     * Zobrist hash of the filled cells, kept up to date by set
+     */
+    private long hash = 0;
+
+    /**
+     * Values written inside a batch, indexed y * cols + x. Only valid while batchDepth is above 0
+     */
+    private final int[] pending;
+
+    /**
+     * Cells written inside the current batch
+     */
+    private final CoordinateSet touched;
+
+    /**
+     * Cells whose value changed, reused for every batch that is published
+     */
+    private final CoordinateSet changed;
+
+    /**
+     * How many beginBatch calls have not been committed yet
+     */
+    private int batchDepth = 0;
+
+    /**
+     * Listeners told about each batch of changed cells
+     */
+    private final List<GridChangeListener> changeListeners = new ArrayList<>();
+
     /**
      * Create a new Grid with the specified number of columns and rows and initialise them
-     * @param cols number of columns
-     * @param rows number of rows
+     * @param cols number of columns, at most MAX_COLS
+     * @param rows number of rows, at most Zobrist.MAX_SIZE
      */
     public Grid(int cols, int rows) {
+        if (cols < 1 || cols > MAX_COLS || rows < 1) {
+            throw new IllegalArgumentException("Grids must be 1 to " + MAX_COLS + " columns wide: " + cols + "x" + rows);
+        }
+        //Cells past Zobrist.MAX_SIZE would share hash keys
+        if (cols > Zobrist.MAX_SIZE || rows > Zobrist.MAX_SIZE) {
+            throw new IllegalArgumentException("Grids over " + Zobrist.MAX_SIZE + " cells wide or high cannot be hashed: "
+                + cols + "x" + rows);
+        }
         this.cols = cols;
         this.rows = rows;
 
@@ -57,6 +125,93 @@ public class Grid {
                 grid[x][y] = new SimpleIntegerProperty(0);
             }
         }
+
+        //Everything outside the grid is treated as filled
+        int fullRow = (1 << (cols + PAD * 2)) - 1;
+        emptyRow = fullRow & ~(((1 << cols) - 1) << PAD);
+        occupancy = new int[rows + PAD * 2];
+        Arrays.fill(occupancy, fullRow);
+        Arrays.fill(occupancy, PAD, PAD + rows, emptyRow);
+
+        pending = new int[cols * rows];
+        touched = new CoordinateSet(cols * rows);
+        changed = new CoordinateSet(cols * rows);
+    }
+
+    /**
+     * Add a listener told about every batch of changed cells
+     * @param listener listener
+     */
+    public void addChangeListener(GridChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Remove a change listener
+     * @param listener listener
+     */
+    public void removeChangeListener(GridChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Start a batch. Changes are held back until the matching commit, batches can be nested
+     */
+    public void beginBatch() {
+        if (batchDepth++ == 0) {
+            for (var y = 0; y < rows; y++) {
+                for (var x = 0; x < cols; x++) {
+                    pending[y * cols + x] = grid[x][y].get();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finish a batch. When the outermost batch is committed, cells whose value differs from before the batch are
+     * updated and published as one change
+     */
+    public void commit() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("commit without beginBatch");
+        }
+        if (--batchDepth > 0) {
+            return;
+        }
+
+        changed.clear();
+        for (int slot = touched.nextSlot(0); slot >= 0; slot = touched.nextSlot(slot + 1)) {
+            int cell = touched.get(slot);
+            int x = Coordinates.x(cell);
+            int y = Coordinates.y(cell);
+            int value = pending[y * cols + x];
+            if (grid[x][y].get() != value) {
+                grid[x][y].set(value);
+                changed.add(cell);
+            }
+        }
+        touched.clear();
+
+        if (!changed.isEmpty()) {
+            publish();
+        }
+    }
+
+    /**
+     * Check if a batch is open
+     * @return whether changes are being held back
+     */
+    public boolean isBatching() {
+        return batchDepth > 0;
+    }
+
+    /**
+     * Tell the listeners about the cells in changed
+     */
+    private void publish() {
+        for (GridChangeListener listener : changeListeners) {
+            listener.gridChanged(this, changed);
+        }
     }
 
     /**
@@ -76,7 +231,69 @@ public class Grid {
      * @param value the new value
      */
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        if (batchDepth > 0) {
+            pending[y * cols + x] = value;
+            touched.add(x, y);
+        } else if (grid[x][y].get() != value) {
+            grid[x][y].set(value);
+            if (!changeListeners.isEmpty()) {
+                changed.clear();
+                changed.add(x, y);
+                publish();
+            }
+        }
+        int bit = 1 << (x + PAD);
+        boolean filled = (occupancy[y + PAD] & bit) != 0;
+        if (value > 0 && !filled) {
+            occupancy[y + PAD] |= bit;
+            hash ^= Zobrist.cell(x, y);
+        } else if (value <= 0 && filled) {
+            occupancy[y + PAD] &= ~bit;
+            hash ^= Zobrist.cell(x, y);
+        }
+    }
+
+    /**
+     * Get the Zobrist hash of which cells are filled, updated on every set. Combine with Zobrist.current for the
+     * piece to play
+     * @return hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Copy the occupancy of every row, bit x set when the cell is filled. Cheap enough to snapshot the grid for a
+     * background search
+     * @param out array of at least getRows() entries
+     */
+    public void copyRows(int[] out) {
+        int cells = (1 << cols) - 1;
+        for (int y = 0; y < rows; y++) {
+            out[y] = occupancy[y + PAD] >> PAD & cells;
+        }
+    }
+
+    /**
+     * Check if a piece mask fits at the given x and y, the same as canPlayPiece but using the occupancy bits, without
+     * looking at the properties or logging. Cheap enough to call on every mouse move.
+     * @param mask piece mask from PieceMasks
+     * @param placeX column of the centre of the piece
+     * @param placeY row of the centre of the piece
+     * @return whether the piece can be played there
+     */
+    public boolean fits(int mask, int placeX, int placeY) {
+        if (placeX < -1 || placeX > cols || placeY < -1 || placeY > rows) {
+            return false;
+        }
+        int shift = placeX - 1 + PAD;
+        for (int row = 0; row < PieceMasks.SIZE; row++) {
+            int bits = PieceMasks.row(mask, row);
+            if ((bits << shift & occupancy[placeY - 1 + row + PAD]) != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -144,23 +361,27 @@ public class Grid {
      * @return the value
      */
     public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
             //No such index
             return -1;
         }
+        //Inside a batch the latest value has not reached the property yet
+        return batchDepth > 0 ? pending[y * cols + x] : grid[x][y].get();
     }
 
     /**
-     * Clear grid by setting value to 0
+     * Clear grid by setting value to 0, published as a single batch
      */
     public void clear() {
-        for (int y = 0; y < this.rows; ++y) {
-            for (int x = 0; x < this.cols; ++x) {
-                this.grid[x][y].set(0);
+        beginBatch();
+        try {
+            for (int y = 0; y < this.rows; ++y) {
+                for (int x = 0; x < this.cols; ++x) {
+                    set(x, y, 0);
+                }
             }
+        } finally {
+            commit();
         }
     }
 
@@ -0,0 +1,129 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A move suggested by the HintEngine
+ */
+public class Hint {
+
+  /**
+   * Whether to swap the current and following piece first
+   */
+  private final boolean swap;
+
+  /**
+   * Quarter turns to rotate the piece by after any swap
+   */
+  private final int turns;
+
+  /**
+   * Column and row to play the centre of the piece at
+   */
+  private final int x;
+  private final int y;
+
+  /**
+   * Mask of the piece as it will be played
+   */
+  private final int mask;
+
+  /**
+   * How many pieces ahead the search looked
+   */
+  private final int depth;
+
+  /**
+   * Whether the search finished within its budget
+   */
+  private final boolean complete;
+
+  /**
+   * Create a hint
+   * @param swap swap first
+   * @param turns quarter turns
+   * @param x column
+   * @param y row
+   * @param mask piece mask
+   * @param depth pieces looked ahead
+   * @param complete finished within the budget
+   */
+  public Hint(boolean swap, int turns, int x, int y, int mask, int depth, boolean complete) {
+    this.swap = swap;
+    this.turns = turns;
+    this.x = x;
+    this.y = y;
+    this.mask = mask;
+    this.depth = depth;
+    this.complete = complete;
+  }
+
+  /**
+   * Check if the current and following piece should be swapped first
+   * @return swap
+   */
+  public boolean isSwap() {
+    return swap;
+  }
+
+  /**
+   * Get the quarter turns to rotate the piece by, after any swap
+   * @return turns from 0 to 3
+   */
+  public int getTurns() {
+    return turns;
+  }
+
+  /**
+   * Get the column to play the centre of the piece at
+   * @return column
+   */
+  public int getX() {
+    return x;
+  }
+
+  /**
+   * Get the row to play the centre of the piece at
+   * @return row
+   */
+  public int getY() {
+    return y;
+  }
+
+  /**
+   * Get the mask of the piece as it will be played
+   * @return mask
+   */
+  public int getMask() {
+    return mask;
+  }
+
+  /**
+   * Get how many pieces ahead the search looked
+   * @return depth
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Check if the search finished within its budget
+   * @return complete
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Check if two hints suggest the same move
+   * @param other other hint
+   * @return same move
+   */
+  public boolean sameMove(Hint other) {
+    return other != null && swap == other.swap && turns == other.turns && x == other.x && y == other.y;
+  }
+
+  @Override
+  public String toString() {
+    return "Hint{swap=" + swap + ", turns=" + turns + ", x=" + x + ", y=" + y + ", depth=" + depth
+        + ", complete=" + complete + "}";
+  }
+}
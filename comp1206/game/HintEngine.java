@@ -0,0 +1,456 @@
+package uk.ac.soton.comp1206.game;
+
+import javafx.application.Platform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.HintListener;
+import uk.ac.soton.comp1206.metrics.Histogram;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the best move for the current piece on a background thread.
+ *
+ * Each request snapshots the grid and the two pieces on the calling thread, then searches every placement, rotation
+ * and swap on a low priority worker. A quick one piece pass is published first, then the search looks one piece
+ * further ahead, best first moves first, publishing whenever the best move changes. The search stops at its time
+ * budget (-Dtetrecs.hint.budget in ms) or as soon as a newer request comes in, so hints never hold up the FX thread or
+ * the game loop. Hints are delivered on the FX thread and only if no newer request has been made since.
+ *
+ * Every placement of a piece is checked in one PlacementBatch, on the Vector API evaluator when it is available, and
+ * only the legal ones are played out to score the board they leave.
+ *
+ * Boards are hashed with Zobrist keys as moves are played, and the best reply to each board is kept in a transposition
+ * table shared by every engine (-Dtetrecs.tt.mb in MB), so positions reached by different moves or searched again
+ * after a rotate are not worked out twice.
+ */
+public class HintEngine {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(HintEngine.class);
+
+  /**
+   * Time taken by each search in microseconds
+   */
+  private static final Histogram searchTime = MetricsRegistry.get().histogram("hint.search.time");
+
+  /**
+   * Best replies shared by every search
+   */
+  private static final TranspositionTable table = new TranspositionTable(Integer.getInteger("tetrecs.tt.mb", 4));
+
+  static {
+    MetricsRegistry.get().gauge("hint.tt.probes", table::getProbes);
+    MetricsRegistry.get().gauge("hint.tt.hits", table::getHits);
+    MetricsRegistry.get().gauge("hint.tt.hitrate", () -> Math.round(table.getHitRate() * 1000));
+  }
+
+  /**
+   * Weight of the points a move scores against the shape of the board it leaves
+   */
+  private static final int GAIN_WEIGHT = 4;
+
+  /**
+   * Penalty for a first move that leaves no room for the piece after it
+   */
+  private static final int STUCK_PENALTY = 1000;
+
+  /**
+   * Penalty for each empty cell boxed in on all four sides
+   */
+  private static final int TRAPPED_PENALTY = 6;
+
+  /**
+   * Number of columns and rows searched
+   */
+  private final int cols;
+  private final int rows;
+
+  /**
+   * Bits of a full row
+   */
+  private final int fullRow;
+
+  /**
+   * Told about each better hint
+   */
+  private final HintListener listener;
+
+  /**
+   * Time budget of each search
+   */
+  private final long budgetNanos = Long.getLong("tetrecs.hint.budget", 12L) * 1000000L;
+
+  /**
+   * Bumped by every request and cancel, a search gives up once it no longer matches
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * Set once the engine is shut down, after which nothing is searched or delivered
+   */
+  private volatile boolean stopped = false;
+
+  /**
+   * The single search thread
+   */
+  private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "hint-worker");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    return thread;
+  });
+
+  /**
+   * First moves found by the one piece pass, only touched by the worker
+   */
+  private final boolean[] moveSwap;
+  private final int[] moveTurns;
+  private final int[] moveX;
+  private final int[] moveY;
+  private final int[] moveMask;
+  private final int[] moveGain;
+  private final int[] moveScore;
+  private final int[] order;
+
+  /**
+   * Checks every placement of a piece at once, only used by the worker
+   */
+  private final PlacementEvaluator evaluator = PlacementEvaluator.create();
+
+  /**
+   * Placements of one piece waiting to be checked, and the turns of each, only touched by the worker
+   */
+  private final PlacementBatch batch;
+  private final int[] batchTurns;
+
+  /**
+   * Boards after the first and second move, only touched by the worker
+   */
+  private final int[] afterFirst;
+  private final int[] afterSecond;
+
+  /**
+   * Hash of the board after the last call to play
+   */
+  private long placedHash;
+
+  /**
+   * Create a hint engine for a grid size
+   * @param cols columns
+   * @param rows rows
+   * @param listener told about each better hint
+   */
+  public HintEngine(int cols, int rows, HintListener listener) {
+    this.cols = cols;
+    this.rows = rows;
+    this.fullRow = (1 << cols) - 1;
+    this.listener = listener;
+
+    int moves = 2 * 4 * cols * rows;
+    moveSwap = new boolean[moves];
+    moveTurns = new int[moves];
+    moveX = new int[moves];
+    moveY = new int[moves];
+    moveMask = new int[moves];
+    moveGain = new int[moves];
+    moveScore = new int[moves];
+    order = new int[moves];
+    batch = new PlacementBatch(4 * cols * rows);
+    batchTurns = new int[batch.capacity()];
+    afterFirst = new int[rows];
+    afterSecond = new int[rows];
+  }
+
+  /**
+   * Start a new search, cancelling any search still running. Call on the thread that owns the grid
+   * @param grid grid to search
+   * @param current current piece
+   * @param following following piece, may be null
+   */
+  public void request(Grid grid, GamePiece current, GamePiece following) {
+    long request = generation.incrementAndGet();
+    if (current == null || stopped) {
+      return;
+    }
+    int[] board = new int[rows];
+    grid.copyRows(board);
+    long hash = grid.getHash();
+    int currentPiece = current.getValue() - 1;
+    int currentRotation = current.getRotation();
+    int followingPiece = following == null ? -1 : following.getValue() - 1;
+    int followingRotation = following == null ? 0 : following.getRotation();
+    worker.execute(() -> {
+      try {
+        search(request, board, hash, currentPiece, currentRotation, followingPiece, followingRotation);
+      } catch (Exception e) {
+        logger.error("Fail to search for a hint, {}", e.toString());
+      }
+    });
+  }
+
+  /**
+   * Cancel any search and drop any hint not yet delivered
+   */
+  public void cancel() {
+    generation.incrementAndGet();
+  }
+
+  /**
+   * Cancel any search and stop the worker. Safe to call more than once
+   */
+  public void shutdown() {
+    stopped = true;
+    cancel();
+    worker.shutdownNow();
+  }
+
+  /**
+   * Search for the best move, run on the worker
+   */
+  private void search(long request, int[] board, long hash, int current, int currentRotation, int following,
+      int followingRotation) {
+    if (generation.get() != request) {
+      return;
+    }
+    long start = System.nanoTime();
+    long deadline = start + budgetNanos;
+    table.newSearch();
+
+    //One piece pass over every first move
+    int moves = 0;
+    moves = addMoves(board, hash, moves, false, current, currentRotation);
+    if (following >= 0) {
+      moves = addMoves(board, hash, moves, true, following, followingRotation);
+    }
+    if (moves == 0) {
+      publish(request, null);
+      return;
+    }
+    for (int i = 0; i < moves; i++) {
+      order[i] = i;
+    }
+    sortByScore(moves);
+    Hint best = hint(order[0], 1, following < 0);
+    publish(request, best);
+    if (following < 0) {
+      searchTime.record((System.nanoTime() - start) / 1000);
+      return;
+    }
+
+    //Look one piece further, the piece not played first comes next
+    int bestScore = Integer.MIN_VALUE;
+    int searched = 0;
+    for (; searched < moves; searched++) {
+      if (generation.get() != request || System.nanoTime() > deadline) {
+        break;
+      }
+      int move = order[searched];
+      play(board, hash, afterFirst, moveMask[move], moveX[move], moveY[move]);
+      int nextPiece = moveSwap[move] ? current : following;
+      int score = GAIN_WEIGHT * moveGain[move] + bestReply(placedHash, nextPiece);
+      if (score > bestScore) {
+        bestScore = score;
+        Hint better = hint(move, 2, false);
+        if (!better.sameMove(best)) {
+          best = better;
+          publish(request, best);
+        }
+      }
+    }
+
+    if (searched == moves) {
+      publish(request, new Hint(best.isSwap(), best.getTurns(), best.getX(), best.getY(), best.getMask(), 2, true));
+    }
+    searchTime.record((System.nanoTime() - start) / 1000);
+  }
+
+  /**
+   * Add every legal placement of a piece in every distinct rotation, scored by the board each one leaves
+   * @return new number of moves
+   */
+  private int addMoves(int[] board, long hash, int moves, boolean swap, int piece, int rotation) {
+    batch.clear();
+    for (int turns = 0; turns < 4; turns++) {
+      int mask = PieceMasks.mask(piece, rotation + turns);
+      //Symmetric pieces look the same after some turns, no need to try them again
+      boolean seen = false;
+      for (int earlier = 0; earlier < turns; earlier++) {
+        seen |= PieceMasks.mask(piece, rotation + earlier) == mask;
+      }
+      if (seen) {
+        continue;
+      }
+      for (int y = 0; y < rows; y++) {
+        for (int x = 0; x < cols; x++) {
+          batchTurns[batch.add(mask, x, y)] = turns;
+        }
+      }
+    }
+    evaluator.evaluate(board, cols, rows, batch);
+
+    for (int i = 0; i < batch.size(); i++) {
+      if (!batch.isLegal(i)) {
+        continue;
+      }
+      int mask = batch.masks[i];
+      int x = batch.xs[i];
+      int y = batch.ys[i];
+      play(board, hash, afterFirst, mask, x, y);
+      moveSwap[moves] = swap;
+      moveTurns[moves] = batchTurns[i];
+      moveX[moves] = x;
+      moveY[moves] = y;
+      moveMask[moves] = mask;
+      moveGain[moves] = batch.getPoints(i);
+      moveScore[moves] = GAIN_WEIGHT * moveGain[moves] + evaluate(afterFirst);
+      moves++;
+    }
+    return moves;
+  }
+
+  /**
+   * Best score of any placement of a piece on the board in afterFirst, from the table when it has been seen before
+   * @param hash hash of afterFirst
+   * @param piece piece to play
+   * @return score, or a penalty if the piece does not fit anywhere
+   */
+  private int bestReply(long hash, int piece) {
+    //Every rotation is tried, so the rotation of the piece does not matter
+    long key = hash ^ Zobrist.current(piece, 0);
+    int cached = table.probe(key, 1);
+    if (cached != TranspositionTable.MISS) {
+      return cached;
+    }
+
+    batch.clear();
+    for (int turns = 0; turns < 4; turns++) {
+      int mask = PieceMasks.mask(piece, turns);
+      for (int y = 0; y < rows; y++) {
+        for (int x = 0; x < cols; x++) {
+          batch.add(mask, x, y);
+        }
+      }
+    }
+    evaluator.evaluate(afterFirst, cols, rows, batch);
+
+    int best = Integer.MIN_VALUE;
+    for (int i = 0; i < batch.size(); i++) {
+      if (batch.isLegal(i)) {
+        play(afterFirst, hash, afterSecond, batch.masks[i], batch.xs[i], batch.ys[i]);
+        best = Math.max(best, GAIN_WEIGHT * batch.getPoints(i) + evaluate(afterSecond));
+      }
+    }
+    int score = best == Integer.MIN_VALUE ? evaluate(afterFirst) - STUCK_PENALTY : best;
+    table.store(key, 1, score);
+    return score;
+  }
+
+  /**
+   * Play a mask the batch found legal on a board and clear any full lines, the same as Game does. The hash of the board
+   * after the move is left in placedHash
+   * @param from board to play on
+   * @param fromHash hash of the board to play on
+   * @param to board after the move
+   * @param mask piece mask
+   * @param placeX column of the centre of the piece
+   * @param placeY row of the centre of the piece
+   */
+  private void play(int[] from, long fromHash, int[] to, int mask, int placeX, int placeY) {
+    System.arraycopy(from, 0, to, 0, rows);
+    long hash = fromHash;
+    for (int row = 0; row < PieceMasks.SIZE; row++) {
+      int bits = PieceMasks.row(mask, row);
+      if (bits == 0) {
+        continue;
+      }
+      int y = placeY - 1 + row;
+      int cells = (int) ((long) bits << (placeX + 1) >> 2);
+      to[y] |= cells;
+      hash ^= Zobrist.row(y, cells);
+    }
+
+    int fullCols = fullRow;
+    boolean fullRows = false;
+    for (int y = 0; y < rows; y++) {
+      fullCols &= to[y];
+      fullRows |= to[y] == fullRow;
+    }
+    if (fullRows || fullCols != 0) {
+      for (int y = 0; y < rows; y++) {
+        int cleared = to[y] == fullRow ? fullRow : to[y] & fullCols;
+        hash ^= Zobrist.row(y, cleared);
+        to[y] &= ~cleared;
+      }
+    }
+    placedHash = hash;
+  }
+
+  /**
+   * Score the shape of a board: lines close to full are good, empty cells boxed in on every side are bad
+   * @param board board
+   * @return score
+   */
+  private int evaluate(int[] board) {
+    int score = 0;
+    for (int y = 0; y < rows; y++) {
+      int filled = Integer.bitCount(board[y]);
+      score += filled * filled;
+    }
+    for (int x = 0; x < cols; x++) {
+      int filled = 0;
+      for (int y = 0; y < rows; y++) {
+        filled += board[y] >> x & 1;
+      }
+      score += filled * filled;
+    }
+    for (int y = 0; y < rows; y++) {
+      int above = y == 0 ? fullRow : board[y - 1];
+      int below = y == rows - 1 ? fullRow : board[y + 1];
+      int left = board[y] << 1 | 1;
+      int right = (board[y] >> 1) | 1 << (cols - 1);
+      int trapped = ~board[y] & above & below & left & right & fullRow;
+      score -= TRAPPED_PENALTY * Integer.bitCount(trapped);
+    }
+    return score;
+  }
+
+  /**
+   * Sort the first moves best first, by their one piece score
+   * @param moves number of moves
+   */
+  private void sortByScore(int moves) {
+    for (int i = 1; i < moves; i++) {
+      int move = order[i];
+      int j = i - 1;
+      while (j >= 0 && moveScore[order[j]] < moveScore[move]) {
+        order[j + 1] = order[j];
+        j--;
+      }
+      order[j + 1] = move;
+    }
+  }
+
+  /**
+   * Make a hint for a first move
+   */
+  private Hint hint(int move, int depth, boolean complete) {
+    return new Hint(moveSwap[move], moveTurns[move], moveX[move], moveY[move], moveMask[move], depth, complete);
+  }
+
+  /**
+   * Hand a hint to the listener on the FX thread, unless a newer request has been made by then
+   */
+  private void publish(long request, Hint hint) {
+    Platform.runLater(() -> {
+      if (!stopped && generation.get() == request) {
+        listener.hintUpdated(hint);
+      }
+    });
+  }
+}
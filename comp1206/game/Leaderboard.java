@@ -0,0 +1,247 @@
+package uk.ac.soton.comp1206.game;
+
+import javafx.util.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Leaderboard holding scores ordered from highest to lowest.
+ *
+ * It is an indexable skip list: every link stores how many entries it jumps over, so rank, top K and neighbour
+ * queries walk O(log n) links instead of scanning the whole list. Entries with the same score keep the order they
+ * were added in.
+ *
+ * Not thread safe, use it from the JavaFX thread.
+ */
+public class Leaderboard {
+
+  /**
+   * Maximum number of levels in the skip list, enough for far more scores than we will ever hold
+   */
+  private static final int MAX_LEVEL = 16;
+
+  /**
+   * Random used to pick the level of new entries. Seeded so the shape of the list is repeatable
+   */
+  private final Random random = new Random(1206);
+
+  /**
+   * Head of the skip list, holds no score
+   */
+  private final Node head = new Node(null, Integer.MAX_VALUE, MAX_LEVEL);
+
+  /**
+   * Number of levels currently in use
+   */
+  private int level = 1;
+
+  /**
+   * Number of entries
+   */
+  private int size = 0;
+
+  /**
+   * A single entry in the skip list
+   */
+  private static class Node {
+    private final String name;
+    private final int score;
+    private final Node[] next;
+    private final int[] span;
+
+    private Node(String name, int score, int levels) {
+      this.name = name;
+      this.score = score;
+      this.next = new Node[levels];
+      this.span = new int[levels];
+    }
+  }
+
+  /**
+   * Add a score to the leaderboard
+   * @param name player name
+   * @param score score
+   */
+  public void add(String name, int score) {
+    Node[] update = new Node[MAX_LEVEL];
+    int[] position = new int[MAX_LEVEL];
+
+    //Find the last node at each level that should come before the new entry
+    Node node = head;
+    for (int i = level - 1; i >= 0; i--) {
+      position[i] = i == level - 1 ? 0 : position[i + 1];
+      while (node.next[i] != null && node.next[i].score >= score) {
+        position[i] += node.span[i];
+        node = node.next[i];
+      }
+      update[i] = node;
+    }
+
+    int newLevel = randomLevel();
+    if (newLevel > level) {
+      for (int i = level; i < newLevel; i++) {
+        position[i] = 0;
+        update[i] = head;
+        update[i].span[i] = size;
+      }
+      level = newLevel;
+    }
+
+    Node entry = new Node(name, score, newLevel);
+    for (int i = 0; i < newLevel; i++) {
+      entry.next[i] = update[i].next[i];
+      update[i].next[i] = entry;
+      entry.span[i] = update[i].span[i] - (position[0] - position[i]);
+      update[i].span[i] = position[0] - position[i] + 1;
+    }
+
+    //Levels above the new entry now jump over one more entry
+    for (int i = newLevel; i < level; i++) {
+      update[i].span[i]++;
+    }
+    size++;
+  }
+
+  /**
+   * Add a score to the leaderboard
+   * @param score name and score
+   */
+  public void add(Pair<String, Integer> score) {
+    add(score.getKey(), score.getValue());
+  }
+
+  /**
+   * Add a list of scores to the leaderboard
+   * @param scores scores to add
+   */
+  public void addAll(List<Pair<String, Integer>> scores) {
+    for (Pair<String, Integer> score : scores) {
+      add(score);
+    }
+  }
+
+  /**
+   * Get the rank a score would have on this leaderboard. Rank 1 is the top, ties share the best rank.
+   * @param score score
+   * @return rank starting from 1
+   */
+  public int rankOf(int score) {
+    int above = 0;
+    Node node = head;
+    for (int i = level - 1; i >= 0; i--) {
+      while (node.next[i] != null && node.next[i].score > score) {
+        above += node.span[i];
+        node = node.next[i];
+      }
+    }
+    return above + 1;
+  }
+
+  /**
+   * Get the best K scores
+   * @param k number of scores
+   * @return up to k scores, highest first
+   */
+  public List<Pair<String, Integer>> top(int k) {
+    return range(0, k);
+  }
+
+  /**
+   * Get the scores around a score, as they would be shown if that score was on the leaderboard
+   * @param score score
+   * @param radius number of entries to take on either side
+   * @return scores above and below the given score, highest first
+   */
+  public List<Pair<String, Integer>> neighbours(int score, int radius) {
+    int index = rankOf(score) - 1;
+    int from = Math.max(0, index - radius);
+    return range(from, index + radius - from);
+  }
+
+  /**
+   * Get the entry at the given position
+   * @param index position starting from 0
+   * @return name and score
+   */
+  public Pair<String, Integer> get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("No such rank: " + index);
+    }
+    Node node = nodeAt(index);
+    return new Pair<>(node.name, node.score);
+  }
+
+  /**
+   * Get a run of entries starting at a position
+   * @param from position of the first entry starting from 0
+   * @param count number of entries
+   * @return entries, highest first
+   */
+  public List<Pair<String, Integer>> range(int from, int count) {
+    List<Pair<String, Integer>> result = new ArrayList<>();
+    if (from >= size || count <= 0) {
+      return result;
+    }
+    Node node = nodeAt(from);
+    while (node != null && result.size() < count) {
+      result.add(new Pair<>(node.name, node.score));
+      node = node.next[0];
+    }
+    return result;
+  }
+
+  /**
+   * Remove every entry
+   */
+  public void clear() {
+    for (int i = 0; i < MAX_LEVEL; i++) {
+      head.next[i] = null;
+      head.span[i] = 0;
+    }
+    level = 1;
+    size = 0;
+  }
+
+  /**
+   * Get the number of entries
+   * @return size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Walk down the levels to the node at the given position
+   * @param index position starting from 0
+   * @return node
+   */
+  private Node nodeAt(int index) {
+    int target = index + 1;
+    int travelled = 0;
+    Node node = head;
+    for (int i = level - 1; i >= 0; i--) {
+      while (node.next[i] != null && travelled + node.span[i] <= target) {
+        travelled += node.span[i];
+        node = node.next[i];
+      }
+      if (travelled == target) {
+        return node;
+      }
+    }
+    return node;
+  }
+
+  /**
+   * Pick a level for a new entry, each level is half as likely as the one below
+   * @return level
+   */
+  private int randomLevel() {
+    int newLevel = 1;
+    while (newLevel < MAX_LEVEL && random.nextBoolean()) {
+      newLevel++;
+    }
+    return newLevel;
+  }
+}
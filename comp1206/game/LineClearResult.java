@@ -0,0 +1,150 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * The rows, columns and cells cleared by one move, kept as bitmasks and reused from move to move so clearing lines
+ * allocates nothing.
+ *
+ * Rows and columns are marked first and the cells only cleared afterwards, so a cell where a full row and a full
+ * column cross is counted once and neither line stops the other being found.
+ */
+public class LineClearResult implements ClearedLines {
+
+  private final int cols;
+  private final int rows;
+
+  /**
+   * Bit y set when row y was cleared
+   */
+  private long rowMask;
+
+  /**
+   * Bit x set when column x was cleared
+   */
+  private long columnMask;
+
+  /**
+   * Bit y * cols + x set when the cell was cleared
+   */
+  private final long[] cells;
+
+  private int lines;
+  private int blockCount;
+
+  /**
+   * Create an empty result for a board
+   * @param cols number of columns, at most 64
+   * @param rows number of rows, at most 64
+   */
+  public LineClearResult(int cols, int rows) {
+    if (cols > Long.SIZE || rows > Long.SIZE) {
+      throw new IllegalArgumentException("Boards over 64 cells wide or high are not supported: " + cols + "x" + rows);
+    }
+    this.cols = cols;
+    this.rows = rows;
+    this.cells = new long[(cols * rows + Long.SIZE - 1) / Long.SIZE];
+  }
+
+  /**
+   * Forget the last move
+   */
+  public void reset() {
+    rowMask = 0;
+    columnMask = 0;
+    Arrays.fill(cells, 0);
+    lines = 0;
+    blockCount = 0;
+  }
+
+  /**
+   * Mark a full row
+   * @param y row
+   */
+  public void markRow(int y) {
+    rowMask |= 1L << y;
+    lines++;
+    for (int x = 0; x < cols; x++) {
+      markCell(y * cols + x);
+    }
+  }
+
+  /**
+   * Mark a full column
+   * @param x column
+   */
+  public void markColumn(int x) {
+    columnMask |= 1L << x;
+    lines++;
+    for (int y = 0; y < rows; y++) {
+      markCell(y * cols + x);
+    }
+  }
+
+  /**
+   * Mark a cell, counting it if it was not already marked
+   * @param cell y * cols + x
+   */
+  private void markCell(int cell) {
+    long bit = 1L << cell;
+    int word = cell >>> 6;
+    if ((cells[word] & bit) == 0) {
+      cells[word] |= bit;
+      blockCount++;
+    }
+  }
+
+  @Override
+  public int getLines() {
+    return lines;
+  }
+
+  @Override
+  public int getBlockCount() {
+    return blockCount;
+  }
+
+  @Override
+  public boolean isRowCleared(int y) {
+    return (rowMask >>> y & 1) != 0;
+  }
+
+  @Override
+  public boolean isColumnCleared(int x) {
+    return (columnMask >>> x & 1) != 0;
+  }
+
+  @Override
+  public boolean isCleared(int x, int y) {
+    int cell = y * cols + x;
+    return (cells[cell >>> 6] >>> cell & 1) != 0;
+  }
+
+  @Override
+  public int nextCleared(int fromCell) {
+    int word = fromCell >>> 6;
+    if (word >= cells.length) {
+      return -1;
+    }
+    long bits = cells[word] & (-1L << fromCell);
+    while (true) {
+      if (bits != 0) {
+        return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+      }
+      if (++word == cells.length) {
+        return -1;
+      }
+      bits = cells[word];
+    }
+  }
+
+  @Override
+  public int getCols() {
+    return cols;
+  }
+
+  @Override
+  public int getRows() {
+    return rows;
+  }
+}
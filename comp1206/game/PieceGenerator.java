@@ -0,0 +1,44 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+
+/**
+ * Source of piece numbers for the PieceQueue. Pieces are generated a batch at a time, ahead of when they are needed.
+ *
+ * The strategy is picked with -Dtetrecs.randomizer=uniform|bag|weighted|replay, see create.
+ */
+public interface PieceGenerator {
+
+  /**
+   * Fill the start of an array with piece numbers, each from 0 to GamePiece.PIECES - 1
+   * @param pieces array to fill
+   * @param count number of pieces to generate
+   */
+  void fill(int[] pieces, int count);
+
+  /**
+   * Create the generator chosen by the tetrecs.randomizer property. The random strategies use tetrecs.seed when it is
+   * set, so a game can be played again with the same pieces. A bad setting is logged and the uniform strategy used
+   * instead, so it never stops a game starting
+   * @param seed seed for the random strategies
+   * @return generator
+   */
+  static PieceGenerator create(long seed) {
+    String name = System.getProperty("tetrecs.randomizer", "uniform");
+    try {
+      return switch (name) {
+        case "bag" -> new ShuffleBagGenerator(seed, Integer.getInteger("tetrecs.randomizer.copies", 1));
+        case "weighted" -> new WeightedGenerator(seed,
+            WeightedGenerator.parseWeights(System.getProperty("tetrecs.randomizer.weights", "")));
+        case "replay" -> ReplayGenerator.load(System.getProperty("tetrecs.randomizer.replay", ""));
+        case "uniform" -> new UniformGenerator(seed);
+        default -> throw new IllegalArgumentException("Unknown randomizer: " + name);
+      };
+    } catch (IllegalArgumentException e) {
+      //NumberFormatException from a malformed replay or weights is one of these too
+      LogManager.getLogger(PieceGenerator.class).error("Fail to create the {} randomizer, using uniform, {}", name,
+          e.toString());
+      return new UniformGenerator(seed);
+    }
+  }
+}
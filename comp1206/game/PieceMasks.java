@@ -0,0 +1,79 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Bitmasks of every piece in every rotation, worked out once from GamePiece so shape checks don't walk the block
+ * arrays.
+ *
+ * A mask has bit y * SIZE + x set when the piece fills block x, y of its 3x3 shape.
+ */
+public class PieceMasks {
+
+  /**
+   * Width and height of a piece shape
+   */
+  public static final int SIZE = 3;
+
+  /**
+   * Masks indexed by piece number then rotation
+   */
+  private static final int[][] MASKS = new int[GamePiece.PIECES][4];
+
+  static {
+    for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+      GamePiece gamePiece = GamePiece.createPiece(piece);
+      for (int rotation = 0; rotation < 4; rotation++) {
+        MASKS[piece][rotation] = toMask(gamePiece.getBlocks());
+        gamePiece.rotate();
+      }
+    }
+  }
+
+  private PieceMasks() {
+  }
+
+  /**
+   * Get the mask of a piece as it is currently rotated
+   * @param piece piece
+   * @return mask
+   */
+  public static int mask(GamePiece piece) {
+    return MASKS[piece.getValue() - 1][piece.getRotation()];
+  }
+
+  /**
+   * Get the mask of a piece number in a rotation
+   * @param piece piece number
+   * @param rotation quarter turns from 0 to 3
+   * @return mask
+   */
+  public static int mask(int piece, int rotation) {
+    return MASKS[piece][rotation & 3];
+  }
+
+  /**
+   * Get one row of a mask
+   * @param mask mask
+   * @param row row of the shape
+   * @return bits of the row, bit x set when block x is filled
+   */
+  public static int row(int mask, int row) {
+    return mask >>> (row * SIZE) & ((1 << SIZE) - 1);
+  }
+
+  /**
+   * Turn a block array into a mask
+   * @param blocks blocks of a piece
+   * @return mask
+   */
+  public static int toMask(int[][] blocks) {
+    int mask = 0;
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        if (blocks[x][y] > 0) {
+          mask |= 1 << (y * SIZE + x);
+        }
+      }
+    }
+    return mask;
+  }
+}
@@ -0,0 +1,130 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Queue of upcoming pieces with a fixed look-ahead, held in a ring buffer.
+ *
+ * Pieces are generated in batches whenever the queue runs down to the look-ahead, so taking a piece is O(1) and does
+ * no logging or generation of its own. The first look-ahead pieces can always be peeked at, for the preview boards and
+ * for bots planning several moves ahead. Peeked pieces are the ones that will be dealt, do not rotate them.
+ *
+ * Not thread safe, the Game guards it.
+ */
+public class PieceQueue {
+
+  /**
+   * Number of pieces generated at a time
+   */
+  private static final int BATCH = 16;
+
+  /**
+   * Where the pieces come from
+   */
+  private final PieceGenerator generator;
+
+  /**
+   * Number of pieces that can be peeked at
+   */
+  private final int lookahead;
+
+  /**
+   * The ring buffer, its length is a power of two
+   */
+  private final GamePiece[] ring;
+
+  /**
+   * ring.length - 1, to wrap an index
+   */
+  private final int mask;
+
+  /**
+   * Piece numbers from the generator, reused for every batch
+   */
+  private final int[] batch = new int[BATCH];
+
+  /**
+   * Index of the next piece in the ring
+   */
+  private int head = 0;
+
+  /**
+   * Number of pieces in the ring
+   */
+  private int size = 0;
+
+  /**
+   * Create a queue and generate its first pieces
+   * @param generator where pieces come from
+   * @param lookahead number of pieces that can be peeked at, at least 1
+   */
+  public PieceQueue(PieceGenerator generator, int lookahead) {
+    if (lookahead < 1) {
+      throw new IllegalArgumentException("Look-ahead must be at least 1: " + lookahead);
+    }
+    this.generator = generator;
+    this.lookahead = lookahead;
+    //Room for the look-ahead plus a whole batch, so a refill always fits
+    this.ring = new GamePiece[Integer.highestOneBit(lookahead + BATCH) << 1];
+    this.mask = ring.length - 1;
+    refill();
+  }
+
+  /**
+   * Take the next piece off the queue
+   * @return piece
+   */
+  public GamePiece next() {
+    GamePiece piece = ring[head];
+    ring[head] = null;
+    head = (head + 1) & mask;
+    size--;
+    if (size < lookahead) {
+      refill();
+    }
+    return piece;
+  }
+
+  /**
+   * Look at an upcoming piece without taking it
+   * @param index 0 for the next piece, up to getLookahead() - 1
+   * @return piece
+   */
+  public GamePiece peek(int index) {
+    if (index < 0 || index >= lookahead) {
+      throw new IndexOutOfBoundsException("Beyond the look-ahead: " + index);
+    }
+    return ring[(head + index) & mask];
+  }
+
+  /**
+   * Replace an upcoming piece, used when the current piece is swapped into the queue
+   * @param index 0 for the next piece, up to getLookahead() - 1
+   * @param piece replacement
+   * @return the piece that was there
+   */
+  public GamePiece replace(int index, GamePiece piece) {
+    GamePiece old = peek(index);
+    ring[(head + index) & mask] = piece;
+    return old;
+  }
+
+  /**
+   * Get the number of pieces that can be peeked at
+   * @return look-ahead
+   */
+  public int getLookahead() {
+    return lookahead;
+  }
+
+  /**
+   * Generate batches until there is no room for another one
+   */
+  private void refill() {
+    while (size + BATCH <= ring.length) {
+      generator.fill(batch, BATCH);
+      for (int i = 0; i < BATCH; i++) {
+        ring[(head + size) & mask] = GamePiece.createPiece(batch[i]);
+        size++;
+      }
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A batch of candidate placements and the result of evaluating each one, for scoring many moves at once with a
+ * PlacementEvaluator.
+ *
+ * Candidates are held as parallel arrays so an evaluator can read them a vector at a time. The batch is reused: clear
+ * it, add candidates, evaluate, then read the results back by index.
+ */
+public class PlacementBatch {
+
+  /**
+   * Piece masks from PieceMasks
+   */
+  final int[] masks;
+
+  /**
+   * Column and row of the centre of each piece
+   */
+  final int[] xs;
+  final int[] ys;
+
+  /**
+   * 1 if the placement is legal, otherwise 0
+   */
+  final int[] legal;
+
+  /**
+   * Rows and columns the placement completes, 0 if it is not legal
+   */
+  final int[] lines;
+
+  /**
+   * Blocks cleared by those lines, 0 if it is not legal
+   */
+  final int[] blocks;
+
+  /**
+   * Number of candidates
+   */
+  int size = 0;
+
+  /**
+   * Create an empty batch
+   * @param capacity most candidates it can hold
+   */
+  public PlacementBatch(int capacity) {
+    masks = new int[capacity];
+    xs = new int[capacity];
+    ys = new int[capacity];
+    legal = new int[capacity];
+    lines = new int[capacity];
+    blocks = new int[capacity];
+  }
+
+  /**
+   * Remove every candidate
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Add a candidate
+   * @param mask piece mask from PieceMasks
+   * @param x column of the centre of the piece, from -1 to the number of columns
+   * @param y row of the centre of the piece, from -1 to the number of rows
+   * @return index of the candidate
+   */
+  public int add(int mask, int x, int y) {
+    if (size == masks.length) {
+      throw new IllegalStateException("Batch is full: " + size);
+    }
+    masks[size] = mask;
+    xs[size] = x;
+    ys[size] = y;
+    return size++;
+  }
+
+  /**
+   * Check that a candidate's centre is somewhere Grid.fits accepts, from -1 to the number of columns and rows.
+   * Evaluators mark anything else illegal without looking at the board
+   * @param index candidate
+   * @param cols number of columns
+   * @param rows number of rows
+   * @return whether the anchor is in range
+   */
+  boolean inRange(int index, int cols, int rows) {
+    return xs[index] >= -1 && xs[index] <= cols && ys[index] >= -1 && ys[index] <= rows;
+  }
+
+  /**
+   * Get the number of candidates
+   * @return size
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the most candidates the batch can hold
+   * @return capacity
+   */
+  public int capacity() {
+    return masks.length;
+  }
+
+  /**
+   * Check if a candidate can be played, after evaluating
+   * @param index candidate
+   * @return legal
+   */
+  public boolean isLegal(int index) {
+    return legal[index] != 0;
+  }
+
+  /**
+   * Get the number of rows and columns a candidate completes, after evaluating
+   * @param index candidate
+   * @return lines
+   */
+  public int getLines(int index) {
+    return lines[index];
+  }
+
+  /**
+   * Get the number of blocks a candidate clears, after evaluating
+   * @param index candidate
+   * @return blocks
+   */
+  public int getBlocks(int index) {
+    return blocks[index];
+  }
+
+  /**
+   * Get the points a candidate scores with no multiplier, the same formula as Game.score
+   * @param index candidate
+   * @return points
+   */
+  public int getPoints(int index) {
+    return lines[index] * blocks[index] * 10;
+  }
+}
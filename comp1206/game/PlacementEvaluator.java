@@ -0,0 +1,38 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Checks a whole batch of candidate placements against one board: whether each is legal and which lines it would
+ * clear. Used by HintEngine to check every placement of a piece at once.
+ *
+ * Boards are given as one int per row with bit x set when the cell is filled, as from Grid.copyRows, and should have
+ * no full lines, as after any move. Evaluators keep scratch space, so use one per thread.
+ */
+public interface PlacementEvaluator {
+
+  /**
+   * Evaluate every candidate in a batch
+   * @param board bits of each row
+   * @param cols number of columns, at most Grid.MAX_COLS
+   * @param rows number of rows
+   * @param batch candidates, the results are written back into it
+   */
+  void evaluate(int[] board, int cols, int rows, PlacementBatch batch);
+
+  /**
+   * Create the fastest evaluator available. The Vector API one is used when the jdk.incubator.vector module is loaded
+   * (--add-modules jdk.incubator.vector) unless -Dtetrecs.scalar is set, otherwise the scalar one
+   * @return evaluator
+   */
+  static PlacementEvaluator create() {
+    if (!Boolean.getBoolean("tetrecs.scalar") && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      try {
+        //Loaded by name so nothing else links against the incubator module
+        return (PlacementEvaluator) Class.forName("uk.ac.soton.comp1206.game.VectorPlacementEvaluator")
+            .getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        return new ScalarPlacementEvaluator();
+      }
+    }
+    return new ScalarPlacementEvaluator();
+  }
+}
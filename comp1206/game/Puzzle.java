@@ -0,0 +1,152 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A puzzle: a pre-filled board and a fixed sequence of pieces that can be played to leave the board empty.
+ *
+ * Every puzzle carries the solution the solver found for it, so a pack can be checked without searching again and a
+ * stuck player can be shown the way.
+ */
+public class Puzzle {
+
+  /**
+   * Board size
+   */
+  private final int cols;
+  private final int rows;
+
+  /**
+   * Colour of every cell, 0 for empty, indexed y * cols + x
+   */
+  private final int[] cells;
+
+  /**
+   * Piece numbers in the order they must be played
+   */
+  private final int[] pieces;
+
+  /**
+   * Solution, one move per piece, see move
+   */
+  private final int[] solution;
+
+  /**
+   * Create a puzzle
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param cells colour of every cell from 0 to 15, indexed y * cols + x
+   * @param pieces piece numbers in play order
+   * @param solution one move per piece, made with move
+   */
+  public Puzzle(int cols, int rows, int[] cells, int[] pieces, int[] solution) {
+    if (cells.length != cols * rows || solution.length != pieces.length) {
+      throw new IllegalArgumentException("Puzzle does not fit a " + cols + "x" + rows + " board");
+    }
+    this.cols = cols;
+    this.rows = rows;
+    this.cells = cells.clone();
+    this.pieces = pieces.clone();
+    this.solution = solution.clone();
+  }
+
+  /**
+   * Pack a move into an int
+   * @param rotation quarter turns from 0 to 3
+   * @param x column of the centre of the piece
+   * @param y row of the centre of the piece
+   * @return move
+   */
+  public static int move(int rotation, int x, int y) {
+    return rotation << 16 | (x & 0xFF) << 8 | y & 0xFF;
+  }
+
+  /**
+   * Get the rotation of a move
+   * @param move move
+   * @return quarter turns
+   */
+  public static int rotation(int move) {
+    return move >> 16;
+  }
+
+  /**
+   * Get the column of a move
+   * @param move move
+   * @return column of the centre of the piece
+   */
+  public static int x(int move) {
+    return (byte) (move >> 8);
+  }
+
+  /**
+   * Get the row of a move
+   * @param move move
+   * @return row of the centre of the piece
+   */
+  public static int y(int move) {
+    return (byte) move;
+  }
+
+  /**
+   * Get the rows of the board as bitmasks, bit x set when the cell is filled
+   * @return one int per row
+   */
+  public int[] getBoardRows() {
+    int[] board = new int[rows];
+    for (int i = 0; i < cells.length; i++) {
+      if (cells[i] != 0) {
+        board[i / cols] |= 1 << (i % cols);
+      }
+    }
+    return board;
+  }
+
+  /**
+   * Get the colour of a cell
+   * @param x column
+   * @param y row
+   * @return colour, 0 for empty
+   */
+  public int getCell(int x, int y) {
+    return cells[y * cols + x];
+  }
+
+  /**
+   * Get the pieces in play order
+   * @return piece numbers
+   */
+  public int[] getPieces() {
+    return pieces.clone();
+  }
+
+  /**
+   * Get the number of pieces
+   * @return pieces
+   */
+  public int getPieceCount() {
+    return pieces.length;
+  }
+
+  /**
+   * Get the solution
+   * @return one move per piece
+   */
+  public int[] getSolution() {
+    return solution.clone();
+  }
+
+  /**
+   * Get number of columns
+   * @return columns
+   */
+  public int getCols() {
+    return cols;
+  }
+
+  /**
+   * Get number of rows
+   * @return rows
+   */
+  public int getRows() {
+    return rows;
+  }
+}
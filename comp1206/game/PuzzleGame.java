@@ -0,0 +1,178 @@
+package uk.ac.soton.comp1206.game;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.event.PuzzleFinishedListener;
+import uk.ac.soton.comp1206.ui.GameWindow;
+
+import java.util.Arrays;
+
+/**
+ * A game of one puzzle: the board starts pre-filled, the pieces come in the puzzle's order and there is no timer.
+ * The puzzle is solved when the board is empty and lost when the pieces run out first.
+ *
+ * The order is the point of the puzzle, so pieces cannot be swapped.
+ */
+public class PuzzleGame extends Game {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(PuzzleGame.class);
+
+  /**
+   * Puzzle being played
+   */
+  private final Puzzle puzzle;
+
+  /**
+   * Pieces not played yet
+   */
+  private final SimpleIntegerProperty piecesLeft;
+
+  /**
+   * Rows of the board after a move, reused
+   */
+  private final int[] boardRows;
+
+  /**
+   * Whether the puzzle is over
+   */
+  private boolean finished = false;
+
+  /**
+   * Told when the puzzle is over
+   */
+  private PuzzleFinishedListener puzzleFinishedListener = null;
+
+  /**
+   * Create a game for a puzzle
+   * @param puzzle puzzle
+   * @param gameWindow game window
+   */
+  public PuzzleGame(Puzzle puzzle, GameWindow gameWindow) {
+    super(puzzle.getCols(), puzzle.getRows(), gameWindow, new ReplayGenerator(puzzle.getPieces()));
+    this.puzzle = puzzle;
+    this.piecesLeft = new SimpleIntegerProperty(puzzle.getPieceCount());
+    this.boardRows = new int[puzzle.getRows()];
+  }
+
+  /**
+   * Fill the board from the puzzle
+   */
+  @Override
+  public void initialiseGame() {
+    super.initialiseGame();
+    logger.info("Starting a {} piece puzzle", puzzle.getPieceCount());
+    grid.beginBatch();
+    try {
+      for (int y = 0; y < rows; y++) {
+        for (int x = 0; x < cols; x++) {
+          grid.set(x, y, puzzle.getCell(x, y));
+        }
+      }
+    } finally {
+      grid.commit();
+    }
+  }
+
+  /**
+   * Puzzles have no timer
+   */
+  @Override
+  public void startGameLoop() {
+  }
+
+  /**
+   * Puzzles have no timer
+   */
+  @Override
+  public void restartGameLoop() {
+  }
+
+  /**
+   * Pieces are played in a fixed order
+   */
+  @Override
+  public void swapCurrentPiece() {
+    logger.info("Pieces cannot be swapped in a puzzle");
+  }
+
+  /**
+   * Ignore clicks once the puzzle is over
+   * @param gameBlock the block that was clicked
+   */
+  @Override
+  public void blockClicked(GameBlock gameBlock) {
+    if (!finished) {
+      super.blockClicked(gameBlock);
+    }
+  }
+
+  /**
+   * Clear lines, then check if the puzzle is solved or the pieces have run out
+   */
+  @Override
+  public void afterPiece() {
+    super.afterPiece();
+    piecesLeft.set(piecesLeft.get() - 1);
+
+    //Occupancy is up to date inside a batch, cell values are not
+    grid.copyRows(boardRows);
+    boolean empty = true;
+    for (int row : boardRows) {
+      empty &= row == 0;
+    }
+    if (empty || piecesLeft.get() == 0) {
+      finished = true;
+      logger.info("Puzzle {}", empty ? "solved" : "failed");
+      if (puzzleFinishedListener != null) {
+        puzzleFinishedListener.puzzleFinished(empty);
+      }
+    }
+  }
+
+  /**
+   * Set the listener told when the puzzle is over
+   * @param puzzleFinishedListener listener
+   */
+  public void setOnPuzzleFinished(PuzzleFinishedListener puzzleFinishedListener) {
+    this.puzzleFinishedListener = puzzleFinishedListener;
+  }
+
+  /**
+   * Get the puzzle
+   * @return puzzle
+   */
+  public Puzzle getPuzzle() {
+    return puzzle;
+  }
+
+  /**
+   * Get the pieces still to play, in order, starting with the current piece
+   * @return piece numbers
+   */
+  public int[] getRemainingPieces() {
+    int[] pieces = puzzle.getPieces();
+    return Arrays.copyOfRange(pieces, pieces.length - piecesLeft.get(), pieces.length);
+  }
+
+  /**
+   * Check if the puzzle is over
+   * @return finished
+   */
+  public boolean isFinished() {
+    return finished;
+  }
+
+  /**
+   * Get pieces left (For UI)
+   * @return pieces left
+   */
+  public IntegerProperty piecesLeftProperty() {
+    return piecesLeft;
+  }
+}
@@ -0,0 +1,287 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Makes puzzles and writes them to a pack.
+ *
+ * A candidate starts from a few rows and columns that should end up cleared. Pieces are dropped at random inside
+ * those lines without overlapping, and the cells of the lines the pieces leave uncovered become the pre-filled board.
+ * That board is often solvable with the pieces in order, but not always, since a line can fill up before the pieces
+ * meant for it are played. So every candidate goes through PuzzleSolver, which either finds a solution or throws the
+ * candidate away, and the solution is then played on a real Grid before the puzzle is kept.
+ *
+ * Puzzle i is made from its own seed, so a pack comes out the same whatever the number of threads. Candidates are
+ * searched in parallel on a pool as big as the number of cores.
+ *
+ * Usage: PuzzleGenerator [--count 500] [--out puzzles.tpz] [--size 5] [--pieces 3-5] [--seed 1206] [--threads n]
+ */
+public class PuzzleGenerator {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(PuzzleGenerator.class);
+
+  /**
+   * Tries at dropping a piece inside the target lines before giving up on a candidate
+   */
+  private static final int DROP_TRIES = 64;
+
+  /**
+   * Candidates tried for one puzzle before giving up, so impossible settings fail instead of running forever
+   */
+  private static final int MAX_CANDIDATES = 100_000;
+
+  private final int cols;
+  private final int rows;
+  private final int minPieces;
+  private final int maxPieces;
+  private final PuzzleSolver solver;
+
+  /**
+   * Create a generator
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param minPieces fewest pieces in a puzzle
+   * @param maxPieces most pieces in a puzzle
+   */
+  public PuzzleGenerator(int cols, int rows, int minPieces, int maxPieces) {
+    if (cols > PuzzlePack.MAX_SIZE || rows > PuzzlePack.MAX_SIZE || minPieces < 1 || maxPieces < minPieces) {
+      throw new IllegalArgumentException("Cannot make " + minPieces + "-" + maxPieces + " piece puzzles on a "
+          + cols + "x" + rows + " board");
+    }
+    this.cols = cols;
+    this.rows = rows;
+    this.minPieces = minPieces;
+    this.maxPieces = maxPieces;
+    this.solver = new PuzzleSolver(cols, rows);
+  }
+
+  /**
+   * Make one puzzle, the same one every time for the same seed
+   * @param seed seed
+   * @return a puzzle with a verified solution
+   * @throws IllegalStateException if no candidate works out, as when there are too many pieces for the board
+   */
+  public Puzzle generate(long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int attempt = 0; attempt < MAX_CANDIDATES; attempt++) {
+      Puzzle puzzle = candidate(random);
+      if (puzzle == null) {
+        continue;
+      }
+      if (!PuzzleSolver.verify(puzzle)) {
+        throw new IllegalStateException("Solver found a solution the grid does not accept, seed " + seed);
+      }
+      return puzzle;
+    }
+    throw new IllegalStateException("No solvable " + minPieces + "-" + maxPieces + " piece puzzle on a " + cols + "x"
+        + rows + " board after " + MAX_CANDIDATES + " candidates, seed " + seed);
+  }
+
+  /**
+   * Make puzzles in parallel
+   * @param count number of puzzles
+   * @param seed seed of the whole set
+   * @param pool pool to make them on
+   * @return puzzles in order
+   */
+  public List<Puzzle> generate(int count, long seed, ForkJoinPool pool) {
+    SplittableRandom seeds = new SplittableRandom(seed);
+    long[] puzzleSeeds = seeds.longs(count).toArray();
+    return pool.submit(() -> IntStream.range(0, count)
+        .parallel()
+        .mapToObj(i -> generate(puzzleSeeds[i]))
+        .collect(Collectors.toList())).join();
+  }
+
+  /**
+   * Get the solver used to check candidates
+   * @return solver
+   */
+  public PuzzleSolver getSolver() {
+    return solver;
+  }
+
+  /**
+   * Build one candidate and solve it
+   * @return puzzle, or null if the candidate did not work out
+   */
+  private Puzzle candidate(SplittableRandom random) {
+    int pieceCount = minPieces + random.nextInt(maxPieces - minPieces + 1);
+
+    //Enough lines for the pieces with some cells left over to pre-fill
+    int lineCount = Math.min(rows + cols, (pieceCount * 4 + cols - 1) / cols + random.nextInt(2));
+    int[] target = new int[rows];
+    int[] lines = new int[rows + cols];
+    for (int i = 0; i < lines.length; i++) {
+      lines[i] = i;
+    }
+    for (int i = 0; i < lineCount; i++) {
+      int pick = i + random.nextInt(lines.length - i);
+      int line = lines[pick];
+      lines[pick] = lines[i];
+      lines[i] = line;
+      for (int j = 0; j < (line < rows ? cols : rows); j++) {
+        int x = line < rows ? j : line - rows;
+        int y = line < rows ? line : j;
+        target[y] |= 1 << x;
+      }
+    }
+
+    int[] covered = new int[rows];
+    int[] pieces = new int[pieceCount];
+    for (int i = 0; i < pieceCount; i++) {
+      if (!drop(random, target, covered, pieces, i)) {
+        return null;
+      }
+    }
+
+    //A full line would be cleared before the puzzle starts
+    int[] prefilled = new int[rows];
+    boolean empty = true;
+    for (int y = 0; y < rows; y++) {
+      prefilled[y] = target[y] & ~covered[y];
+      empty &= prefilled[y] == 0;
+    }
+    for (int line = 0; line < rows + cols; line++) {
+      if (isFull(prefilled, line)) {
+        return null;
+      }
+    }
+    if (empty) {
+      return null;
+    }
+
+    int[] solution = solver.solve(prefilled, pieces);
+    if (solution == null) {
+      return null;
+    }
+    int[] cells = new int[cols * rows];
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        if ((prefilled[y] >> x & 1) != 0) {
+          cells[y * cols + x] = 1 + random.nextInt(GamePiece.PIECES);
+        }
+      }
+    }
+    return new Puzzle(cols, rows, cells, pieces, solution);
+  }
+
+  /**
+   * Drop a random piece inside the target lines where no other piece is
+   * @return whether a piece was dropped
+   */
+  private boolean drop(SplittableRandom random, int[] target, int[] covered, int[] pieces, int index) {
+    for (int tries = 0; tries < DROP_TRIES; tries++) {
+      int piece = random.nextInt(GamePiece.PIECES);
+      int mask = PieceMasks.mask(piece, random.nextInt(4));
+      int placeX = random.nextInt(cols + 2) - 1;
+      int placeY = random.nextInt(rows + 2) - 1;
+      if (inside(mask, placeX, placeY, target, covered)) {
+        for (int row = 0; row < PieceMasks.SIZE; row++) {
+          for (int column = 0; column < PieceMasks.SIZE; column++) {
+            if ((PieceMasks.row(mask, row) >> column & 1) != 0) {
+              covered[placeY - 1 + row] |= 1 << (placeX - 1 + column);
+            }
+          }
+        }
+        pieces[index] = piece;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check every block of a piece lands on an uncovered target cell
+   */
+  private boolean inside(int mask, int placeX, int placeY, int[] target, int[] covered) {
+    for (int row = 0; row < PieceMasks.SIZE; row++) {
+      for (int column = 0; column < PieceMasks.SIZE; column++) {
+        if ((PieceMasks.row(mask, row) >> column & 1) == 0) {
+          continue;
+        }
+        int x = placeX - 1 + column;
+        int y = placeY - 1 + row;
+        if (x < 0 || x >= cols || y < 0 || y >= rows || (target[y] >> x & 1) == 0 || (covered[y] >> x & 1) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Check if a line is full, rows first then columns
+   */
+  private boolean isFull(int[] board, int line) {
+    if (line < rows) {
+      return board[line] == (1 << cols) - 1;
+    }
+    int bit = 1 << (line - rows);
+    for (int y = 0; y < rows; y++) {
+      if ((board[y] & bit) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Make a pack of puzzles
+   * @param args command line arguments
+   * @throws IOException if the pack cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    int count = 500;
+    Path out = Paths.get("puzzles.tpz");
+    int size = 5;
+    int minPieces = 3;
+    int maxPieces = 5;
+    long seed = 1206;
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--count" -> count = Integer.parseInt(args[i + 1]);
+        case "--out" -> out = Paths.get(args[i + 1]);
+        case "--size" -> size = Integer.parseInt(args[i + 1]);
+        case "--pieces" -> {
+          String[] range = args[i + 1].split("-");
+          minPieces = Integer.parseInt(range[0]);
+          maxPieces = Integer.parseInt(range[range.length - 1]);
+        }
+        case "--seed" -> seed = Long.parseLong(args[i + 1]);
+        case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+        default -> logger.error("Unknown option: {}", args[i]);
+      }
+    }
+
+    PuzzleGenerator generator = new PuzzleGenerator(size, size, minPieces, maxPieces);
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    long start = System.nanoTime();
+    List<Puzzle> puzzles;
+    try {
+      puzzles = generator.generate(count, seed, pool);
+    } finally {
+      pool.shutdown();
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    logger.info("Made {} puzzles on {} threads in {}ms, {} boards searched", count, threads, millis,
+        generator.getSolver().getNodes());
+    PuzzlePack.write(out, puzzles);
+  }
+}
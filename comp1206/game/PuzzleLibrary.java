@@ -0,0 +1,83 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hands out puzzles by number from the pack given by -Dtetrecs.puzzles (puzzles.tpz by default), made with
+ * PuzzleGenerator. Without a pack, puzzles are made as they are asked for.
+ *
+ * Everything runs on a background thread, so neither reading the pack nor making a puzzle holds up the caller.
+ */
+public class PuzzleLibrary {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(PuzzleLibrary.class);
+
+  /**
+   * Thread that reads and makes puzzles
+   */
+  private static final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "puzzle-loader");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Pack of puzzles, opened the first time a puzzle is needed and kept open. Only touched on the loader thread
+   */
+  private static PuzzlePack pack;
+
+  /**
+   * Whether opening the pack has been tried
+   */
+  private static boolean packOpened = false;
+
+  private PuzzleLibrary() {
+  }
+
+  /**
+   * Load a puzzle in the background
+   * @param index puzzle number, wrapping round at the end of the pack
+   * @return the puzzle once it is ready
+   */
+  public static CompletableFuture<Puzzle> load(int index) {
+    return CompletableFuture.supplyAsync(() -> read(index), loader);
+  }
+
+  /**
+   * Read a puzzle from the pack, or make one if there is no pack. Runs on the loader thread
+   */
+  private static Puzzle read(int index) {
+    if (!packOpened) {
+      packOpened = true;
+      Path path = Paths.get(System.getProperty("tetrecs.puzzles", "puzzles.tpz"));
+      if (Files.exists(path)) {
+        try {
+          pack = PuzzlePack.open(path);
+        } catch (IOException e) {
+          logger.error("Fail to open the puzzle pack, {}", e.toString());
+        }
+      }
+    }
+    if (pack != null && pack.size() > 0) {
+      try {
+        return pack.get(Math.floorMod(index, pack.size()));
+      } catch (IOException e) {
+        logger.error("Fail to read puzzle {}, {}", index, e.toString());
+      }
+    }
+    logger.info("No puzzle pack, making puzzle {}", index);
+    return new PuzzleGenerator(5, 5, 3, 5).generate(index);
+  }
+}
@@ -0,0 +1,242 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A file of puzzles, read one at a time by index.
+ *
+ * Every puzzle takes the same number of bytes, so puzzle i is a single read at a fixed offset and opening a pack only
+ * reads its header. The layout, big endian:
+ * - header: magic "TPZ1", columns, rows, most pieces in a puzzle, record size, number of puzzles, one int each
+ * - one record per puzzle: cell colours two to a byte, the number of pieces, then two bytes a piece, the piece number
+ *   and rotation of its solution move, then the column and row of the move plus one, four bits each
+ *
+ * Boards can be up to 14x14, with up to 127 pieces. Reads are positional, so a pack can be shared between threads.
+ */
+public class PuzzlePack implements Closeable {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(PuzzlePack.class);
+
+  /**
+   * "TPZ1"
+   */
+  private static final int MAGIC = 0x54505A31;
+
+  /**
+   * Header length in bytes
+   */
+  private static final int HEADER = 24;
+
+  /**
+   * Largest board that fits the four bit move positions
+   */
+  public static final int MAX_SIZE = 14;
+
+  /**
+   * Most pieces in a puzzle, as the count is stored in a byte
+   */
+  public static final int MAX_PIECES = 127;
+
+  private final FileChannel channel;
+  private final int cols;
+  private final int rows;
+  private final int maxPieces;
+  private final int recordSize;
+  private final int count;
+
+  private PuzzlePack(FileChannel channel, int cols, int rows, int maxPieces, int recordSize, int count) {
+    this.channel = channel;
+    this.cols = cols;
+    this.rows = rows;
+    this.maxPieces = maxPieces;
+    this.recordSize = recordSize;
+    this.count = count;
+  }
+
+  /**
+   * Open a pack, reading only its header
+   * @param path pack file
+   * @return pack, close it when done
+   * @throws IOException if the file cannot be read or is not a pack
+   */
+  public static PuzzlePack open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      readFully(channel, header, 0);
+      header.flip();
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a puzzle pack: " + path);
+      }
+      int cols = header.getInt();
+      int rows = header.getInt();
+      int maxPieces = header.getInt();
+      int recordSize = header.getInt();
+      int count = header.getInt();
+      if (cols < 1 || cols > MAX_SIZE || rows < 1 || rows > MAX_SIZE || count < 0
+          || recordSize != recordSize(cols, rows, maxPieces) || channel.size() < HEADER + (long) count * recordSize) {
+        throw new IOException("Corrupt puzzle pack: " + path);
+      }
+      logger.info("Opened {} {}x{} puzzles from {}", count, cols, rows, path);
+      return new PuzzlePack(channel, cols, rows, maxPieces, recordSize, count);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Write puzzles to a pack, replacing the file
+   * @param path pack file
+   * @param puzzles puzzles, all on the same size of board
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(Path path, List<Puzzle> puzzles) throws IOException {
+    if (puzzles.isEmpty()) {
+      throw new IllegalArgumentException("No puzzles to write");
+    }
+    int cols = puzzles.get(0).getCols();
+    int rows = puzzles.get(0).getRows();
+    if (cols > MAX_SIZE || rows > MAX_SIZE) {
+      throw new IllegalArgumentException("Board too big for a pack: " + cols + "x" + rows);
+    }
+    int maxPieces = 0;
+    for (Puzzle puzzle : puzzles) {
+      if (puzzle.getCols() != cols || puzzle.getRows() != rows) {
+        throw new IllegalArgumentException("Puzzles in a pack must share a board size");
+      }
+      if (puzzle.getPieceCount() > MAX_PIECES) {
+        throw new IllegalArgumentException("Too many pieces for a pack: " + puzzle.getPieceCount());
+      }
+      maxPieces = Math.max(maxPieces, puzzle.getPieceCount());
+    }
+    int recordSize = recordSize(cols, rows, maxPieces);
+
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER + puzzles.size() * recordSize);
+    buffer.putInt(MAGIC).putInt(cols).putInt(rows).putInt(maxPieces).putInt(recordSize).putInt(puzzles.size());
+    for (Puzzle puzzle : puzzles) {
+      int start = buffer.position();
+      int cells = cols * rows;
+      for (int i = 0; i < cells; i += 2) {
+        int high = puzzle.getCell(i % cols, i / cols);
+        int low = i + 1 < cells ? puzzle.getCell((i + 1) % cols, (i + 1) / cols) : 0;
+        buffer.put((byte) (high << 4 | low));
+      }
+      int[] pieces = puzzle.getPieces();
+      int[] solution = puzzle.getSolution();
+      buffer.put((byte) pieces.length);
+      for (int i = 0; i < pieces.length; i++) {
+        buffer.put((byte) (pieces[i] << 2 | Puzzle.rotation(solution[i])));
+        buffer.put((byte) ((Puzzle.x(solution[i]) + 1) << 4 | Puzzle.y(solution[i]) + 1));
+      }
+      buffer.position(start + recordSize);
+    }
+    buffer.flip();
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    logger.info("Wrote {} puzzles to {}", puzzles.size(), path);
+  }
+
+  /**
+   * Read one puzzle
+   * @param index puzzle number starting from 0
+   * @return puzzle
+   * @throws IOException if the record cannot be read
+   */
+  public Puzzle get(int index) throws IOException {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("No such puzzle: " + index);
+    }
+    ByteBuffer record = ByteBuffer.allocate(recordSize);
+    readFully(channel, record, HEADER + (long) index * recordSize);
+    record.flip();
+
+    int[] cells = new int[cols * rows];
+    for (int i = 0; i < cells.length; i += 2) {
+      int packed = record.get() & 0xFF;
+      cells[i] = packed >> 4;
+      if (i + 1 < cells.length) {
+        cells[i + 1] = packed & 0xF;
+      }
+    }
+    int pieceCount = record.get();
+    if (pieceCount < 0 || pieceCount > maxPieces) {
+      throw new IOException("Corrupt puzzle: " + index);
+    }
+    int[] pieces = new int[pieceCount];
+    int[] solution = new int[pieceCount];
+    for (int i = 0; i < pieceCount; i++) {
+      int piece = record.get() & 0xFF;
+      int position = record.get() & 0xFF;
+      pieces[i] = piece >> 2;
+      solution[i] = Puzzle.move(piece & 3, (position >> 4) - 1, (position & 0xF) - 1);
+    }
+    return new Puzzle(cols, rows, cells, pieces, solution);
+  }
+
+  /**
+   * Get the number of puzzles
+   * @return puzzles
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Get number of columns of every puzzle
+   * @return columns
+   */
+  public int getCols() {
+    return cols;
+  }
+
+  /**
+   * Get number of rows of every puzzle
+   * @return rows
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Bytes taken by one puzzle
+   */
+  private static int recordSize(int cols, int rows, int maxPieces) {
+    return (cols * rows + 1) / 2 + 1 + maxPieces * 2;
+  }
+
+  /**
+   * Fill a buffer from a position in a channel
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new EOFException("Puzzle pack is truncated");
+      }
+    }
+  }
+}
@@ -0,0 +1,385 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exhaustive solver for puzzles: finds moves for a fixed sequence of pieces that leave the board empty, or proves there
+ * are none.
+ *
+ * The search is a depth first walk over every distinct rotation and position of each piece in turn, on a
+ * FeatureExtractor so placing and clearing are cheap and undone from its trail. Two things keep it small:
+ * - a board is dead if some filled cell needs more blocks to finish both its row and its column than the pieces left
+ *   hold, since that cell can then never be cleared
+ * - boards proved dead are remembered in a transposition table, keyed by the board and the pieces still to play, so
+ *   the same board reached by moves in another order, or in another puzzle with the same tail, is not searched again
+ *
+ * Only dead boards are stored, so the table is shared by every solver and thread. Each call searches on its own
+ * board, so a solver can be used from many threads at once, and solveParallel splits the first move across a pool.
+ */
+public class PuzzleSolver {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(PuzzleSolver.class);
+
+  /**
+   * Boards with no solution, shared by every solver. Size set with -Dtetrecs.puzzle.tt.mb
+   */
+  private static final TranspositionTable dead = new TranspositionTable(Integer.getInteger("tetrecs.puzzle.tt.mb", 16));
+
+  /**
+   * Board size
+   */
+  private final int cols;
+  private final int rows;
+
+  /**
+   * Rotations of each piece with distinct shapes
+   */
+  private final int[][] rotations = new int[GamePiece.PIECES][];
+
+  /**
+   * Boards visited, over every search
+   */
+  private final LongAdder nodes = new LongAdder();
+
+  /**
+   * Create a solver
+   * @param cols number of columns
+   * @param rows number of rows
+   */
+  public PuzzleSolver(int cols, int rows) {
+    if (cols > Zobrist.MAX_SIZE || rows > Zobrist.MAX_SIZE) {
+      throw new IllegalArgumentException("Board too big to solve: " + cols + "x" + rows);
+    }
+    this.cols = cols;
+    this.rows = rows;
+    for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+      int[] distinct = new int[4];
+      int count = 0;
+      for (int rotation = 0; rotation < 4; rotation++) {
+        boolean seen = false;
+        for (int i = 0; i < count; i++) {
+          seen |= PieceMasks.mask(piece, distinct[i]) == PieceMasks.mask(piece, rotation);
+        }
+        if (!seen) {
+          distinct[count++] = rotation;
+        }
+      }
+      rotations[piece] = Arrays.copyOf(distinct, count);
+    }
+  }
+
+  /**
+   * Solve on the calling thread
+   * @param board rows of the board, bit x set when the cell is filled
+   * @param pieces piece numbers in play order
+   * @return one move per piece made with Puzzle.move, or null if there is no solution
+   */
+  public int[] solve(int[] board, int[] pieces) {
+    Search search = new Search(board, pieces, new AtomicBoolean());
+    return search.run(0) ? search.moves : null;
+  }
+
+  /**
+   * Solve with every move of the first piece searched as its own task
+   * @param board rows of the board, bit x set when the cell is filled
+   * @param pieces piece numbers in play order
+   * @param pool pool to search on
+   * @return one move per piece made with Puzzle.move, or null if there is no solution
+   */
+  public int[] solveParallel(int[] board, int[] pieces, ForkJoinPool pool) {
+    if (pieces.length == 0) {
+      return solve(board, pieces);
+    }
+    AtomicBoolean found = new AtomicBoolean();
+    Search root = new Search(board, pieces, found);
+    List<RootTask> tasks = new ArrayList<>();
+    for (int rotation : rotations[pieces[0]]) {
+      int mask = PieceMasks.mask(pieces[0], rotation);
+      for (int y = -1; y <= rows; y++) {
+        for (int x = -1; x <= cols; x++) {
+          if (root.board.fits(mask, x, y)) {
+            tasks.add(new RootTask(board, pieces, found, Puzzle.move(rotation, x, y)));
+          }
+        }
+      }
+    }
+    return pool.invoke(new RecursiveTask<int[]>() {
+      @Override
+      protected int[] compute() {
+        invokeAll(tasks);
+        for (RootTask task : tasks) {
+          int[] moves = task.join();
+          if (moves != null) {
+            return moves;
+          }
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Check a solution by playing it on a Grid under the game's own rules
+   * @param puzzle puzzle
+   * @return whether the solution leaves the board empty
+   */
+  public static boolean verify(Puzzle puzzle) {
+    int cols = puzzle.getCols();
+    int rows = puzzle.getRows();
+    Grid grid = new Grid(cols, rows);
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        grid.set(x, y, puzzle.getCell(x, y));
+      }
+    }
+    int[] pieces = puzzle.getPieces();
+    int[] solution = puzzle.getSolution();
+    for (int i = 0; i < pieces.length; i++) {
+      GamePiece piece = GamePiece.createPiece(pieces[i], Puzzle.rotation(solution[i]));
+      int x = Puzzle.x(solution[i]);
+      int y = Puzzle.y(solution[i]);
+      if (!grid.canPlayPiece(piece, x, y)) {
+        return false;
+      }
+      grid.playPiece(piece, x, y);
+      clearFullLines(grid);
+    }
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        if (grid.get(x, y) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the number of boards visited by every search so far
+   * @return nodes
+   */
+  public long getNodes() {
+    return nodes.sum();
+  }
+
+  /**
+   * Empty every full row and column of a grid at once, as Game does
+   */
+  private static void clearFullLines(Grid grid) {
+    int cols = grid.getCols();
+    int rows = grid.getRows();
+    boolean[] fullRows = new boolean[rows];
+    boolean[] fullColumns = new boolean[cols];
+    for (int y = 0; y < rows; y++) {
+      fullRows[y] = true;
+      for (int x = 0; x < cols; x++) {
+        fullRows[y] &= grid.get(x, y) != 0;
+      }
+    }
+    for (int x = 0; x < cols; x++) {
+      fullColumns[x] = true;
+      for (int y = 0; y < rows; y++) {
+        fullColumns[x] &= grid.get(x, y) != 0;
+      }
+    }
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        if (fullRows[y] || fullColumns[x]) {
+          grid.set(x, y, 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Mix a value into a well spread 64 bit key
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * One search from a board, used by a single thread
+   */
+  private class Search {
+
+    /**
+     * Board being searched
+     */
+    private final FeatureExtractor board;
+
+    /**
+     * Pieces in play order
+     */
+    private final int[] pieces;
+
+    /**
+     * Key of the pieces left to play from each position in the sequence
+     */
+    private final long[] tails;
+
+    /**
+     * Blocks in the pieces left to play from each position in the sequence
+     */
+    private final int[] blocksLeft;
+
+    /**
+     * Moves of the current line, the solution once found
+     */
+    private final int[] moves;
+
+    /**
+     * Set when any search of the same puzzle finds a solution, so the others stop
+     */
+    private final AtomicBoolean found;
+
+    /**
+     * Boards visited by this search
+     */
+    private long visited = 0;
+
+    private Search(int[] rows, int[] pieces, AtomicBoolean found) {
+      this.board = new FeatureExtractor(cols, PuzzleSolver.this.rows);
+      for (int y = 0; y < rows.length; y++) {
+        for (int x = 0; x < cols; x++) {
+          if ((rows[y] >> x & 1) != 0) {
+            board.setCell(x, y, true);
+          }
+        }
+      }
+      this.pieces = pieces;
+      this.found = found;
+      this.moves = new int[pieces.length];
+      this.tails = new long[pieces.length + 1];
+      this.blocksLeft = new int[pieces.length + 1];
+      tails[pieces.length] = mix((long) cols << 8 | PuzzleSolver.this.rows);
+      for (int i = pieces.length - 1; i >= 0; i--) {
+        tails[i] = mix(tails[i + 1] * 31 + pieces[i] + 1);
+        blocksLeft[i] = blocksLeft[i + 1] + Integer.bitCount(PieceMasks.mask(pieces[i], 0));
+      }
+      board.snapshot();
+    }
+
+    /**
+     * Search from a position in the sequence
+     * @param index next piece to play
+     * @return whether the board can be emptied, with moves holding the solution
+     */
+    private boolean run(int index) {
+      try {
+        return search(index);
+      } finally {
+        nodes.add(visited);
+      }
+    }
+
+    private boolean search(int index) {
+      visited++;
+      if (index == pieces.length) {
+        return board.getFilled() == 0;
+      }
+      if (found.get() || !clearable(blocksLeft[index])) {
+        return false;
+      }
+      long key = board.getHash() ^ tails[index];
+      if (dead.probe(key, 0) != TranspositionTable.MISS) {
+        return false;
+      }
+
+      int piece = pieces[index];
+      for (int rotation : rotations[piece]) {
+        int mask = PieceMasks.mask(piece, rotation);
+        for (int y = -1; y <= rows; y++) {
+          for (int x = -1; x <= cols; x++) {
+            if (!board.fits(mask, x, y)) {
+              continue;
+            }
+            int snapshot = board.snapshot();
+            board.place(mask, x, y);
+            board.clearFullLines();
+            moves[index] = Puzzle.move(rotation, x, y);
+            boolean solved = search(index + 1);
+            board.restore(snapshot);
+            if (solved) {
+              return true;
+            }
+          }
+        }
+      }
+      //A search cut short by another thread proves nothing
+      if (!found.get()) {
+        dead.store(key, pieces.length - index, 0);
+      }
+      return false;
+    }
+
+    /**
+     * Check that every filled cell could still be cleared by a row or a column with the blocks left
+     */
+    private boolean clearable(int blocks) {
+      for (int y = 0; y < rows; y++) {
+        int rowFill = board.getRowFill(y);
+        if (rowFill == 0 || cols - rowFill <= blocks) {
+          continue;
+        }
+        for (int x = 0; x < cols; x++) {
+          if (board.isFilled(x, y) && rows - board.getColumnFill(x) > blocks) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Search after one move of the first piece
+   */
+  private class RootTask extends RecursiveTask<int[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] board;
+    private final int[] pieces;
+    private final AtomicBoolean found;
+    private final int move;
+
+    private RootTask(int[] board, int[] pieces, AtomicBoolean found, int move) {
+      this.board = board;
+      this.pieces = pieces;
+      this.found = found;
+      this.move = move;
+    }
+
+    @Override
+    protected int[] compute() {
+      if (found.get()) {
+        return null;
+      }
+      Search search = new Search(board, pieces, found);
+      search.board.place(PieceMasks.mask(pieces[0], Puzzle.rotation(move)), Puzzle.x(move), Puzzle.y(move));
+      search.board.clearFullLines();
+      search.moves[0] = move;
+      if (!search.run(1)) {
+        return null;
+      }
+      found.set(true);
+      logger.debug("Solved from first move {}", move);
+      return search.moves;
+    }
+  }
+}
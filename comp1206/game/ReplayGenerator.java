@@ -0,0 +1,83 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Plays back a recorded list of pieces, starting again from the top when it runs out. Used to replay a game or to give
+ * a bot the same pieces on every run
+ */
+public class ReplayGenerator implements PieceGenerator {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(ReplayGenerator.class);
+
+  /**
+   * Pieces to play back
+   */
+  private final int[] sequence;
+
+  /**
+   * Position of the next piece
+   */
+  private int position;
+
+  /**
+   * Create a replay generator
+   * @param sequence piece numbers to play back, not empty
+   */
+  public ReplayGenerator(int[] sequence) {
+    if (sequence.length == 0) {
+      throw new IllegalArgumentException("Nothing to replay");
+    }
+    for (int piece : sequence) {
+      if (piece < 0 || piece >= GamePiece.PIECES) {
+        throw new IllegalArgumentException("No such piece: " + piece);
+      }
+    }
+    this.sequence = sequence.clone();
+  }
+
+  @Override
+  public void fill(int[] pieces, int count) {
+    for (int i = 0; i < count; i++) {
+      pieces[i] = sequence[position];
+      position = position + 1 == sequence.length ? 0 : position + 1;
+    }
+  }
+
+  /**
+   * Load a sequence of piece numbers separated by commas or whitespace, either from a file or written out directly
+   * @param source path to a file, or the piece numbers themselves
+   * @return generator
+   */
+  public static ReplayGenerator load(String source) {
+    String text = source;
+    Path path = Paths.get(source);
+    if (!source.isBlank() && Files.isRegularFile(path)) {
+      try {
+        text = Files.readString(path);
+      } catch (IOException e) {
+        logger.error("Fail to read replay {}, {}", path, e.toString());
+        throw new IllegalArgumentException("Unreadable replay: " + path, e);
+      }
+    }
+    String[] parts = text.trim().split("[,\\s]+");
+    if (parts.length == 1 && parts[0].isEmpty()) {
+      throw new IllegalArgumentException("Nothing to replay");
+    }
+    int[] sequence = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      sequence[i] = Integer.parseInt(parts[i]);
+    }
+    logger.info("Replaying {} pieces", sequence.length);
+    return new ReplayGenerator(sequence);
+  }
+}
@@ -0,0 +1,75 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Evaluates placements one at a time with bit operations on the rows, the fallback when the Vector API is not
+ * available
+ */
+public class ScalarPlacementEvaluator implements PlacementEvaluator {
+
+  @Override
+  public void evaluate(int[] board, int cols, int rows, PlacementBatch batch) {
+    evaluate(board, cols, rows, batch, 0);
+  }
+
+  /**
+   * Evaluate the candidates from an index onwards, also used for the tail the vector evaluator leaves over
+   * @param board bits of each row
+   * @param cols number of columns
+   * @param rows number of rows
+   * @param batch candidates
+   * @param from first candidate to evaluate
+   */
+  void evaluate(int[] board, int cols, int rows, PlacementBatch batch, int from) {
+    int fullRow = (1 << cols) - 1;
+    for (int i = from; i < batch.size; i++) {
+      int mask = batch.masks[i];
+      int placeX = batch.xs[i];
+      int placeY = batch.ys[i];
+
+      //Anchors further out would shift the mask by a negative amount
+      boolean legal = batch.inRange(i, cols, rows);
+      int fullRows = 0;
+      int fullCols = fullRow;
+      //Rows the piece does not touch only matter for the columns
+      for (int y = 0; y < rows; y++) {
+        if (y < placeY - 1 || y > placeY + 1) {
+          fullCols &= board[y];
+        }
+      }
+      for (int row = 0; row < PieceMasks.SIZE && legal; row++) {
+        int y = placeY - 1 + row;
+        //Shift through a wider int so blocks hanging off either side are caught
+        long shifted = (long) PieceMasks.row(mask, row) << (placeX + 1);
+        boolean inside = y >= 0 && y < rows;
+        if ((shifted & 3) != 0 || (shifted >> 2 & ~fullRow) != 0 || (!inside && shifted != 0)) {
+          legal = false;
+          break;
+        }
+        if (!inside) {
+          continue;
+        }
+        int cells = (int) (shifted >> 2);
+        if ((board[y] & cells) != 0) {
+          legal = false;
+          break;
+        }
+        int after = board[y] | cells;
+        fullCols &= after;
+        if (after == fullRow) {
+          fullRows++;
+        }
+      }
+
+      if (legal) {
+        int columns = Integer.bitCount(fullCols);
+        batch.legal[i] = 1;
+        batch.lines[i] = fullRows + columns;
+        batch.blocks[i] = fullRows * cols + columns * rows - fullRows * columns;
+      } else {
+        batch.legal[i] = 0;
+        batch.lines[i] = 0;
+        batch.blocks[i] = 0;
+      }
+    }
+  }
+}
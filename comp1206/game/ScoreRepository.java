@@ -0,0 +1,274 @@
+package uk.ac.soton.comp1206.game;
+
+import javafx.application.Platform;
+import javafx.util.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.ScoresUpdatedListener;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds the local high scores in memory, shared by every scene.
+ *
+ * The scores file is read once in the background. Adding a score only updates memory, the file is written behind on
+ * a single I/O thread, and several adds in a row are folded into one write. Nothing here touches the disk on the
+ * calling thread.
+ *
+ * Lines of the file that cannot be parsed are skipped, and the file is copied to a .bak next to it before it is
+ * next written so they are not lost. If the file cannot be read at all it is never overwritten.
+ */
+public class ScoreRepository {
+
+  /**
+   * Logger to debug
+   */
+  private static final Logger logger = LogManager.getLogger(ScoreRepository.class);
+
+  /**
+   * File holding the scores
+   */
+  private final Path file;
+
+  /**
+   * Scores in memory, guarded by this
+   */
+  private final List<Pair<String, Integer>> scores = new ArrayList<>();
+
+  /**
+   * Background thread doing all file reads and writes
+   */
+  private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "score-io");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Whether a write is already queued, so adds before it runs share it
+   */
+  private final AtomicBoolean savePending = new AtomicBoolean(false);
+
+  /**
+   * Whether the scores file has been read
+   */
+  private volatile boolean loaded = false;
+
+  /**
+   * Whether the scores file exists but could not be read, so writing it would lose the scores in it
+   */
+  private volatile boolean readFailed = false;
+
+  /**
+   * Listener told when the scores change
+   */
+  private ScoresUpdatedListener scoresUpdatedListener = null;
+
+  /**
+   * Create a repository for the given scores file and start reading it in the background
+   * @param file scores file
+   */
+  public ScoreRepository(Path file) {
+    this.file = file;
+    ioExecutor.execute(this::load);
+
+    //Write any queued scores before the JVM exits
+    Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "score-flush"));
+  }
+
+  /**
+   * Get a copy of the scores
+   * @return scores, in the order they were added
+   */
+  public synchronized List<Pair<String, Integer>> getScores() {
+    return new ArrayList<>(scores);
+  }
+
+  /**
+   * Whether the scores file has been read yet
+   * @return loaded
+   */
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Add a score. Returns straight away, the file is written in the background.
+   * @param score name and score
+   */
+  public void addScore(Pair<String, Integer> score) {
+    synchronized (this) {
+      scores.add(score);
+    }
+    scheduleSave();
+    notifyListener();
+  }
+
+  /**
+   * Set the listener told when the scores change. Called on the JavaFX thread.
+   * @param listener listener, or null to remove
+   */
+  public synchronized void setOnScoresUpdated(ScoresUpdatedListener listener) {
+    this.scoresUpdatedListener = listener;
+  }
+
+  /**
+   * Finish any queued writes and stop the I/O thread
+   */
+  public void flush() {
+    ioExecutor.shutdown();
+    try {
+      if (!ioExecutor.awaitTermination(2, TimeUnit.SECONDS)) {
+        logger.error("Timed out writing scores");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Queue a write unless one is already waiting
+   */
+  private void scheduleSave() {
+    if (savePending.compareAndSet(false, true)) {
+      try {
+        ioExecutor.execute(this::save);
+      } catch (Exception e) {
+        savePending.set(false);
+        logger.error("Failed to queue score write, {}", e.toString());
+      }
+    }
+  }
+
+  /**
+   * Read the scores file. Runs on the I/O thread.
+   */
+  private void load() {
+    List<Pair<String, Integer>> fromFile = new ArrayList<>();
+    int skipped = 0;
+    try (BufferedReader reader = Files.newBufferedReader(file)) {
+      String line;
+      int number = 0;
+      while ((line = reader.readLine()) != null) {
+        number++;
+        Pair<String, Integer> score = parse(line);
+        if (score != null) {
+          fromFile.add(score);
+        } else if (!line.isBlank()) {
+          skipped++;
+          logger.warn("Skipping bad line {} of the scores file: {}", number, line);
+        }
+      }
+    } catch (NoSuchFileException e) {
+      logger.info("No scores file yet");
+    } catch (IOException e) {
+      //Keep what was read, but never write over a file we could not read
+      readFailed = true;
+      logger.error("Failed to read scores, the scores file will not be written", e);
+    }
+    if (skipped > 0 && !readFailed) {
+      backup();
+    }
+
+    //Anything added before the file was read goes after the stored scores
+    synchronized (this) {
+      scores.addAll(0, fromFile);
+    }
+    loaded = true;
+    logger.info("Loaded {} scores", fromFile.size());
+    notifyListener();
+  }
+
+  /**
+   * Parse a line of the scores file
+   * @param line name:score
+   * @return name and score, or null if the line is not a score
+   */
+  private static Pair<String, Integer> parse(String line) {
+    String[] parts = line.split(":");
+    if (parts.length != 2) {
+      return null;
+    }
+    try {
+      return new Pair<>(parts[0], Integer.parseInt(parts[1].trim()));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Copy the scores file aside before it is written without the lines that were skipped
+   */
+  private void backup() {
+    Path copy = file.resolveSibling(file.getFileName() + ".bak");
+    try {
+      Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+      logger.info("Copied the scores file to {}", copy);
+    } catch (IOException e) {
+      readFailed = true;
+      logger.error("Failed to back up scores, the scores file will not be written", e);
+    }
+  }
+
+  /**
+   * Write the scores file. Runs on the I/O thread.
+   */
+  private void save() {
+    savePending.set(false);
+    if (readFailed) {
+      logger.error("Not writing scores, the scores file could not be read");
+      return;
+    }
+    List<Pair<String, Integer>> snapshot = getScores();
+
+    //Write to a temporary file first so a crash never leaves half a scores file
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+      for (Pair<String, Integer> score : snapshot) {
+        writer.write(score.getKey() + ":" + score.getValue() + "\n");
+      }
+    } catch (IOException e) {
+      logger.error("Failed to write scores", e);
+      return;
+    }
+
+    try {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      try {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException ex) {
+        logger.error("Failed to replace scores file", ex);
+        return;
+      }
+    }
+    logger.info("Saved {} scores", snapshot.size());
+  }
+
+  /**
+   * Tell the listener about the current scores on the JavaFX thread
+   */
+  private void notifyListener() {
+    Platform.runLater(() -> {
+      ScoresUpdatedListener listener;
+      synchronized (this) {
+        listener = scoresUpdatedListener;
+      }
+      if (listener != null) {
+        listener.scoresUpdated(getScores());
+      }
+    });
+  }
+}
@@ -0,0 +1,64 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Random;
+
+/**
+ * Deals pieces from a shuffled bag holding every piece the same number of times, so no piece can be missing for long
+ */
+public class ShuffleBagGenerator implements PieceGenerator {
+
+  /**
+   * Random to shuffle the bag
+   */
+  private final Random random;
+
+  /**
+   * The bag, dealt from the front
+   */
+  private final int[] bag;
+
+  /**
+   * Position of the next piece in the bag
+   */
+  private int position;
+
+  /**
+   * Create a shuffle bag generator
+   * @param seed seed
+   * @param copies how many of each piece go in the bag
+   */
+  public ShuffleBagGenerator(long seed, int copies) {
+    if (copies < 1) {
+      throw new IllegalArgumentException("A bag needs at least one copy of each piece: " + copies);
+    }
+    this.random = new Random(seed);
+    this.bag = new int[GamePiece.PIECES * copies];
+    for (int i = 0; i < bag.length; i++) {
+      bag[i] = i % GamePiece.PIECES;
+    }
+    position = bag.length;
+  }
+
+  @Override
+  public void fill(int[] pieces, int count) {
+    for (int i = 0; i < count; i++) {
+      if (position == bag.length) {
+        shuffle();
+      }
+      pieces[i] = bag[position++];
+    }
+  }
+
+  /**
+   * Fisher-Yates shuffle of the whole bag
+   */
+  private void shuffle() {
+    for (int i = bag.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int tmp = bag[i];
+      bag[i] = bag[j];
+      bag[j] = tmp;
+    }
+    position = 0;
+  }
+}
@@ -0,0 +1,203 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed size cache of search results keyed by Zobrist hash, shared by any number of search threads without locks.
+ *
+ * Each entry is two longs, the data and the key XORed with the data. Writers store both without locking, so a reader
+ * racing a writer can see half of one entry and half of another; the XOR check then fails and the probe is a miss
+ * rather than a wrong answer.
+ *
+ * Entries live in buckets of two. A store replaces the entry with the same key if there is one, otherwise whichever
+ * entry is older or was searched less deeply, so deep results survive until a newer search makes them stale.
+ */
+public class TranspositionTable {
+
+  /**
+   * Bytes used by one entry
+   */
+  private static final int ENTRY_BYTES = 16;
+
+  /**
+   * Entries per bucket
+   */
+  private static final int WAYS = 2;
+
+  /**
+   * Set in the data of every stored entry, so an empty slot never matches
+   */
+  private static final long USED = 1L << 48;
+
+  /**
+   * Value returned by probe on a miss
+   */
+  public static final int MISS = Integer.MIN_VALUE;
+
+  /**
+   * Key XOR data at even indexes, data at odd ones
+   */
+  private final AtomicLongArray entries;
+
+  /**
+   * Number of buckets - 1, to pick a bucket from a hash
+   */
+  private final int bucketMask;
+
+  /**
+   * Search age, stored with each entry so older results are replaced first
+   */
+  private volatile int age = 0;
+
+  /**
+   * Probe statistics
+   */
+  private final LongAdder probes = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder stores = new LongAdder();
+
+  /**
+   * Create a table using about the given amount of memory, rounded down to a power of two entries
+   * @param megabytes memory to use
+   */
+  public TranspositionTable(int megabytes) {
+    long entryCount = Math.max(WAYS, ((long) megabytes << 20) / ENTRY_BYTES);
+    long buckets = Long.highestOneBit(Math.min(entryCount / WAYS, 1 << 24));
+    this.entries = new AtomicLongArray((int) buckets * WAYS * 2);
+    this.bucketMask = (int) buckets - 1;
+  }
+
+  /**
+   * Look up a result
+   * @param key position hash
+   * @param depth least depth the result must have been searched to
+   * @return the stored score, or MISS
+   */
+  public int probe(long key, int depth) {
+    probes.increment();
+    int base = bucket(key);
+    for (int way = 0; way < WAYS; way++) {
+      int index = base + way * 2;
+      long data = entries.getAcquire(index + 1);
+      if ((data & USED) != 0 && (entries.getAcquire(index) ^ data) == key && depth(data) >= depth) {
+        hits.increment();
+        return score(data);
+      }
+    }
+    return MISS;
+  }
+
+  /**
+   * Store a result
+   * @param key position hash
+   * @param depth depth the result was searched to, from 0 to 255
+   * @param score score
+   */
+  public void store(long key, int depth, int score) {
+    stores.increment();
+    int base = bucket(key);
+    int currentAge = age;
+    long data = (score & 0xFFFFFFFFL) | (long) (depth & 0xFF) << 32 | (long) (currentAge & 0xFF) << 40 | USED;
+
+    //Same position, or else the least useful of the two
+    int target = base;
+    int worst = Integer.MAX_VALUE;
+    for (int way = 0; way < WAYS; way++) {
+      int index = base + way * 2;
+      long existing = entries.getAcquire(index + 1);
+      if ((existing & USED) != 0 && (entries.getAcquire(index) ^ existing) == key) {
+        if (depth(existing) > depth && age(existing) == (currentAge & 0xFF)) {
+          return;
+        }
+        target = index;
+        break;
+      }
+      int stale = (currentAge - age(existing)) & 0xFF;
+      int value = depth(existing) - stale * 4;
+      if (value < worst) {
+        worst = value;
+        target = index;
+      }
+    }
+    entries.setRelease(target + 1, data);
+    entries.setRelease(target, key ^ data);
+  }
+
+  /**
+   * Start a new search age, so results from earlier searches are replaced before newer ones
+   */
+  public void newSearch() {
+    age = (age + 1) & 0xFF;
+  }
+
+  /**
+   * Remove every entry
+   */
+  public void clear() {
+    for (int i = 0; i < entries.length(); i++) {
+      entries.setRelease(i, 0);
+    }
+  }
+
+  /**
+   * Get the number of entries the table can hold
+   * @return capacity
+   */
+  public int getCapacity() {
+    return entries.length() / 2;
+  }
+
+  /**
+   * Get the number of lookups
+   * @return probes
+   */
+  public long getProbes() {
+    return probes.sum();
+  }
+
+  /**
+   * Get the number of lookups that found a result
+   * @return hits
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Get the number of results stored
+   * @return stores
+   */
+  public long getStores() {
+    return stores.sum();
+  }
+
+  /**
+   * Get the fraction of lookups that found a result
+   * @return hit rate from 0 to 1
+   */
+  public double getHitRate() {
+    long total = probes.sum();
+    return total == 0 ? 0 : (double) hits.sum() / total;
+  }
+
+  /**
+   * Get the first index of the bucket for a key
+   */
+  private int bucket(long key) {
+    //The low bits pick the bucket, mixed with the high bits in case the keys are not well spread
+    return (int) ((key ^ key >>> 32) & bucketMask) * WAYS * 2;
+  }
+
+  private static int score(long data) {
+    return (int) data;
+  }
+
+  private static int depth(long data) {
+    return (int) (data >>> 32) & 0xFF;
+  }
+
+  private static int age(long data) {
+    return (int) (data >>> 40) & 0xFF;
+  }
+}
@@ -0,0 +1,29 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Random;
+
+/**
+ * Every piece is equally likely on every draw, the original behaviour of the game
+ */
+public class UniformGenerator implements PieceGenerator {
+
+  /**
+   * Random to pick pieces
+   */
+  private final Random random;
+
+  /**
+   * Create a uniform generator
+   * @param seed seed
+   */
+  public UniformGenerator(long seed) {
+    this.random = new Random(seed);
+  }
+
+  @Override
+  public void fill(int[] pieces, int count) {
+    for (int i = 0; i < count; i++) {
+      pieces[i] = random.nextInt(GamePiece.PIECES);
+    }
+  }
+}
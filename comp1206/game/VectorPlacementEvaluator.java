@@ -0,0 +1,168 @@
+package uk.ac.soton.comp1206.game;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Evaluates placements a vector of candidates at a time with the incubating Vector API, one candidate per lane.
+ *
+ * The board is padded the same way as the occupancy in Grid: two filled columns and rows on every side, so a piece
+ * hanging off the edge collides with the padding. Each lane gathers the three board rows under its piece, so legality
+ * and the rows it completes take a handful of vector operations. Full columns come from the AND of every row, using
+ * the AND of the rows outside the piece worked out once per board.
+ *
+ * Lanes whose anchor is off the range Grid.fits accepts gather from row 0 instead, so the gathers stay inside the
+ * padded board, and are marked illegal.
+ *
+ * Only whole vectors are done this way, the few candidates left over go through the scalar evaluator, since masked
+ * loads and gathers are much slower.
+ *
+ * Needs --add-modules jdk.incubator.vector. Only created through PlacementEvaluator.create.
+ */
+public class VectorPlacementEvaluator implements PlacementEvaluator {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(VectorPlacementEvaluator.class);
+
+  /**
+   * Widest vector the CPU supports, capped at 256 bits: C2 in JDK 17 can crash on 512-bit gathers
+   */
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED.vectorBitSize() > 256
+      ? IntVector.SPECIES_256 : IntVector.SPECIES_PREFERRED;
+
+  /**
+   * Padding around the board
+   */
+  private static final int PAD = 2;
+
+  /**
+   * Evaluates the candidates that do not fill a whole vector
+   */
+  private final ScalarPlacementEvaluator tail = new ScalarPlacementEvaluator();
+
+  /**
+   * Padded rows of the board
+   */
+  private int[] padded = new int[0];
+
+  /**
+   * AND of every padded row except the three under a piece centred on row y, indexed y + 1
+   */
+  private int[] outside = new int[0];
+
+  /**
+   * Rows to gather from for a vector with anchors out of range
+   */
+  private final int[] gatherRows = new int[SPECIES.length()];
+
+  /**
+   * Create a vector evaluator
+   */
+  public VectorPlacementEvaluator() {
+    logger.info("Evaluating placements {} at a time", SPECIES.length());
+  }
+
+  @Override
+  public void evaluate(int[] board, int cols, int rows, PlacementBatch batch) {
+    prepare(board, cols, rows);
+
+    int fullRow = (1 << cols) - 1;
+    int fullPadded = (1 << (cols + PAD * 2)) - 1;
+    IntVector zero = IntVector.zero(SPECIES);
+
+    int bound = SPECIES.loopBound(batch.size);
+    int i = 0;
+    for (; i < bound; i += SPECIES.length()) {
+      IntVector masks = IntVector.fromArray(SPECIES, batch.masks, i);
+      IntVector xs = IntVector.fromArray(SPECIES, batch.xs, i);
+      IntVector ys = IntVector.fromArray(SPECIES, batch.ys, i);
+      VectorMask<Integer> inRange = xs.compare(VectorOperators.GE, -1)
+          .and(xs.compare(VectorOperators.LE, cols))
+          .and(ys.compare(VectorOperators.GE, -1))
+          .and(ys.compare(VectorOperators.LE, rows));
+      if (!inRange.allTrue()) {
+        xs = xs.blend(0, inRange.not());
+        ys = ys.blend(0, inRange.not());
+        ys.intoArray(gatherRows, 0);
+      }
+      int[] rowIndex = inRange.allTrue() ? batch.ys : gatherRows;
+      int rowOffset = inRange.allTrue() ? i : 0;
+      IntVector shift = xs.add(PAD - 1);
+
+      IntVector conflict = zero;
+      IntVector fullRows = zero;
+      //Rows outside the piece, then AND in the three rows under it
+      IntVector columns = IntVector.fromArray(SPECIES, outside, 1, rowIndex, rowOffset);
+      for (int row = 0; row < PieceMasks.SIZE; row++) {
+        IntVector piece = masks.lanewise(VectorOperators.LSHR, row * PieceMasks.SIZE)
+            .and((1 << PieceMasks.SIZE) - 1)
+            .lanewise(VectorOperators.LSHL, shift);
+        IntVector under = IntVector.fromArray(SPECIES, padded, row + PAD - 1, rowIndex, rowOffset);
+        conflict = conflict.or(piece.and(under));
+        IntVector after = under.or(piece);
+        columns = columns.and(after);
+
+        IntVector y = ys.add(row - 1);
+        VectorMask<Integer> full = after.compare(VectorOperators.EQ, fullPadded)
+            .and(y.compare(VectorOperators.GE, 0))
+            .and(y.compare(VectorOperators.LT, rows));
+        //A set mask lane is -1 as a vector, so subtracting counts it
+        fullRows = fullRows.sub((IntVector) full.toVector());
+      }
+
+      VectorMask<Integer> legal = conflict.compare(VectorOperators.EQ, 0).and(inRange);
+      IntVector fullCols = bitCount(columns.lanewise(VectorOperators.LSHR, PAD).and(fullRow));
+      IntVector lines = fullRows.add(fullCols);
+      IntVector blocks = fullRows.mul(cols).add(fullCols.mul(rows)).sub(fullRows.mul(fullCols));
+
+      zero.blend(1, legal).intoArray(batch.legal, i);
+      zero.blend(lines, legal).intoArray(batch.lines, i);
+      zero.blend(blocks, legal).intoArray(batch.blocks, i);
+    }
+    tail.evaluate(board, cols, rows, batch, i);
+  }
+
+  /**
+   * Pad the board and work out the AND of the rows outside each piece position
+   */
+  private void prepare(int[] board, int cols, int rows) {
+    int height = rows + PAD * 2;
+    if (padded.length != height) {
+      padded = new int[height];
+      outside = new int[rows + 2];
+    }
+    int fullPadded = (1 << (cols + PAD * 2)) - 1;
+    int edges = fullPadded & ~(((1 << cols) - 1) << PAD);
+    for (int y = 0; y < height; y++) {
+      int row = y - PAD;
+      padded[y] = row < 0 || row >= rows ? fullPadded : board[row] << PAD | edges;
+    }
+
+    //A piece centred on row y covers padded rows y + 1 to y + 3
+    for (int y = -1; y <= rows; y++) {
+      int and = fullPadded;
+      for (int row = 0; row < height; row++) {
+        if (row < y + 1 || row > y + 3) {
+          and &= padded[row];
+        }
+      }
+      outside[y + 1] = and;
+    }
+  }
+
+  /**
+   * Count the set bits in each lane
+   */
+  private static IntVector bitCount(IntVector v) {
+    v = v.sub(v.lanewise(VectorOperators.LSHR, 1).and(0x55555555));
+    v = v.and(0x33333333).add(v.lanewise(VectorOperators.LSHR, 2).and(0x33333333));
+    v = v.add(v.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F);
+    return v.mul(0x01010101).lanewise(VectorOperators.LSHR, 24);
+  }
+}
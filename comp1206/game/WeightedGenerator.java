@@ -0,0 +1,79 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Picks pieces with a fixed weight each, for example to make the awkward pieces rarer
+ */
+public class WeightedGenerator implements PieceGenerator {
+
+  /**
+   * Random to pick pieces
+   */
+  private final Random random;
+
+  /**
+   * Running total of the weights, cumulative[i] is the sum of the weights of pieces 0 to i
+   */
+  private final int[] cumulative;
+
+  /**
+   * Create a weighted generator
+   * @param seed seed
+   * @param weights weight of each piece, GamePiece.PIECES entries
+   */
+  public WeightedGenerator(long seed, int[] weights) {
+    if (weights.length != GamePiece.PIECES) {
+      throw new IllegalArgumentException("Expected " + GamePiece.PIECES + " weights, got " + weights.length);
+    }
+    this.random = new Random(seed);
+    this.cumulative = new int[weights.length];
+    int total = 0;
+    for (int i = 0; i < weights.length; i++) {
+      if (weights[i] < 0) {
+        throw new IllegalArgumentException("Negative weight for piece " + i);
+      }
+      total += weights[i];
+      cumulative[i] = total;
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException("At least one piece needs a weight");
+    }
+  }
+
+  @Override
+  public void fill(int[] pieces, int count) {
+    int total = cumulative[cumulative.length - 1];
+    for (int i = 0; i < count; i++) {
+      int roll = random.nextInt(total);
+      //First piece whose running total is above the roll
+      int found = Arrays.binarySearch(cumulative, roll + 1);
+      if (found < 0) {
+        found = -found - 1;
+      }
+      //Skip back over pieces with no weight that share the same running total
+      while (found > 0 && cumulative[found - 1] == roll + 1) {
+        found--;
+      }
+      pieces[i] = found;
+    }
+  }
+
+  /**
+   * Parse comma separated weights. Pieces without a weight get 1
+   * @param text weights, for example "2,1,1,0"
+   * @return one weight per piece
+   */
+  public static int[] parseWeights(String text) {
+    int[] weights = new int[GamePiece.PIECES];
+    Arrays.fill(weights, 1);
+    String[] parts = text.split(",");
+    for (int i = 0; i < parts.length && i < weights.length; i++) {
+      if (!parts[i].isBlank()) {
+        weights[i] = Integer.parseInt(parts[i].trim());
+      }
+    }
+    return weights;
+  }
+}
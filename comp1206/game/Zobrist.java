@@ -0,0 +1,97 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for hashing board positions. A position hash is the XOR of the key of every filled cell and the key of
+ * the piece to play, so placing or clearing a cell updates it with a single XOR and the same position always hashes
+ * the same whatever order the moves came in.
+ *
+ * Keys cover grids up to MAX_SIZE x MAX_SIZE.
+ */
+public class Zobrist {
+
+  /**
+   * Largest number of columns or rows with keys
+   */
+  public static final int MAX_SIZE = 32;
+
+  /**
+   * Key of each filled cell, indexed y * MAX_SIZE + x
+   */
+  private static final long[] CELLS = new long[MAX_SIZE * MAX_SIZE];
+
+  /**
+   * Key of the current piece, indexed piece * 4 + rotation
+   */
+  private static final long[] CURRENT = new long[GamePiece.PIECES * 4];
+
+  static {
+    //Fixed seed so hashes are the same on every run
+    SplittableRandom random = new SplittableRandom(1206);
+    fill(CELLS, random);
+    fill(CURRENT, random);
+  }
+
+  private Zobrist() {
+  }
+
+  /**
+   * Get the key of a filled cell
+   * @param x column
+   * @param y row
+   * @return key
+   */
+  public static long cell(int x, int y) {
+    return CELLS[y * MAX_SIZE + x];
+  }
+
+  /**
+   * Get the XOR of the keys of the filled cells in a row
+   * @param y row
+   * @param bits bit x set when cell x is filled
+   * @return key
+   */
+  public static long row(int y, int bits) {
+    long key = 0;
+    int base = y * MAX_SIZE;
+    while (bits != 0) {
+      key ^= CELLS[base + Integer.numberOfTrailingZeros(bits)];
+      bits &= bits - 1;
+    }
+    return key;
+  }
+
+  /**
+   * Hash a whole board, for when there is no incremental hash to start from
+   * @param rows bits of each row
+   * @param count number of rows
+   * @return hash
+   */
+  public static long board(int[] rows, int count) {
+    long key = 0;
+    for (int y = 0; y < count; y++) {
+      key ^= row(y, rows[y]);
+    }
+    return key;
+  }
+
+  /**
+   * Get the key of the current piece
+   * @param piece piece number
+   * @param rotation quarter turns
+   * @return key
+   */
+  public static long current(int piece, int rotation) {
+    return CURRENT[piece * 4 + (rotation & 3)];
+  }
+
+  /**
+   * Fill an array with random keys
+   */
+  private static void fill(long[] keys, SplittableRandom random) {
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = random.nextLong();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Starts and stops a Java Flight Recorder recording of the game, from the --jfr flag or F9 on the menu.
+ *
+ * The recording uses the JDK's low overhead "default" settings plus the TetrECS events, so game events can be lined up
+ * against GC and JavaFX pulses in JDK Mission Control. It is written to tetrecs-date-time.jfr in the directory set by
+ * -Dtetrecs.jfr.dir, or the working directory.
+ */
+public class FlightRecording {
+
+  private static final Logger logger = LogManager.getLogger(FlightRecording.class);
+
+  private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private static Recording recording;
+
+  private FlightRecording() {
+  }
+
+  /**
+   * Start recording, if not already
+   */
+  public static synchronized void start() {
+    if (recording != null) {
+      return;
+    }
+    try {
+      Path file = Paths.get(System.getProperty("tetrecs.jfr.dir", "."))
+          .resolve("tetrecs-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+      recording = new Recording(Configuration.getConfiguration("default"));
+      recording.setName("TetrECS");
+      recording.setToDisk(true);
+      recording.setDestination(file);
+      recording.setDumpOnExit(true);
+      recording.start();
+      logger.info("Flight recording to {}", file);
+    } catch (Exception e) {
+      logger.error("Fail to start flight recording, {}", e.toString());
+      recording = null;
+    }
+  }
+
+  /**
+   * Stop recording and write the file
+   */
+  public static synchronized void stop() {
+    if (recording == null) {
+      return;
+    }
+    try {
+      recording.stop();
+      logger.info("Flight recording saved to {}", recording.getDestination());
+      recording.close();
+    } catch (Exception e) {
+      logger.error("Fail to stop flight recording, {}", e.toString());
+    }
+    recording = null;
+  }
+
+  /**
+   * Start recording if stopped, stop if recording
+   * @return whether it is now recording
+   */
+  public static synchronized boolean toggle() {
+    if (recording == null) {
+      start();
+    } else {
+      stop();
+    }
+    return recording != null;
+  }
+
+  /**
+   * Whether a recording is running
+   * @return recording
+   */
+  public static synchronized boolean isRecording() {
+    return recording != null;
+  }
+}
@@ -0,0 +1,27 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The game loop timer running out
+ */
+@Name("uk.ac.soton.comp1206.GameLoopTick")
+@Label("Game Loop Tick")
+@Category({"TetrECS", "Game"})
+@Description("The game loop timer running out")
+public class GameLoopTickEvent extends Event {
+
+  @Label("Timer Delay")
+  @Timespan(Timespan.MILLISECONDS)
+  public long timerDelay;
+
+  @Label("Lateness")
+  @Description("How long after it was due the timer fired")
+  @Timespan(Timespan.NANOSECONDS)
+  public long lateness;
+}
@@ -0,0 +1,20 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The player losing a life when the timer runs out
+ */
+@Name("uk.ac.soton.comp1206.LifeLost")
+@Label("Life Lost")
+@Category({"TetrECS", "Game"})
+@Description("A life lost to the game loop timer")
+public class LifeLostEvent extends Event {
+
+  @Label("Lives Left")
+  public int livesLeft;
+}
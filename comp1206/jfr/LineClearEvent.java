@@ -0,0 +1,26 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Lines being found and cleared after a piece is played. The duration covers finding, clearing and scoring
+ */
+@Name("uk.ac.soton.comp1206.LineClear")
+@Label("Line Clear")
+@Category({"TetrECS", "Game"})
+@Description("Full lines cleared after a piece is played")
+public class LineClearEvent extends Event {
+
+  @Label("Lines")
+  public int lines;
+
+  @Label("Blocks")
+  public int blocks;
+
+  @Label("Multiplier")
+  public int multiplier;
+}
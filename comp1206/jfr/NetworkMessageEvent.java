@@ -0,0 +1,28 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A message sent to or received from the server. For received messages the duration covers the listeners
+ */
+@Name("uk.ac.soton.comp1206.NetworkMessage")
+@Label("Network Message")
+@Category({"TetrECS", "Network"})
+@Description("A message sent to or received from the server")
+public class NetworkMessageEvent extends Event {
+
+  @Label("Outgoing")
+  public boolean outgoing;
+
+  @Label("Command")
+  public String command;
+
+  @Label("Size")
+  @DataAmount
+  public int bytes;
+}
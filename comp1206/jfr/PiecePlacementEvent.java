@@ -0,0 +1,29 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A piece being played, or refused, on the board. The duration covers the legality check and the placement
+ */
+@Name("uk.ac.soton.comp1206.PiecePlacement")
+@Label("Piece Placement")
+@Category({"TetrECS", "Game"})
+@Description("A piece being played on the board")
+public class PiecePlacementEvent extends Event {
+
+  @Label("Piece")
+  public String piece;
+
+  @Label("X")
+  public int x;
+
+  @Label("Y")
+  public int y;
+
+  @Label("Legal")
+  public boolean legal;
+}
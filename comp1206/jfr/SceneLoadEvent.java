@@ -0,0 +1,24 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A scene being built or initialised
+ */
+@Name("uk.ac.soton.comp1206.SceneLoad")
+@Label("Scene Load")
+@Category({"TetrECS", "Rendering"})
+@Description("A scene being built or initialised")
+public class SceneLoadEvent extends Event {
+
+  @Label("Scene")
+  public String scene;
+
+  @Label("Phase")
+  @Description("build or initialise")
+  public String phase;
+}
@@ -0,0 +1,29 @@
+package uk.ac.soton.comp1206.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A sound effect or music track being started on the audio thread
+ */
+@Name("uk.ac.soton.comp1206.SoundPlayback")
+@Label("Sound Playback")
+@Category({"TetrECS", "Audio"})
+@Description("A sound effect or music track being started")
+public class SoundPlaybackEvent extends Event {
+
+  @Label("Sound")
+  public String sound;
+
+  @Label("Music")
+  public boolean music;
+
+  @Label("Queue Latency")
+  @Description("Time from Multimedia asking for the sound to the audio thread starting it")
+  @Timespan(Timespan.NANOSECONDS)
+  public long queueLatency;
+}
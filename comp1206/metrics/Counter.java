@@ -0,0 +1,34 @@
+package uk.ac.soton.comp1206.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, safe to bump from any thread without contention
+ */
+public class Counter {
+
+  private final LongAdder count = new LongAdder();
+
+  /**
+   * Add one
+   */
+  public void increment() {
+    count.increment();
+  }
+
+  /**
+   * Add an amount
+   * @param amount amount
+   */
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  /**
+   * Get the count
+   * @return count
+   */
+  public long get() {
+    return count.sum();
+  }
+}
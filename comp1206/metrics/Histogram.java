@@ -0,0 +1,131 @@
+package uk.ac.soton.comp1206.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values such as latencies in microseconds.
+ *
+ * Buckets are log-linear like HdrHistogram: each power of two is split into 8 equal buckets, so any value is reported
+ * within 12.5% while the whole long range fits in under 500 counters. Recording is lock free and allocates nothing.
+ */
+public class Histogram {
+
+  /**
+   * Bits of each value kept below its highest set bit
+   */
+  private static final int SUB_BITS = 3;
+
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+  /**
+   * Values are never negative, so the highest bit a value can have is bit 62
+   */
+  private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a value, negative values count as 0
+   * @param value value
+   */
+  public void record(long value) {
+    value = Math.max(value, 0);
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+    if (value > max.get()) {
+      max.accumulateAndGet(value, Math::max);
+    }
+  }
+
+  /**
+   * Get the number of values recorded
+   * @return count
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Get the mean of the values recorded
+   * @return mean, 0 if nothing was recorded
+   */
+  public long getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : sum.sum() / n;
+  }
+
+  /**
+   * Get the largest value recorded
+   * @return max
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Get a percentile, reported as the top of the bucket it falls in
+   * @param percentile from 0 to 100
+   * @return value at that percentile, 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      total += counts.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= target) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Work out which bucket a value goes in
+   * @param value value
+   * @return bucket index
+   */
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int mantissa = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + mantissa;
+  }
+
+  /**
+   * Get the smallest value that goes in a bucket
+   * @param bucket bucket index
+   * @return lower bound
+   */
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    long mantissa = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + mantissa) << (exponent - SUB_BITS);
+  }
+
+  /**
+   * Get the largest value that goes in a bucket
+   * @param bucket bucket index
+   * @return upper bound
+   */
+  static long upperBound(int bucket) {
+    return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+  }
+}
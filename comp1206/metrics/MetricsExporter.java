@@ -0,0 +1,136 @@
+package uk.ac.soton.comp1206.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the metrics registry over JMX, and when -Dtetrecs.metrics is set also appends a JSON line to a local file
+ * at a fixed interval so runs on different machines can be compared offline.
+ *
+ * -Dtetrecs.metrics=path/to/metrics.jsonl picks the file (true uses metrics.jsonl), -Dtetrecs.metrics.interval sets
+ * the interval in milliseconds (default 10000) and -Dtetrecs.metrics.maxBytes the size a file is rotated at (default
+ * 1MB). Rotated files are kept as .1 to .3.
+ */
+public class MetricsExporter implements MetricsMXBean {
+
+  private static final Logger logger = LogManager.getLogger(MetricsExporter.class);
+
+  /**
+   * Number of rotated files kept
+   */
+  private static final int KEEP = 3;
+
+  private final MetricsRegistry registry;
+
+  private ScheduledExecutorService executor;
+
+  private Path file;
+
+  private long maxBytes;
+
+  /**
+   * Create an exporter
+   * @param registry registry to export
+   */
+  public MetricsExporter(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Register with JMX and start writing the file if it was asked for
+   */
+  public void start() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("uk.ac.soton.comp1206:type=Metrics"));
+    } catch (Exception e) {
+      logger.error("Fail to register metrics with JMX, {}", e.toString());
+    }
+
+    String target = System.getProperty("tetrecs.metrics");
+    if (target == null || target.equals("false")) {
+      return;
+    }
+    file = Paths.get(target.equals("true") ? "metrics.jsonl" : target);
+    maxBytes = Long.getLong("tetrecs.metrics.maxBytes", 1 << 20);
+    long interval = Long.getLong("tetrecs.metrics.interval", 10000L);
+    logger.info("Writing metrics to {} every {}ms", file, interval);
+
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "metrics-export");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleAtFixedRate(this::write, interval, interval, TimeUnit.MILLISECONDS);
+    Runtime.getRuntime().addShutdownHook(new Thread(this::write, "metrics-flush"));
+  }
+
+  /**
+   * Get every metric
+   * @return metric values by name
+   */
+  @Override
+  public Map<String, Long> getValues() {
+    return registry.snapshot();
+  }
+
+  /**
+   * Get every metric as JSON
+   * @return JSON
+   */
+  @Override
+  public String getJson() {
+    return registry.toJson(System.currentTimeMillis());
+  }
+
+  /**
+   * Append a snapshot to the file, rotating it first if it is full
+   */
+  private synchronized void write() {
+    try {
+      if (Files.exists(file) && Files.size(file) >= maxBytes) {
+        rotate();
+      }
+      String line = registry.toJson(System.currentTimeMillis()) + System.lineSeparator();
+      Files.write(file, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      logger.error("Fail to write metrics, {}", e.toString());
+    }
+  }
+
+  /**
+   * Shift metrics.jsonl to metrics.jsonl.1 and so on, dropping the oldest
+   * @throws IOException if a file cannot be moved
+   */
+  private void rotate() throws IOException {
+    for (int i = KEEP - 1; i >= 1; i--) {
+      Path from = rotated(i);
+      if (Files.exists(from)) {
+        Files.move(from, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+    Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Get the path of a rotated file
+   * @param index rotation number
+   * @return path
+   */
+  private Path rotated(int index) {
+    return file.resolveSibling(file.getFileName() + "." + index);
+  }
+}
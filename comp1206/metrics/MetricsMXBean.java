@@ -0,0 +1,21 @@
+package uk.ac.soton.comp1206.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics registry, shown in JConsole and VisualVM under uk.ac.soton.comp1206:type=Metrics
+ */
+public interface MetricsMXBean {
+
+  /**
+   * Get every metric
+   * @return metric values by name
+   */
+  Map<String, Long> getValues();
+
+  /**
+   * Get every metric as JSON
+   * @return JSON
+   */
+  String getJson();
+}
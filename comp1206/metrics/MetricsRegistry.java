@@ -0,0 +1,88 @@
+package uk.ac.soton.comp1206.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and histograms for the whole game.
+ *
+ * Look a metric up once and keep it in a field; the lookups are cheap but recording on the metric itself costs
+ * nothing more than a few atomic adds. Names are dotted, like "game.move.latency".
+ */
+public class MetricsRegistry {
+
+  private static final MetricsRegistry instance = new MetricsRegistry();
+
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+  private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+  /**
+   * Get the registry
+   * @return registry
+   */
+  public static MetricsRegistry get() {
+    return instance;
+  }
+
+  /**
+   * Get or create a counter
+   * @param name name
+   * @return counter
+   */
+  public Counter counter(String name) {
+    return counters.computeIfAbsent(name, (key) -> new Counter());
+  }
+
+  /**
+   * Register a gauge, read whenever the metrics are exported. Replaces any gauge with the same name
+   * @param name name
+   * @param gauge supplies the current value
+   */
+  public void gauge(String name, LongSupplier gauge) {
+    gauges.put(name, gauge);
+  }
+
+  /**
+   * Get or create a histogram
+   * @param name name
+   * @return histogram
+   */
+  public Histogram histogram(String name) {
+    return histograms.computeIfAbsent(name, (key) -> new Histogram());
+  }
+
+  /**
+   * Read every metric. Histograms are flattened into count, mean, p50, p90, p99 and max entries
+   * @return metric values sorted by name
+   */
+  public Map<String, Long> snapshot() {
+    Map<String, Long> values = new TreeMap<>();
+    counters.forEach((name, counter) -> values.put(name, counter.get()));
+    gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+    histograms.forEach((name, histogram) -> {
+      values.put(name + ".count", histogram.getCount());
+      values.put(name + ".mean", histogram.getMean());
+      values.put(name + ".p50", histogram.getPercentile(50));
+      values.put(name + ".p90", histogram.getPercentile(90));
+      values.put(name + ".p99", histogram.getPercentile(99));
+      values.put(name + ".max", histogram.getMax());
+    });
+    return values;
+  }
+
+  /**
+   * Write every metric as a single line JSON object
+   * @param timestamp time of the snapshot in milliseconds
+   * @return JSON
+   */
+  public String toJson(long timestamp) {
+    StringBuilder json = new StringBuilder("{\"timestamp\":").append(timestamp);
+    for (Map.Entry<String, Long> entry : snapshot().entrySet()) {
+      json.append(",\"").append(entry.getKey()).append("\":").append(entry.getValue());
+    }
+    return json.append('}').toString();
+  }
+}
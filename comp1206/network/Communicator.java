@@ -5,9 +5,22 @@ import javafx.scene.control.Alert;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.CommunicationsListener;
+import uk.ac.soton.comp1206.jfr.NetworkMessageEvent;
+import uk.ac.soton.comp1206.metrics.Counter;
+import uk.ac.soton.comp1206.metrics.Histogram;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Uses web sockets to talk to a web socket server and relays communication to attached listeners
@@ -21,9 +34,76 @@ public class Communicator {
     /**
      * Attached communication listeners listening to messages on this Communicator. Each will be sent any messages.
      */
-    private final List<CommunicationsListener> handlers = new ArrayList<>();
+    private final List<CommunicationsListener> handlers = new CopyOnWriteArrayList<>();
 
-    private WebSocket ws = null;
+    /**
+     * Listeners that stay attached across scenes, such as caches. Not removed by clearListeners.
+     */
+    private final List<CommunicationsListener> persistentHandlers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Listeners told when the connection to the server is (re)established
+     */
+    private final List<Runnable> connectionListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Thread used to reconnect after losing the server
+     */
+    private final ScheduledExecutorService reconnectExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "communicator-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Delay before the next reconnect attempt, doubled after each failure. Used from the socket and reconnect threads
+     */
+    private volatile long reconnectDelay = MIN_RECONNECT_DELAY;
+
+    /**
+     * Messages handed to the socket that have not been written yet
+     */
+    private final AtomicInteger sendQueue = new AtomicInteger();
+
+    /**
+     * Messages received that are still being handed to listeners
+     */
+    private final AtomicInteger receiveQueue = new AtomicInteger();
+
+    /**
+     * Reply each request is answered with, used to time round trips
+     */
+    private static final Map<String, String> REPLIES = Map.of(
+        "HISCORES", "HISCORES",
+        "HISCORE", "NEWSCORE",
+        "LIST", "CHANNELS",
+        "CREATE", "JOIN",
+        "JOIN", "JOIN",
+        "NICK", "NICK",
+        "USERS", "USERS",
+        "SCORES", "SCORES");
+
+    /**
+     * Most requests waiting for the same reply that are timed, older ones are dropped
+     */
+    private static final int MAX_PENDING = 16;
+
+    /**
+     * Send times of requests waiting for a reply, by the reply they expect
+     */
+    private final Map<String, Deque<Long>> pendingReplies = new ConcurrentHashMap<>();
+
+    private final Counter messagesSent = MetricsRegistry.get().counter("network.messages.sent");
+    private final Counter messagesReceived = MetricsRegistry.get().counter("network.messages.received");
+    private final Counter bytesSent = MetricsRegistry.get().counter("network.bytes.sent");
+    private final Counter bytesReceived = MetricsRegistry.get().counter("network.bytes.received");
+    private final Counter errors = MetricsRegistry.get().counter("network.errors");
+    private final Histogram roundTrip = MetricsRegistry.get().histogram("network.rtt");
+
+    private static final long MIN_RECONNECT_DELAY = 1000;
+    private static final long MAX_RECONNECT_DELAY = 30000;
+
+    private volatile WebSocket ws = null;
 
     /**
      * Create a new communicator to the given web socket server
@@ -47,9 +127,35 @@ public class Communicator {
                     Communicator.this.receive(websocket, message);
                 }
                 @Override
+                public void onFrameSent(WebSocket websocket, WebSocketFrame frame) throws Exception {
+                    if(frame.isTextFrame()) {
+                        sendQueue.decrementAndGet();
+                    }
+                }
+                @Override
+                public void onFrameUnsent(WebSocket websocket, WebSocketFrame frame) throws Exception {
+                    if(frame.isTextFrame()) {
+                        sendQueue.decrementAndGet();
+                    }
+                }
+                @Override
                 public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame) throws Exception {
                     logger.info("Ping? Pong!");
                 }
+                @Override
+                public void onConnected(WebSocket websocket, Map<String, List<String>> headers) throws Exception {
+                    reconnectDelay = MIN_RECONNECT_DELAY;
+                    for(Runnable listener : connectionListeners) {
+                        listener.run();
+                    }
+                }
+                @Override
+                public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+                    logger.error("Disconnected from " + server);
+                    //Anything not written went with the socket
+                    sendQueue.set(0);
+                    scheduleReconnect();
+                }
             });
 
             //Error handling
@@ -62,11 +168,13 @@ public class Communicator {
                 }
                 @Override
                 public void handleCallbackError(WebSocket webSocket, Throwable throwable) throws Exception {
+                    errors.increment();
                     logger.error("Callback Error:" + throwable.getMessage());
                     throwable.printStackTrace();
                 }
                 @Override
                 public void onError(WebSocket webSocket, WebSocketException e) throws Exception {
+                    errors.increment();
                     logger.error("Error:" + e.getMessage());
                     e.printStackTrace();
                 }
@@ -89,7 +197,84 @@ public class Communicator {
     public void send(String message) {
         logger.info("Sending message: " + message);
 
-        ws.sendText(message);
+        messagesSent.increment();
+        int size = message.getBytes(StandardCharsets.UTF_8).length;
+        bytesSent.add(size);
+        String reply = REPLIES.get(command(message));
+        if (reply != null) {
+            Deque<Long> pending = pendingReplies.computeIfAbsent(reply, (key) -> new ConcurrentLinkedDeque<>());
+            pending.addLast(System.nanoTime());
+            if (pending.size() > MAX_PENDING) {
+                pending.pollFirst();
+            }
+        }
+
+        NetworkMessageEvent event = new NetworkMessageEvent();
+        event.begin();
+        //A socket that is not open drops the frame without calling back, so it is not counted
+        WebSocket socket = ws;
+        if (socket.isOpen()) {
+            sendQueue.incrementAndGet();
+        }
+        socket.sendText(message);
+        if (event.shouldCommit()) {
+            event.outgoing = true;
+            event.command = command(message);
+            event.bytes = size;
+            event.commit();
+        }
+    }
+
+    /**
+     * Get how many sent messages are still waiting to be written to the socket
+     * @return send queue depth
+     */
+    public int getSendQueueDepth() {
+        return sendQueue.get();
+    }
+
+    /**
+     * Get how many received messages are still being handed to listeners
+     * @return receive queue depth
+     */
+    public int getReceiveQueueDepth() {
+        return receiveQueue.get();
+    }
+
+    /**
+     * Whether the connection to the server is open
+     * @return connected
+     */
+    public boolean isConnected() {
+        WebSocket socket = ws;
+        return socket != null && socket.isOpen();
+    }
+
+    /**
+     * Add a listener to run on the socket thread whenever the connection is (re)established
+     * @param listener the listener to add
+     */
+    public void addConnectionListener(Runnable listener) {
+        this.connectionListeners.add(listener);
+    }
+
+    /**
+     * Try to connect again after a delay, backing off while the server stays away
+     */
+    private void scheduleReconnect() {
+        long delay = reconnectDelay;
+        reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY);
+        reconnectExecutor.schedule(() -> {
+            try {
+                logger.info("Reconnecting");
+                ws = ws.recreate();
+                ws.connect();
+            } catch (Exception e) {
+                logger.error("Reconnect failed: " + e.getMessage());
+                errors.increment();
+                scheduleReconnect();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -100,6 +285,14 @@ public class Communicator {
         this.handlers.add(listener);
     }
 
+    /**
+     * Add a listener that stays attached when the scene changes
+     * @param listener the listener to add
+     */
+    public void addPersistentListener(CommunicationsListener listener) {
+        this.persistentHandlers.add(listener);
+    }
+
     /**
      * Clear all current listeners
      */
@@ -107,6 +300,16 @@ public class Communicator {
         this.handlers.clear();
     }
 
+    /**
+     * Get the command a message starts with
+     * @param message message
+     * @return first word
+     */
+    private static String command(String message) {
+        int space = message.indexOf(' ');
+        return space < 0 ? message.trim() : message.substring(0, space);
+    }
+
     /** Receive a message from the server. Relay to any attached listeners
      *
      * @param websocket the socket
@@ -115,8 +318,33 @@ public class Communicator {
     private void receive(WebSocket websocket, String message) {
         logger.info("Received: " + message);
 
-        for(CommunicationsListener handler : handlers) {
-            handler.receiveCommunication(message);
+        messagesReceived.increment();
+        int size = message.getBytes(StandardCharsets.UTF_8).length;
+        bytesReceived.add(size);
+        Deque<Long> pending = pendingReplies.get(command(message));
+        Long sentAt = pending == null ? null : pending.pollFirst();
+        if (sentAt != null) {
+            roundTrip.record((System.nanoTime() - sentAt) / 1000);
+        }
+
+        NetworkMessageEvent event = new NetworkMessageEvent();
+        event.begin();
+        receiveQueue.incrementAndGet();
+        try {
+            for(CommunicationsListener handler : persistentHandlers) {
+                handler.receiveCommunication(message);
+            }
+            for(CommunicationsListener handler : handlers) {
+                handler.receiveCommunication(message);
+            }
+        } finally {
+            receiveQueue.decrementAndGet();
+        }
+        if (event.shouldCommit()) {
+            event.outgoing = false;
+            event.command = command(message);
+            event.bytes = size;
+            event.commit();
         }
     }
 
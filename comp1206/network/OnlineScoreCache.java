@@ -0,0 +1,182 @@
+package uk.ac.soton.comp1206.network;
+
+import javafx.util.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Caches the online high scores so scenes do not each ask the server for them.
+ *
+ * A cached copy is handed out straight away, even when older than the time to live. When the copy is stale a single
+ * HISCORES request is sent in the background and every caller waiting on it shares the reply. A reply identical to
+ * the last one is not parsed again.
+ */
+public class OnlineScoreCache {
+
+  /**
+   * Logger to debug
+   */
+  private static final Logger logger = LogManager.getLogger(OnlineScoreCache.class);
+
+  /**
+   * How long to wait for the server before giving up on a request
+   */
+  private static final long REQUEST_TIMEOUT_MILLIS = 5000;
+
+  /**
+   * Communicator used to ask for the scores
+   */
+  private final Communicator communicator;
+
+  /**
+   * How long a copy is fresh for
+   */
+  private final long ttlMillis;
+
+  /**
+   * Cached scores, null until the first reply
+   */
+  private List<Pair<String, Integer>> scores = null;
+
+  /**
+   * Raw payload of the last reply
+   */
+  private String lastPayload = null;
+
+  /**
+   * When the last reply arrived
+   */
+  private long fetchedAt = 0;
+
+  /**
+   * Request waiting for a reply, shared by every caller
+   */
+  private CompletableFuture<List<Pair<String, Integer>>> inFlight = null;
+
+  /**
+   * Create a cache for the online scores
+   * @param communicator communicator to the server
+   * @param ttlMillis how long a copy is fresh for in milliseconds
+   */
+  public OnlineScoreCache(Communicator communicator, long ttlMillis) {
+    this.communicator = communicator;
+    this.ttlMillis = ttlMillis;
+    communicator.addPersistentListener(this::receive);
+  }
+
+  /**
+   * Get the online scores. The callback runs straight away with any cached copy, and again with the new copy if a
+   * refresh changes it. Refresh callbacks run on the network thread.
+   * @param callback receives the scores, highest first
+   */
+  public void get(Consumer<List<Pair<String, Integer>>> callback) {
+    List<Pair<String, Integer>> cached;
+    boolean stale;
+    synchronized (this) {
+      cached = scores;
+      stale = cached == null || System.currentTimeMillis() - fetchedAt > ttlMillis;
+    }
+
+    if (cached != null) {
+      callback.accept(cached);
+    }
+    if (stale) {
+      refresh().thenAccept(fresh -> {
+        if (fresh != cached) {
+          callback.accept(fresh);
+        }
+      });
+    }
+  }
+
+  /**
+   * Ask the server for the scores, unless a request is already waiting
+   * @return the scores once the server replies
+   */
+  public synchronized CompletableFuture<List<Pair<String, Integer>>> refresh() {
+    if (inFlight != null) {
+      return inFlight;
+    }
+    CompletableFuture<List<Pair<String, Integer>>> request = new CompletableFuture<>();
+    inFlight = request;
+    request.orTimeout(REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+      synchronized (this) {
+        if (inFlight == request) {
+          inFlight = null;
+        }
+      }
+      if (error != null) {
+        logger.error("Failed to fetch online scores, {}", error.toString());
+      }
+    });
+
+    logger.info("Fetching online scores");
+    communicator.send("HISCORES");
+    return request;
+  }
+
+  /**
+   * Mark the cached copy as stale so the next get asks the server
+   */
+  public synchronized void invalidate() {
+    fetchedAt = 0;
+  }
+
+  /**
+   * Handle a message from the server
+   * @param message message
+   */
+  private void receive(String message) {
+    if (!message.startsWith("HISCORES")) {
+      return;
+    }
+    String payload = message.substring("HISCORES".length()).trim();
+
+    CompletableFuture<List<Pair<String, Integer>>> request;
+    List<Pair<String, Integer>> result;
+    synchronized (this) {
+      if (!payload.equals(lastPayload)) {
+        scores = Collections.unmodifiableList(parse(payload));
+        lastPayload = payload;
+      }
+      fetchedAt = System.currentTimeMillis();
+      result = scores;
+      request = inFlight;
+      inFlight = null;
+    }
+    if (request != null) {
+      request.complete(result);
+    }
+  }
+
+  /**
+   * Parse a HISCORES payload, one name:score per line
+   * @param payload payload without the HISCORES command
+   * @return scores in the order the server sent them
+   */
+  public static List<Pair<String, Integer>> parse(String payload) {
+    List<Pair<String, Integer>> parsed = new ArrayList<>();
+    for (String entry : payload.split("\n")) {
+      int split = entry.lastIndexOf(':');
+      if (split <= 0) {
+        if (!entry.isBlank()) {
+          logger.error("Invalid score entry: " + entry);
+        }
+        continue;
+      }
+      try {
+        parsed.add(new Pair<>(entry.substring(0, split).trim(), Integer.parseInt(entry.substring(split + 1).trim())));
+      } catch (NumberFormatException e) {
+        logger.error("Invalid online score: " + entry);
+      }
+    }
+    return parsed;
+  }
+}
@@ -0,0 +1,295 @@
+package uk.ac.soton.comp1206.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Submits scores to the server, keeping them in a file until the server confirms them.
+ *
+ * A submission is written to the outbox file before anything is sent, so scores survive the game closing or the
+ * server being unreachable. Pending scores are sent in batches on a background thread and kept until a NEWSCORE
+ * confirmation arrives. The server does not spot duplicates, so a score is sent at most once per connection: a slow
+ * confirmation is waited for, and the score is only sent again after the Communicator reconnects. Each game has an
+ * ID, so a game is never queued twice. Games that scored nothing are not submitted.
+ *
+ * NEWSCORE only carries the name and score, and many players share a name, so it could belong to another client. A
+ * confirmation is only taken for a score sent on the current connection and not yet confirmed, oldest first. Scores
+ * sent on an earlier connection wait to be sent again rather than being matched.
+ */
+public class ScoreOutbox {
+
+  /**
+   * Logger to debug
+   */
+  private static final Logger logger = LogManager.getLogger(ScoreOutbox.class);
+
+  /**
+   * Most scores to send in one pass
+   */
+  private static final int BATCH_SIZE = 5;
+
+  /**
+   * Delay between batches sent on the same connection
+   */
+  private static final long BATCH_DELAY = 500;
+
+  /**
+   * A score waiting to be confirmed by the server
+   */
+  private static class Submission {
+    private final String gameId;
+    private final String name;
+    private final int score;
+    private long sentOnConnection = -1;
+
+    private Submission(String gameId, String name, int score) {
+      this.gameId = gameId;
+      this.name = name;
+      this.score = score;
+    }
+  }
+
+  /**
+   * Communicator used to send scores
+   */
+  private final Communicator communicator;
+
+  /**
+   * Outbox file
+   */
+  private final Path file;
+
+  /**
+   * Pending scores by game ID, oldest first. Only touched on the outbox thread.
+   */
+  private final Map<String, Submission> pending = new LinkedHashMap<>();
+
+  /**
+   * Scores sent on the current connection and not yet confirmed, oldest first. Only touched on the outbox thread.
+   */
+  private final Deque<Submission> awaiting = new ArrayDeque<>();
+
+  /**
+   * Thread that reads and writes the outbox and sends scores
+   */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "score-outbox");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Next scheduled send, if any
+   */
+  private ScheduledFuture<?> nextDrain = null;
+
+  /**
+   * Number of connections made so far. Only touched on the outbox thread.
+   */
+  private long connection = 0;
+
+  /**
+   * Number of scores waiting for the server
+   */
+  private volatile int pendingCount = 0;
+
+  /**
+   * Run after the server confirms a score
+   */
+  private volatile Runnable onDelivered = null;
+
+  /**
+   * Create an outbox backed by the given file and start sending anything left in it
+   * @param communicator communicator to the server
+   * @param file outbox file
+   */
+  public ScoreOutbox(Communicator communicator, Path file) {
+    this.communicator = communicator;
+    this.file = file;
+
+    communicator.addPersistentListener(message -> {
+      if (message.startsWith("NEWSCORE")) {
+        String confirmed = message.substring("NEWSCORE".length()).trim();
+        executor.execute(() -> confirm(confirmed));
+      }
+    });
+    communicator.addConnectionListener(() -> executor.execute(() -> {
+      connection++;
+      //Confirmations for sends on the old connection are not coming
+      awaiting.clear();
+      drain();
+    }));
+
+    executor.execute(() -> {
+      load();
+      drain();
+    });
+  }
+
+  /**
+   * Queue a score for the server. Returns straight away.
+   * @param gameId ID of the game the score is from
+   * @param name player name
+   * @param score score
+   */
+  public void submit(String gameId, String name, int score) {
+    if (score <= 0) {
+      logger.info("Not submitting game {} with no score", gameId);
+      return;
+    }
+    //The protocol separates name and score with a colon and messages with new lines
+    String safeName = name.replaceAll("[:\\r\\n]", "");
+    executor.execute(() -> {
+      if (pending.containsKey(gameId)) {
+        logger.info("Game {} already queued", gameId);
+        return;
+      }
+      pending.put(gameId, new Submission(gameId, safeName, score));
+      save();
+      drain();
+    });
+  }
+
+  /**
+   * Set what to run after the server confirms a score
+   * @param onDelivered callback, run on the outbox thread
+   */
+  public void setOnDelivered(Runnable onDelivered) {
+    this.onDelivered = onDelivered;
+  }
+
+  /**
+   * Get the number of scores waiting for the server
+   * @return pending scores
+   */
+  public int getPendingCount() {
+    return pendingCount;
+  }
+
+  /**
+   * Send the next batch of scores not yet sent on this connection, and schedule another pass if some are left
+   */
+  private void drain() {
+    if (nextDrain != null) {
+      nextDrain.cancel(false);
+      nextDrain = null;
+    }
+    if (pending.isEmpty()) {
+      return;
+    }
+    if (!communicator.isConnected()) {
+      logger.info("Offline, holding {} scores", pending.size());
+      return;
+    }
+
+    int sent = 0;
+    boolean more = false;
+    for (Submission submission : pending.values()) {
+      if (submission.sentOnConnection == connection) {
+        continue;
+      }
+      if (sent == BATCH_SIZE) {
+        more = true;
+        break;
+      }
+      communicator.send("HISCORE " + submission.name + ":" + submission.score);
+      submission.sentOnConnection = connection;
+      awaiting.addLast(submission);
+      sent++;
+    }
+    logger.info("Sent {} of {} pending scores", sent, pending.size());
+
+    if (more) {
+      nextDrain = executor.schedule(this::drain, BATCH_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Remove the oldest score sent on this connection matching a NEWSCORE confirmation. Anything else is another
+   * client's score
+   * @param confirmed name:score from the server
+   */
+  private void confirm(String confirmed) {
+    for (Iterator<Submission> iterator = awaiting.iterator(); iterator.hasNext(); ) {
+      Submission submission = iterator.next();
+      if (confirmed.equals(submission.name + ":" + submission.score)) {
+        iterator.remove();
+        pending.remove(submission.gameId);
+        logger.info("Server confirmed game {}", submission.gameId);
+        save();
+        Runnable callback = onDelivered;
+        if (callback != null) {
+          callback.run();
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Read the outbox file
+   */
+  private void load() {
+    List<String> lines;
+    try {
+      lines = Files.readAllLines(file);
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException e) {
+      logger.error("Failed to read score outbox", e);
+      return;
+    }
+
+    for (String line : lines) {
+      String[] parts = line.split(":", 3);
+      if (parts.length != 3) {
+        logger.error("Invalid outbox entry: " + line);
+        continue;
+      }
+      try {
+        pending.put(parts[0], new Submission(parts[0], parts[1], Integer.parseInt(parts[2])));
+      } catch (NumberFormatException e) {
+        logger.error("Invalid outbox entry: " + line);
+      }
+    }
+    pendingCount = pending.size();
+    logger.info("Loaded {} pending scores", pending.size());
+  }
+
+  /**
+   * Write the outbox file, replacing it in one move so it is never left half written
+   */
+  private void save() {
+    pendingCount = pending.size();
+    List<Submission> snapshot = new ArrayList<>(pending.values());
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+        for (Submission submission : snapshot) {
+          writer.write(submission.gameId + ":" + submission.name + ":" + submission.score + "\n");
+        }
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      logger.error("Failed to write score outbox", e);
+    }
+  }
+}
@@ -1,6 +1,8 @@
 package uk.ac.soton.comp1206.scene;
 
 import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.paint.Color;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.ui.GamePane;
@@ -49,6 +51,13 @@ public abstract class BaseScene {
      */
     public abstract void build();
 
+    /**
+     * Release anything the scene holds, such as background threads. Called before the next scene is loaded, however
+     * this one was left
+     */
+    public void cleanup() {
+    }
+
     /**
      * Create a new JavaFX scene using the root contained within this scene
      * @return JavaFX scene
@@ -58,6 +67,14 @@ public abstract class BaseScene {
         Scene scene = new Scene(root, previous.getWidth(), previous.getHeight(), Color.BLACK);
         scene.getStylesheets().add(getClass().getResource("/style/game.css").toExternalForm());
         this.scene = scene;
+
+        //F3 shows the performance HUD on any scene
+        gameWindow.getPerformanceHud().attach(scene, root);
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, (e) -> {
+            if (e.getCode() == KeyCode.F3) {
+                gameWindow.getPerformanceHud().toggle();
+            }
+        });
         return scene;
     }
 
@@ -1,8 +1,6 @@
 package uk.ac.soton.comp1206.scene;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.animation.TranslateTransition;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -13,21 +11,24 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
-import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.Multimedia;
+import uk.ac.soton.comp1206.component.CanvasGameBoard;
 import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
+import uk.ac.soton.comp1206.component.ParticleLayer;
 import uk.ac.soton.comp1206.component.PieceBoard;
 import uk.ac.soton.comp1206.event.GameLoopListener;
 import uk.ac.soton.comp1206.event.NextPieceListener;
+import uk.ac.soton.comp1206.game.ClearedLines;
 import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Hint;
+import uk.ac.soton.comp1206.game.HintEngine;
+import uk.ac.soton.comp1206.ui.AnimationScheduler;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
-import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 
 /**
@@ -52,6 +53,11 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
    */
   protected GameBoard gameBoard;
 
+  /**
+   * Particle effects drawn over the game board
+   */
+  protected ParticleLayer particles;
+
   /**
    * PieceBoard for next piece
    */
@@ -62,6 +68,26 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
    */
   protected PieceBoard currentPieceBoard;
 
+  /**
+   * PieceBoard for the piece after the next one
+   */
+  protected PieceBoard laterPieceBoard;
+
+  /**
+   * Searches for hints in the background, null until hints are first turned on
+   */
+  private HintEngine hintEngine;
+
+  /**
+   * Whether hints are shown, toggled with H
+   */
+  private boolean hintsOn = false;
+
+  /**
+   * Describes the current hint
+   */
+  private final Label hintLabel = new Label();
+
   /**
    *  GameLoopListener
    */
@@ -98,10 +124,33 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
         challengePane.getChildren().add(mainPane);
 
         //Game board setup
-        gameBoard = new GameBoard(game.getGrid(), (double) gameWindow.getWidth() /2, (double) gameWindow.getWidth() /2);
+        //-Dtetrecs.canvasBoard=true draws the board on a single canvas
+        if (Boolean.getBoolean("tetrecs.canvasBoard")) {
+            gameBoard = new CanvasGameBoard(game.getGrid(), (double) gameWindow.getWidth() /2, (double) gameWindow.getWidth() /2);
+        } else {
+            gameBoard = new GameBoard(game.getGrid(), (double) gameWindow.getWidth() /2, (double) gameWindow.getWidth() /2);
+        }
         gameBoard.setGame(game);
         gameBoard.getStyleClass().add("gameBox");
-        mainPane.setCenter(gameBoard);
+
+        //Particles sit on top of the board and let clicks through to it
+        particles = new ParticleLayer((double) gameWindow.getWidth() /2, (double) gameWindow.getWidth() /2, 2048);
+        var boardStack = new StackPane(gameBoard, particles);
+        mainPane.setCenter(boardStack);
+
+        //Celebrate combos and level ups
+        game.multiplierProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue.intValue() > oldValue.intValue() && newValue.intValue() > 1) {
+                particles.burst(particles.getWidth() / 2, particles.getHeight() / 2, 40 * newValue.intValue(), 0, 260);
+            }
+        });
+        game.levelProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue.intValue() > oldValue.intValue()) {
+                for (int i = 1; i <= 5; i++) {
+                    particles.burst(particles.getWidth() * i / 6, particles.getHeight() / 3, 60, 0, 320);
+                }
+            }
+        });
 
         //Left side UI
         VBox leftUI = leftUI(mainPane);
@@ -120,7 +169,7 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
         sceneTitle.setAlignment(Pos.TOP_CENTER);
         sceneTitle.setPadding(new Insets(20));
         sceneTitle.setSpacing(10);
-        Label challengeSceneTitle = new Label("Challenge Scene");
+        Label challengeSceneTitle = new Label(getTitle());
         challengeSceneTitle.getStyleClass().add("challengeSceneTitle");
         sceneTitle.getChildren().add(challengeSceneTitle);
         mainPane.setTop(sceneTitle);
@@ -208,51 +257,88 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
         nextPieceBoard.setPadding(new Insets(20));
         nextPieceBoard.setOnBlockClick(this::swap);
 
+        //Piece after next, from the look-ahead queue
+        laterPieceBoard = new PieceBoard(3,3, (double) gameWindow.getWidth() /14, (double) gameWindow.getWidth() /14);
+        laterPieceBoard.setPadding(new Insets(0, 20, 0, 20));
+        laterPieceBoard.setVisible(game.getLookahead() > 1);
+
         // Spacer to push the level UI towards the center
         Region spacer = new Region();
         VBox.setVgrow(spacer, Priority.ALWAYS);
         levelsDisplay.setAlignment(Pos.CENTER_RIGHT);
-        rightDisplay.getChildren().addAll(liveTitle, livesDisplay, currentPieceBoard, nextPieceBoard, spacer, levelsDisplay);
+        hintLabel.getStyleClass().add("messages");
+        hintLabel.setVisible(false);
+        rightDisplay.getChildren().addAll(liveTitle, livesDisplay, currentPieceBoard, nextPieceBoard, laterPieceBoard, spacer, hintLabel, levelsDisplay);
 
         return rightDisplay;
     }
 
+  /**
+   * Title shown at the top of the scene
+   * @return title
+   */
+  protected String getTitle() {
+    return "Challenge Scene";
+  }
+
   /**
    * Game loop animation to show countdown UI
-   * TranslateTransition is used in this method to move rectangleTimeBar
+   * The bar is moved by an effect on the shared AnimationScheduler
+   * @param mainPane Border pane
+   * @return bar shown under the board
    */
-  private VBox gameLoopAnimation(BorderPane mainPane) {
+  protected VBox gameLoopAnimation(BorderPane mainPane) {
 
-    Duration firstDurationDelay = Duration.millis(8000);
     VBox timeBar = new VBox();
     final Rectangle rectangleTimeBar = new Rectangle(gameWindow.getWidth(),150);
     rectangleTimeBar.setFill(Color.GREEN);
 
-    TranslateTransition shakeTransition = new TranslateTransition(Duration.millis(game.getTimerDelay()), rectangleTimeBar);
-    Timeline colorTimeline = new Timeline(new KeyFrame(Duration.millis(100), e -> {
-      double currentTime = shakeTransition.getCurrentTime().toMillis();
-      if (currentTime <= firstDurationDelay.toMillis()) {
-        rectangleTimeBar.setFill(Color.GREEN);
-      }
-      else {
-        rectangleTimeBar.setFill(Color.RED);
-      }
-    }));
-    colorTimeline.setCycleCount(Timeline.INDEFINITE);
-    shakeTransition.setFromX(0);
-    shakeTransition.setToX(-gameWindow.getWidth());
-
-    shakeTransition.setAutoReverse(false);
-    shakeTransition.setCycleCount(TranslateTransition.INDEFINITE);
-
-    shakeTransition.play();
-    colorTimeline.play();
+    AnimationScheduler.get().add(new TimerBar(rectangleTimeBar, game.getTimerDelay(), gameWindow.getWidth()));
 
     timeBar.getChildren().add(rectangleTimeBar);
 
     return timeBar;
     }
 
+  /**
+   * Slides the timer bar off to the left once per game loop, turning red when time is nearly up
+   */
+  private static class TimerBar implements AnimationScheduler.Effect {
+
+    /**
+     * Time after which the bar turns red
+     */
+    private static final long WARNING_NANOS = 8_000_000_000L;
+
+    private final Rectangle bar;
+    private final long periodNanos;
+    private final double distance;
+    private long start = -1;
+    private boolean warning = false;
+
+    private TimerBar(Rectangle bar, int delayMillis, double distance) {
+      this.bar = bar;
+      this.periodNanos = delayMillis * 1_000_000L;
+      this.distance = distance;
+    }
+
+    @Override
+    public boolean tick(long now) {
+      if (start < 0) {
+        start = now;
+      }
+      long elapsed = (now - start) % periodNanos;
+      bar.setTranslateX(-distance * elapsed / periodNanos);
+
+      boolean late = elapsed > WARNING_NANOS;
+      if (late != warning) {
+        warning = late;
+        bar.setFill(late ? Color.RED : Color.GREEN);
+      }
+      return true;
+    }
+  }
+
 
   protected void blockAction(GameBlock gameBlock) {
     if (this.game.blockAction(gameBlock)) {
@@ -271,7 +357,8 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
         logger.info("Swapped by left click");
         game.swapCurrentPiece();
         currentPieceBoard.setPiece(game.getCurrentPiece());
-        nextPieceBoard.setPiece(game.getFollowingPiece());
+        showUpcoming();
+        refreshHint();
 
     }
 
@@ -282,7 +369,8 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
     logger.info("Swapped by pressing space / R");
     game.swapCurrentPiece();
     currentPieceBoard.setPiece(game.getCurrentPiece());
-    nextPieceBoard.setPiece(game.getFollowingPiece());
+    showUpcoming();
+    refreshHint();
 
   }
 
@@ -293,6 +381,8 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
     game.reversedRotateCurrentPiece();
     currentPieceBoard.display(game.getCurrentPiece());
     currentPieceBoard.setPiece(game.getCurrentPiece());
+    gameBoard.refreshGhost();
+    refreshHint();
   }
 
   /**
@@ -301,6 +391,8 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
   public void rotatePress() {
     game.rotateCurrentPiece();
     currentPieceBoard.setPiece(game.getCurrentPiece());
+    gameBoard.refreshGhost();
+    refreshHint();
   }
 
     /**
@@ -340,6 +432,9 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
                game.stopGameLoop();
                stopGame();
            }
+           else if(event.getCode() == KeyCode.H) {
+               toggleHints();
+           }
        });
     }
 
@@ -357,14 +452,32 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
 
     }
 
+    /**
+     * Stop the hint engine when leaving the scene, whether by Escape or by the game ending
+     */
+    @Override
+    public void cleanup() {
+        if (hintEngine != null) {
+            hintEngine.shutdown();
+        }
+    }
+
     /**
      * Trigger the game blocks fade
-     * @param gameBlockCoordinateSet gameBlockCoordinateSet
+     * @param clearedLines clearedLines
      */
-    public void triggerLineClear(Set<GameBlockCoordinate> gameBlockCoordinateSet) {
+    public void triggerLineClear(ClearedLines clearedLines) {
         logger.info("Bro I can finally trigger the lineClear stuff");
         try {
-            gameBoard.fadeOut(gameBlockCoordinateSet);
+            gameBoard.fadeOut(clearedLines);
+            double blockWidth = particles.getWidth() / game.getCols();
+            double blockHeight = particles.getHeight() / game.getRows();
+            for (int cell = clearedLines.nextCleared(0); cell >= 0; cell = clearedLines.nextCleared(cell + 1)) {
+                int x = cell % game.getCols();
+                int y = cell / game.getCols();
+                int colour = 1 + (x + y) % (GameBlock.COLOURS.length - 1);
+                particles.burst((x + 0.5) * blockWidth, (y + 0.5) * blockHeight, 12, colour, 180);
+            }
         } catch (Exception e) {
             logger.error("EXCEPTION in triggerLineClear ! ! ! {}", e.toString());
         }
@@ -397,9 +510,74 @@ public class ChallengeScene extends BaseScene implements NextPieceListener{
   @Override
   public void nextPiece(GamePiece nextPiece) {
     currentPieceBoard.setPiece(nextPiece);
-    GamePiece gamePiece = game.getFollowingPiece();
-    if(gamePiece != null) {
-      nextPieceBoard.setPiece(gamePiece);
+    showUpcoming();
+    //The game loop hands out pieces from its own thread
+    if (Platform.isFxApplicationThread()) {
+      gameBoard.refreshGhost();
+      refreshHint();
+    } else {
+      Platform.runLater(() -> {
+        gameBoard.refreshGhost();
+        refreshHint();
+      });
+    }
+  }
+
+  /**
+   * Turn hints on or off
+   */
+  public void toggleHints() {
+    hintsOn = !hintsOn;
+    logger.info("Hints {}", hintsOn ? "on" : "off");
+    if (hintsOn && hintEngine == null) {
+      hintEngine = new HintEngine(game.getCols(), game.getRows(), this::showHint);
+    }
+    hintLabel.setVisible(hintsOn);
+    refreshHint();
+  }
+
+  /**
+   * Drop the shown hint and search again, for when the board or the current piece changes
+   */
+  private void refreshHint() {
+    if (hintEngine == null) {
+      return;
+    }
+    gameBoard.hideHint();
+    hintLabel.setText("");
+    if (hintsOn) {
+      hintEngine.request(game.getGrid(), game.getCurrentPiece(), game.getFollowingPiece());
+    } else {
+      hintEngine.cancel();
+    }
+  }
+
+  /**
+   * Show a hint from the hint engine
+   * @param hint best move so far, or null if nothing fits
+   */
+  private void showHint(Hint hint) {
+    if (hint == null) {
+      gameBoard.hideHint();
+      hintLabel.setText("No move fits");
+      return;
+    }
+    gameBoard.showHint(hint.getMask(), hint.getX(), hint.getY());
+    StringBuilder text = new StringBuilder("Hint:");
+    if (hint.isSwap()) {
+      text.append(" swap,");
+    }
+    text.append(hint.getTurns() == 0 ? " no turn" : " turn " + hint.getTurns());
+    hintLabel.setText(text.toString());
+  }
+
+  /**
+   * Show the following pieces on the preview boards
+   */
+  private void showUpcoming() {
+    nextPieceBoard.setPiece(game.getFollowingPiece());
+    if (game.getLookahead() > 1) {
+      laterPieceBoard.setPiece(game.getUpcomingPiece(1));
     }
   }
 }
@@ -17,6 +17,8 @@ import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -208,8 +210,8 @@ public class LobbyScene extends BaseScene{
    */
   private void updateChannelList(String channelData) {
     try {
+      List<String> channelNames = parseChannels(channelData);
       Platform.runLater(() -> {
-        String[] channelNames = channelData.split(",");
         channelListBox.getChildren().clear();
         for (String name : channelNames) {
           Label channelLabel = new Label(name);
@@ -223,6 +225,22 @@ public class LobbyScene extends BaseScene{
     }
   }
 
+  /**
+   * Split the payload of a CHANNELS message into channel names, skipping blanks
+   * @param channelData channelData
+   * @return channel names
+   */
+  public static List<String> parseChannels(String channelData) {
+    List<String> channels = new ArrayList<>();
+    for (String name : channelData.split(",")) {
+      String trimmed = name.trim();
+      if (!trimmed.isEmpty()) {
+        channels.add(trimmed);
+      }
+    }
+    return channels;
+  }
+
   /**
    * Join Channel
    * @param channelName channelName
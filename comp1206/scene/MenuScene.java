@@ -1,19 +1,20 @@
 package uk.ac.soton.comp1206.scene;
 
-import javafx.animation.TranslateTransition;
 import javafx.event.ActionEvent;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.*;
-import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.Multimedia;
 import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.jfr.FlightRecording;
+import uk.ac.soton.comp1206.ui.AnimationScheduler;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -26,6 +27,11 @@ public class MenuScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(MenuScene.class);
 
+    /**
+     * Shows whether a flight recording is running
+     */
+    private final Label recordingLabel = new Label();
+
     /**
      * Create a new menu scene
      * @param gameWindow the Game Window this will be displayed in
@@ -74,6 +80,9 @@ public class MenuScene extends BaseScene {
         //Not going to add logger for buttons
         var startChallengeButton = menuButtonCss("Single Player");
         startChallengeButton.getStyleClass().add("button");
+        //"Puzzles" Button
+        var puzzleButton = menuButtonCss("Puzzles");
+        puzzleButton.getStyleClass().add("button");
         //"Multi Player" Button
         var multiPlayerButton = menuButtonCss("Multi Player");
         multiPlayerButton.getStyleClass().add("button");
@@ -87,13 +96,22 @@ public class MenuScene extends BaseScene {
 
         //Set all buttons position in one go
         VBox root = new VBox();
-        root.getChildren().addAll(startChallengeButton , multiPlayerButton , howToPlayButton , exit);
+        root.getChildren().addAll(startChallengeButton , puzzleButton , multiPlayerButton , howToPlayButton , exit);
         root.setSpacing(20);
         root.setAlignment(Pos.CENTER);
         mainPane.setCenter(root);
 
+        //F9 starts and stops a flight recording
+        recordingLabel.getStyleClass().add("channelItem");
+        BorderPane.setAlignment(recordingLabel, Pos.CENTER);
+        BorderPane.setMargin(recordingLabel, new Insets(10));
+        mainPane.setBottom(recordingLabel);
+        updateRecordingLabel();
+
         //Bind the startChallengeButton action to the startGame method in the menu
         startChallengeButton.setOnAction(this::startGame);
+        //Bind the puzzleButton action to the first puzzle
+        puzzleButton.setOnAction(this::puzzlePress);
         //Bind the multiPlayerButton action to the startGame method in the menu
         multiPlayerButton.setOnAction(this::multiPress);
         //Bind the howToPlayButton action to the startGame method in the menu
@@ -103,20 +121,30 @@ public class MenuScene extends BaseScene {
     }
 
     /**
-     * Create a TranslateTransition for the shake effect
+     * Swing the title from side to side on the shared AnimationScheduler
      * @param imageView imageView
      */
     public void addShakeAnimation(ImageView imageView) {
-        TranslateTransition shakeTransition = new TranslateTransition(Duration.seconds(6), imageView);
-            shakeTransition.setFromX(-50);
-            shakeTransition.setToX(50);
-
-            shakeTransition.setAutoReverse(true);
-            shakeTransition.setCycleCount(TranslateTransition.INDEFINITE);
-
-
-            shakeTransition.play();
+        AnimationScheduler.get().add(new AnimationScheduler.Effect() {
+            long start = -1;
+            @Override
+            public boolean tick(long now) {
+                if (start < 0) {
+                    start = now;
+                }
+                //Eases from -50 to 50 and back every 12 seconds
+                double phase = (now - start) / 6_000_000_000.0 * Math.PI;
+                imageView.setTranslateX(-50 * Math.cos(phase));
+                return true;
+            }
+        });
+    }
 
+    /**
+     * Show whether a flight recording is running
+     */
+    private void updateRecordingLabel() {
+        recordingLabel.setText(FlightRecording.isRecording() ? "Flight recording - F9 to stop" : "F9 to start a flight recording");
     }
 
     /**
@@ -156,6 +184,14 @@ public class MenuScene extends BaseScene {
         gameWindow.howToPlay();
     }
 
+    /**
+     * Handle when the "Puzzles" button is pressed
+     * @param event event
+     */
+    private void puzzlePress(ActionEvent event) {
+        gameWindow.startPuzzle(0);
+    }
+
     private void multiPress(ActionEvent event) {
         gameWindow.multiPlayer();
     }
@@ -174,6 +210,9 @@ public class MenuScene extends BaseScene {
         scene.setOnKeyPressed(event -> {
             if(event.getCode() == KeyCode.ESCAPE) {
                 stopGame();
+            } else if(event.getCode() == KeyCode.F9) {
+                FlightRecording.toggle();
+                updateRecordingLabel();
             }
         });
     }
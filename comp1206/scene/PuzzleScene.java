@@ -0,0 +1,234 @@
+package uk.ac.soton.comp1206.scene;
+
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.input.KeyCode;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.VBox;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceMasks;
+import uk.ac.soton.comp1206.game.Puzzle;
+import uk.ac.soton.comp1206.game.PuzzleGame;
+import uk.ac.soton.comp1206.game.PuzzleSolver;
+import uk.ac.soton.comp1206.ui.GameWindow;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The puzzle scene. Plays one puzzle, loaded beforehand by PuzzleLibrary.
+ *
+ * H asks the solver for the next move from the board as it is, R starts the puzzle again and N goes to the next one.
+ * The solver runs on a background thread, so a slow search never holds up the board.
+ */
+public class PuzzleScene extends ChallengeScene {
+
+  /**
+   * Logger
+   */
+  private static final Logger logger = LogManager.getLogger(PuzzleScene.class);
+
+  /**
+   * Number of the puzzle being played
+   */
+  private final int index;
+
+  /**
+   * Puzzle being played
+   */
+  private final Puzzle puzzle;
+
+  /**
+   * Shows the pieces left, the outcome and hints
+   */
+  private final Label statusLabel = new Label();
+
+  /**
+   * Finds hints from the board as the player left it
+   */
+  private PuzzleSolver solver;
+
+  /**
+   * Thread the solver runs on for hints
+   */
+  private final ExecutorService hintWorker = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "puzzle-hint");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * Bumped whenever the board or piece changes, so a hint for an older position is dropped
+   */
+  private final AtomicLong hintRequest = new AtomicLong();
+
+  /**
+   * Create a puzzle scene
+   * @param gameWindow the Game Window
+   * @param index number of the puzzle
+   * @param puzzle the puzzle
+   */
+  public PuzzleScene(GameWindow gameWindow, int index, Puzzle puzzle) {
+    super(gameWindow);
+    this.index = index;
+    this.puzzle = puzzle;
+    logger.info("Creating Puzzle Scene {}", index);
+  }
+
+  /**
+   * Setup the game for the puzzle
+   */
+  @Override
+  public void setupGame() {
+    PuzzleGame puzzleGame = new PuzzleGame(puzzle, gameWindow);
+    puzzleGame.setOnPuzzleFinished(this::puzzleFinished);
+    puzzleGame.piecesLeftProperty().addListener((observable, oldValue, newValue) -> showPiecesLeft());
+    solver = new PuzzleSolver(puzzle.getCols(), puzzle.getRows());
+    game = puzzleGame;
+  }
+
+  @Override
+  protected String getTitle() {
+    return "Puzzle " + (index + 1);
+  }
+
+  /**
+   * Puzzles have no timer, show the status instead
+   * @param mainPane Border pane
+   * @return status bar
+   */
+  @Override
+  protected VBox gameLoopAnimation(BorderPane mainPane) {
+    VBox status = new VBox(statusLabel);
+    status.setAlignment(Pos.CENTER);
+    status.setPadding(new Insets(20));
+    statusLabel.getStyleClass().add("messages");
+    showPiecesLeft();
+    return status;
+  }
+
+  /**
+   * Pieces come in the puzzle's order, so a click only plays the current piece
+   * @param gameBlock gameBlock
+   */
+  @Override
+  protected void blockAction(GameBlock gameBlock) {
+  }
+
+  /**
+   * Key listener
+   */
+  @Override
+  public void keyListener() {
+    scene.setOnKeyPressed(event -> {
+      if (event.getCode() == KeyCode.ESCAPE) {
+        game.stopGameLoop();
+        stopGame();
+      } else if (event.getCode() == KeyCode.H) {
+        showSolverHint();
+      } else if (event.getCode() == KeyCode.R) {
+        game.stopGameLoop();
+        gameWindow.startPuzzle(index);
+      } else if (event.getCode() == KeyCode.N) {
+        game.stopGameLoop();
+        gameWindow.startPuzzle(index + 1);
+      }
+    });
+  }
+
+  /**
+   * Next piece, hiding previews past the end of the puzzle
+   * @param nextPiece nextPiece
+   */
+  @Override
+  public void nextPiece(GamePiece nextPiece) {
+    super.nextPiece(nextPiece);
+    int left = ((PuzzleGame) game).piecesLeftProperty().get();
+    nextPieceBoard.setVisible(left > 1);
+    laterPieceBoard.setVisible(left > 2 && game.getLookahead() > 1);
+    hintRequest.incrementAndGet();
+    gameBoard.hideHint();
+  }
+
+  /**
+   * Stop the hint solver when leaving the scene
+   */
+  @Override
+  public void cleanup() {
+    super.cleanup();
+    hintRequest.incrementAndGet();
+    hintWorker.shutdownNow();
+  }
+
+  /**
+   * Ask the solver for the next move of a solution from the board as it is now
+   */
+  private void showSolverHint() {
+    PuzzleGame puzzleGame = (PuzzleGame) game;
+    if (puzzleGame.isFinished()) {
+      return;
+    }
+    long request = hintRequest.incrementAndGet();
+    int[] board = new int[game.getRows()];
+    game.getGrid().copyRows(board);
+    int[] pieces = puzzleGame.getRemainingPieces();
+    statusLabel.setText("Thinking...");
+    try {
+      hintWorker.execute(() -> {
+        long start = System.nanoTime();
+        int[] solution = solver.solve(board, pieces);
+        logger.info("Solved for a hint in {}us", (System.nanoTime() - start) / 1000);
+        Platform.runLater(() -> {
+          if (hintRequest.get() == request) {
+            showSolution(pieces, solution);
+          }
+        });
+      });
+    } catch (RejectedExecutionException e) {
+      logger.error("Fail to search for a hint, {}", e.toString());
+    }
+  }
+
+  /**
+   * Show the first move of a solution found for a hint
+   * @param pieces pieces the solution is for
+   * @param solution moves, or null if the board cannot be cleared
+   */
+  private void showSolution(int[] pieces, int[] solution) {
+    if (solution == null) {
+      gameBoard.hideHint();
+      statusLabel.setText("The board cannot be cleared from here, R to retry");
+      return;
+    }
+    int rotation = Puzzle.rotation(solution[0]);
+    gameBoard.showHint(PieceMasks.mask(pieces[0], rotation), Puzzle.x(solution[0]), Puzzle.y(solution[0]));
+    int turns = (rotation - game.getCurrentPiece().getRotation()) & 3;
+    statusLabel.setText(turns == 0 ? "Hint: no turn" : "Hint: turn " + turns);
+  }
+
+  /**
+   * Show how many pieces are left
+   */
+  private void showPiecesLeft() {
+    PuzzleGame puzzleGame = (PuzzleGame) game;
+    if (!puzzleGame.isFinished()) {
+      statusLabel.setText("Pieces left: " + puzzleGame.piecesLeftProperty().get() + "   H hint, R retry, N skip");
+    }
+  }
+
+  /**
+   * Show the outcome of the puzzle
+   * @param solved whether the board was emptied
+   */
+  private void puzzleFinished(boolean solved) {
+    gameBoard.hideHint();
+    statusLabel.setText(solved ? "Solved! N for the next puzzle" : "Out of pieces, R to retry");
+  }
+}
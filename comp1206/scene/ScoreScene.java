@@ -18,24 +18,19 @@ import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.Leaderboard;
 import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Score scene
  * Functions :
- * Save and read high scores to a scores file
+ * Show the local high scores, kept by the ScoreRepository, and the online high scores
  * Prompt for a name on getting a high score
  */
 public class ScoreScene extends BaseScene{
@@ -53,7 +48,7 @@ public class ScoreScene extends BaseScene{
   /**
    * scoresList
    */
-  List<Pair<String, Integer>> scoresList = loadScores();
+  List<Pair<String, Integer>> scoresList = gameWindow.getScoreRepository().getScores();
 
   /**
    * ObservableScores
@@ -65,6 +60,51 @@ public class ScoreScene extends BaseScene{
    */
   SimpleListProperty<Pair<String, Integer>> localScoresProperty = new SimpleListProperty<>(observableScores);
 
+  /**
+   * Local scores ordered by score, used to display the local list
+   */
+  private final Leaderboard localLeaderboard = new Leaderboard();
+
+  /**
+   * Local and online scores merged, used to rank the player
+   */
+  private final Leaderboard leaderboard = new Leaderboard();
+
+  /**
+   * Score of the game that just finished, -1 if the scene was not opened from a game
+   */
+  private final int finalScore;
+
+  /**
+   * Number of local scores to display
+   */
+  private static final int LOCAL_SCORES_SHOWN = 10;
+
+  /**
+   * Number of scores shown either side of the finished game
+   */
+  private static final int NEIGHBOURS_SHOWN = 2;
+
+  /**
+   * rankLabel
+   */
+  private final Label rankLabel = new Label();
+
+  /**
+   * Scores ranked just above and below the finished game
+   */
+  private final VBox neighboursBox = new VBox();
+
+  /**
+   * Online scores received so far
+   */
+  private final List<Pair<String, Integer>> onlineScores = new ArrayList<>();
+
+  /**
+   * localScoreListBox
+   */
+  private final VBox localScoreListBox = new VBox();
+
   /**
    * onlineScoreListBox
    */
@@ -81,9 +121,21 @@ public class ScoreScene extends BaseScene{
    * @param gameWindow the game window
    */
   public ScoreScene(GameWindow gameWindow) {
+    this(gameWindow, -1);
+  }
+
+  /**
+   * Create a new score scene for a finished game, showing where the score ranks
+   *
+   * @param gameWindow the game window
+   * @param finalScore score of the finished game
+   */
+  public ScoreScene(GameWindow gameWindow, int finalScore) {
     super(gameWindow);
     logger.info("Creating Score Scene");
     communicator = gameWindow.getCommunicator();
+    this.finalScore = finalScore;
+    rebuildLeaderboards();
   }
 
 
@@ -93,6 +145,7 @@ public class ScoreScene extends BaseScene{
   @Override
   public void initialise() {
     logger.info("Initialising Score scene");
+    gameWindow.getScoreRepository().setOnScoresUpdated(this::localScoresUpdated);
     loadOnlineScores();
     keyListener();
   }
@@ -126,6 +179,14 @@ public class ScoreScene extends BaseScene{
       gameOverLabel.getStyleClass().add("bigtitle");
       var gameOverAdjust = new VBox();
       gameOverAdjust.getChildren().add(gameOverLabel);
+
+      //Rank of the finished game
+      if (finalScore >= 0) {
+        rankLabel.getStyleClass().add("heading");
+        neighboursBox.setAlignment(Pos.TOP_CENTER);
+        gameOverAdjust.getChildren().addAll(rankLabel, neighboursBox);
+        updateRank();
+      }
       gameOverAdjust.setAlignment(Pos.TOP_CENTER);
 
 
@@ -150,7 +211,8 @@ public class ScoreScene extends BaseScene{
       localScoresAdjust.setPadding(new Insets((double) gameWindow.getWidth() / 22));
 
       //Local scores list
-      VBox localScoresVBox = new VBox(localScoresAdjust, localScoresList());
+      localScoresList();
+      VBox localScoresVBox = new VBox(localScoresAdjust, localScoreListBox);
       localScoresVBox.setPadding(new Insets(20));
       localScoresVBox.setAlignment(Pos.TOP_LEFT);
       mainPane.setLeft(localScoresVBox);
@@ -187,114 +249,84 @@ public class ScoreScene extends BaseScene{
 
   /**
    * Set up local scores list
-   * @return scoreListBox
    */
-  private VBox localScoresList() {
-    VBox scoreListBox = new VBox();
-    scoreListBox.setAlignment(Pos.BOTTOM_LEFT);
-    scoreListBox.setPadding(new Insets(20));
-    scoreListBox.setSpacing(15);
+  private void localScoresList() {
+    localScoreListBox.setAlignment(Pos.BOTTOM_LEFT);
+    localScoreListBox.setPadding(new Insets(20));
+    localScoreListBox.setSpacing(15);
+    localScoreListBox.getChildren().clear();
 
-      for (Pair<String, Integer> score : localScoresProperty.get()) {
+      for (Pair<String, Integer> score : localLeaderboard.top(LOCAL_SCORES_SHOWN)) {
         Label scoreLabel = new Label(score.getKey() + " : " + score.getValue());
         scoreLabel.getStyleClass().add("scorelist");
-        scoreListBox.getChildren().add(scoreLabel);
+        localScoreListBox.getChildren().add(scoreLabel);
       }
-
-    return scoreListBox;
   }
 
   /**
-   * Save scores by using bufferedWriter
-   * The method will remove the first score when it reaches 10
+   * Update the local scores when the stored scores change, for example once the scores file has been read
    * @param scores scores
    */
-  private void saveScores(List<Pair<String, Integer>> scores) {
-    try (BufferedWriter writer = Files.newBufferedWriter(Paths.get("highscores.txt"))) {
-
-      for (Pair<String, Integer> score : scores) {
-
-          logger.info("Adding scores into file");
-          writer.write(score.getKey() + ":" + score.getValue() + "\n");
-
-      }
-    } catch (IOException e) {
-      logger.error("Failed to write scores", e);
-    }
-  }
-
-  /**
-   * Load scores
-   * @return new ArrayList
-   */
-  private List<Pair<String, Integer>> loadScores() {
-    try (Stream<String> lines = Files.lines(Paths.get("highscores.txt"))) {
-      return lines.map(line -> {
-        String[] parts = line.split(":");
-        return new Pair<>(parts[0], Integer.parseInt(parts[1]));
-      }).collect(Collectors.toList());
-    } catch (IOException e) {
-      logger.error("Failed to read scores", e);
-      return new ArrayList<>();
-    }
-  }
-
-  /**
-   * Add score
-   * @param newScore new score
-   */
-  public void addScore(Pair<String, Integer> newScore) {
-    ObservableList<Pair<String, Integer>> scores = localScoresProperty.get();
-    scores.add(newScore);
-    saveScores(new ArrayList<>(scores));
+  private void localScoresUpdated(List<Pair<String, Integer>> scores) {
+    scoresList = scores;
+    localScoresProperty.setAll(scores);
+    rebuildLeaderboards();
+    localScoresList();
+    updateRank();
   }
 
   /**
-   * Save current scores
+   * Fill the leaderboards from the local and online scores
    */
-  public void saveCurrentScores() {
-    saveScores(new ArrayList<>(localScoresProperty.get()));
+  private void rebuildLeaderboards() {
+    localLeaderboard.clear();
+    localLeaderboard.addAll(scoresList);
+    leaderboard.clear();
+    leaderboard.addAll(scoresList);
+    leaderboard.addAll(onlineScores);
   }
 
   /**
-   * Load online score
+   * Load online score, from the cache when it is fresh
    */
   private void loadOnlineScores() {
     logger.info("Loading online scores");
-    gameWindow.getCommunicator().send("HISCORES");
-    communicator.addListener(message -> {
-      if (message.startsWith("HISCORES")) {
-        String scoresData = message.substring("HISCORES".length()).trim();
-        Platform.runLater(() -> onlineScoreList(scoresData));
-      }
-    });
+    gameWindow.getOnlineScores().get(scores -> Platform.runLater(() -> onlineScoreList(scores)));
   }
 
   /**
    * Update onlineScoreList
-   * @param scoreData scoreData
+   * @param scores online scores, highest first
    */
-  private void onlineScoreList(String scoreData) {
-
-    Platform.runLater(() -> {
-      // Split the scores by newlines to separate entries
-      String[] scoreEntries = scoreData.split("\n");
-      onlineScoreListBox.getChildren().clear();
-      for (String entry : scoreEntries) {
-        // Split each entry by colon to separate name and score
-        String[] details = entry.split(":");
-        if (details.length == 2) {
-          String playerName = details[0].trim();
-          String score = details[1].trim();
-          Label scoreLabel = new Label(playerName + " : " + score);
-          scoreLabel.getStyleClass().add("scorelist");
-          onlineScoreListBox.getChildren().add(scoreLabel);
-        } else {
-          logger.error("Invalid score entry: " + entry);
-        }
-      }
-    });
+  private void onlineScoreList(List<Pair<String, Integer>> scores) {
+    onlineScoreListBox.getChildren().clear();
+    onlineScores.clear();
+    for (Pair<String, Integer> score : scores) {
+      Label scoreLabel = new Label(score.getKey() + " : " + score.getValue());
+      scoreLabel.getStyleClass().add("scorelist");
+      onlineScoreListBox.getChildren().add(scoreLabel);
+      onlineScores.add(score);
+    }
+    rebuildLeaderboards();
+    updateRank();
+  }
 
+  /**
+   * Show where the finished game ranks among the local and online scores, and the scores around it
+   */
+  private void updateRank() {
+    if (finalScore < 0) {
+      return;
+    }
+    rankLabel.setText("You ranked #" + leaderboard.rankOf(finalScore) + " of " + leaderboard.size());
+
+    neighboursBox.getChildren().clear();
+    for (Pair<String, Integer> score : leaderboard.neighbours(finalScore, NEIGHBOURS_SHOWN)) {
+      Label scoreLabel = new Label("#" + leaderboard.rankOf(score.getValue()) + " " + score.getKey() + " : "
+          + score.getValue());
+      scoreLabel.getStyleClass().add("scorelist");
+      neighboursBox.getChildren().add(scoreLabel);
+    }
   }
 
   /**
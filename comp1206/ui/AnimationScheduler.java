@@ -0,0 +1,165 @@
+package uk.ac.soton.comp1206.ui;
+
+import javafx.animation.AnimationTimer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+
+/**
+ * Runs every UI animation from a single pulse callback.
+ *
+ * Effects such as block fades, the timer bar and the title shake are added here instead of each starting its own
+ * AnimationTimer. The active effects live in a plain array that is compacted in place, so advancing them allocates
+ * nothing, and the timer is stopped whenever no effect is active. Only use from the JavaFX thread.
+ */
+public class AnimationScheduler {
+
+  private static final Logger logger = LogManager.getLogger(AnimationScheduler.class);
+
+  /**
+   * An animation advanced once per pulse
+   */
+  public interface Effect {
+
+    /**
+     * Advance the effect
+     * @param now pulse time in nanoseconds
+     * @return true to keep running, false once finished
+     */
+    boolean tick(long now);
+  }
+
+  /**
+   * The scheduler shared by every scene
+   */
+  private static final AnimationScheduler instance = new AnimationScheduler();
+
+  /**
+   * Active effects, the first count entries are in use
+   */
+  private Effect[] effects = new Effect[64];
+
+  /**
+   * Number of active effects
+   */
+  private int count = 0;
+
+  /**
+   * Whether the pulse timer is running
+   */
+  private boolean running = false;
+
+  /**
+   * The single pulse callback
+   */
+  private final AnimationTimer timer = new AnimationTimer() {
+    @Override
+    public void handle(long now) {
+      advance(now);
+    }
+  };
+
+  /**
+   * Get the shared scheduler
+   * @return scheduler
+   */
+  public static AnimationScheduler get() {
+    return instance;
+  }
+
+  /**
+   * Start running an effect, unless it is already running
+   * @param effect effect
+   */
+  public void add(Effect effect) {
+    for (int i = 0; i < count; i++) {
+      if (effects[i] == effect) {
+        return;
+      }
+    }
+    if (count == effects.length) {
+      effects = Arrays.copyOf(effects, count * 2);
+    }
+    effects[count++] = effect;
+    if (!running) {
+      running = true;
+      timer.start();
+    }
+  }
+
+  /**
+   * Stop running an effect
+   * @param effect effect
+   */
+  public void remove(Effect effect) {
+    for (int i = 0; i < count; i++) {
+      if (effects[i] == effect) {
+        removeAt(i);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Stop every effect, used when the scene changes
+   */
+  public void clear() {
+    logger.info("Clearing {} animations", count);
+    Arrays.fill(effects, 0, count, null);
+    count = 0;
+    stopIfIdle();
+  }
+
+  /**
+   * Get the number of running effects
+   * @return active effects
+   */
+  public int getActiveCount() {
+    return count;
+  }
+
+  /**
+   * Advance every effect, dropping the finished ones
+   * @param now pulse time
+   */
+  private void advance(long now) {
+    int i = 0;
+    while (i < count) {
+      Effect effect = effects[i];
+      boolean keep;
+      try {
+        keep = effect.tick(now);
+      } catch (Exception e) {
+        logger.error("Animation failed, {}", e.toString());
+        keep = false;
+      }
+      //An effect may have removed itself or others while ticking
+      if (i < count && effects[i] == effect && !keep) {
+        removeAt(i);
+      } else {
+        i++;
+      }
+    }
+    stopIfIdle();
+  }
+
+  /**
+   * Remove the effect at an index by moving the last effect into its place
+   * @param index index
+   */
+  private void removeAt(int index) {
+    effects[index] = effects[--count];
+    effects[count] = null;
+  }
+
+  /**
+   * Stop the pulse timer when nothing is running
+   */
+  private void stopIfIdle() {
+    if (count == 0 && running) {
+      running = false;
+      timer.stop();
+    }
+  }
+}
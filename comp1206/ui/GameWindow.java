@@ -9,9 +9,20 @@ import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
+import uk.ac.soton.comp1206.Multimedia;
+import uk.ac.soton.comp1206.game.PuzzleLibrary;
+import uk.ac.soton.comp1206.game.ScoreRepository;
+import uk.ac.soton.comp1206.jfr.SceneLoadEvent;
+import uk.ac.soton.comp1206.metrics.Histogram;
+import uk.ac.soton.comp1206.metrics.MetricsExporter;
+import uk.ac.soton.comp1206.metrics.MetricsRegistry;
 import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.OnlineScoreCache;
+import uk.ac.soton.comp1206.network.ScoreOutbox;
 import uk.ac.soton.comp1206.scene.*;
 
+import java.nio.file.Paths;
+
 /**
  * The GameWindow is the single window for the game where everything takes place. To move between screens in the game,
  * we simply change the scene.
@@ -33,6 +44,42 @@ public class GameWindow {
 
     final Communicator communicator;
 
+    /**
+     * Local scores shared by every scene
+     */
+    private final ScoreRepository scoreRepository = new ScoreRepository(Paths.get("highscores.txt"));
+
+    /**
+     * Online scores shared by every scene
+     */
+    private final OnlineScoreCache onlineScores;
+
+    /**
+     * Scores waiting to be submitted to the server
+     */
+    private final ScoreOutbox scoreOutbox;
+
+    /**
+     * Frame and engine timings overlay, toggled with F3
+     */
+    private final PerformanceHud performanceHud;
+
+    /**
+     * Time taken to build and initialise scenes, in microseconds
+     */
+    private final Histogram sceneBuild = MetricsRegistry.get().histogram("scene.build");
+    private final Histogram sceneInitialise = MetricsRegistry.get().histogram("scene.initialise");
+
+    /**
+     * Number of the latest puzzle load asked for, so older loads finishing late are ignored
+     */
+    private int puzzleRequest = 0;
+
+    /**
+     * Name scores are saved and submitted under. Never taken from the OS login, since scores go to a public server
+     */
+    private final String playerName = System.getProperty("tetrecs.name", "Anonymous");
+
     /**
      * Create a new GameWindow attached to the given stage with the specified width and height
      * @param stage stage
@@ -57,11 +104,41 @@ public class GameWindow {
         //Setup communicator
         communicator = new Communicator("ws://ofb-labs.soton.ac.uk:9700");
 
+        //Online scores stay fresh for a minute unless -Dtetrecs.hiscores.ttl says otherwise
+        onlineScores = new OnlineScoreCache(communicator, Long.getLong("tetrecs.hiscores.ttl", 60000L));
+
+        //Submit scores in the background, the next score scene refreshes once the server has one
+        scoreOutbox = new ScoreOutbox(communicator, Paths.get("outbox.txt"));
+        scoreOutbox.setOnDelivered(onlineScores::invalidate);
+
+        performanceHud = new PerformanceHud(communicator);
+
+        //Publish metrics over JMX, and to a file with -Dtetrecs.metrics
+        MetricsRegistry metrics = MetricsRegistry.get();
+        metrics.gauge("heap.used", () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+        metrics.gauge("outbox.pending", scoreOutbox::getPendingCount);
+        metrics.gauge("audio.commands", () -> Multimedia.getDispatcher().getCommandCount());
+        new MetricsExporter(metrics).start();
+
         //Go to menu
         startMenu();
 
     }
 
+    /**
+     * Finish a scene load flight recorder event
+     * @param event event started before the phase
+     * @param sceneName scene class name
+     * @param phase build or initialise
+     */
+    private static void commitSceneLoad(SceneLoadEvent event, String sceneName, String phase) {
+        if (event.shouldCommit()) {
+            event.scene = sceneName;
+            event.phase = phase;
+            event.commit();
+        }
+    }
+
     /**
      * Setup the font and any other resources we need
      */
@@ -72,6 +149,9 @@ public class GameWindow {
         Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-Regular.ttf"),32);
         Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-Bold.ttf"),32);
         Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-ExtraBold.ttf"),32);
+
+        //Decode the sound effects and music once, in the background
+        Multimedia.preload();
     }
 
     /**
@@ -81,15 +161,41 @@ public class GameWindow {
         loadScene(new MenuScene(this));
     }
 
+    /**
+     * Display the scores
+     */
     public void startScore() {
         loadScene(new ScoreScene(this));
     }
 
+    /**
+     * Display the scores after a game, with the rank of the final score
+     * @param finalScore score of the finished game
+     */
+    public void startScore(int finalScore) {
+        loadScene(new ScoreScene(this, finalScore));
+    }
+
     /**
      * Display the single player challenge
      */
     public void startChallenge() { loadScene(new ChallengeScene(this)); }
 
+    /**
+     * Display a puzzle once it has been loaded in the background. Only the latest puzzle asked for is shown
+     * @param index number of the puzzle
+     */
+    public void startPuzzle(int index) {
+        int request = ++puzzleRequest;
+        PuzzleLibrary.load(index).whenComplete((puzzle, e) -> Platform.runLater(() -> {
+            if (e != null) {
+                logger.error("Fail to load puzzle {}, {}", index, e.toString());
+            } else if (request == puzzleRequest) {
+                loadScene(new PuzzleScene(this, index, puzzle));
+            }
+        }));
+    }
+
     public void howToPlay(){ loadScene(new InstructionsScene(this));}
 
     public void multiPlayer() { loadScene(new LobbyScene(this));}
@@ -113,13 +219,26 @@ public class GameWindow {
         cleanup();
 
         //Create the new scene and set it up
+        String sceneName = newScene.getClass().getSimpleName();
+        SceneLoadEvent buildEvent = new SceneLoadEvent();
+        buildEvent.begin();
+        long start = System.nanoTime();
         newScene.build();
         currentScene = newScene;
         scene = newScene.setScene();
         stage.setScene(scene);
+        sceneBuild.record((System.nanoTime() - start) / 1000);
+        commitSceneLoad(buildEvent, sceneName, "build");
 
         //Initialise the scene when ready
-        Platform.runLater(() -> currentScene.initialise());
+        Platform.runLater(() -> {
+            SceneLoadEvent initialiseEvent = new SceneLoadEvent();
+            initialiseEvent.begin();
+            long initialiseStart = System.nanoTime();
+            currentScene.initialise();
+            sceneInitialise.record((System.nanoTime() - initialiseStart) / 1000);
+            commitSceneLoad(initialiseEvent, sceneName, "initialise");
+        });
     }
 
     /**
@@ -135,7 +254,12 @@ public class GameWindow {
      */
     public void cleanup() {
         logger.info("Clearing up previous scene");
+        if (currentScene != null) {
+            currentScene.cleanup();
+        }
         communicator.clearListeners();
+        scoreRepository.setOnScoresUpdated(null);
+        AnimationScheduler.get().clear();
     }
 
     /**
@@ -169,4 +293,44 @@ public class GameWindow {
     public Communicator getCommunicator() {
         return communicator;
     }
+
+    /**
+     * Get the online scores
+     * @return online score cache
+     */
+    public OnlineScoreCache getOnlineScores() {
+        return onlineScores;
+    }
+
+    /**
+     * Get the score outbox
+     * @return score outbox
+     */
+    public ScoreOutbox getScoreOutbox() {
+        return scoreOutbox;
+    }
+
+    /**
+     * Get the name scores are saved under, set with -Dtetrecs.name
+     * @return player name
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * Get the performance HUD
+     * @return performance HUD
+     */
+    public PerformanceHud getPerformanceHud() {
+        return performanceHud;
+    }
+
+    /**
+     * Get the local scores
+     * @return score repository
+     */
+    public ScoreRepository getScoreRepository() {
+        return scoreRepository;
+    }
 }
@@ -0,0 +1,279 @@
+package uk.ac.soton.comp1206.ui;
+
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.EngineTimings;
+import uk.ac.soton.comp1206.network.Communicator;
+
+/**
+ * Overlay showing frame rate, layout times, repaints, animations, engine timings, network queues and heap, toggled with
+ * F3.
+ *
+ * While hidden the HUD has no listeners attached, the only cost is the repaint counter. While shown it listens to the
+ * scene pulse, and each pulse only does arithmetic on primitive fields. The text and histogram are rebuilt twice a
+ * second into a reused StringBuilder.
+ */
+public class PerformanceHud extends VBox {
+
+  private static final Logger logger = LogManager.getLogger(PerformanceHud.class);
+
+  /**
+   * How often the text is rebuilt, in nanoseconds
+   */
+  private static final long UPDATE_INTERVAL = 500_000_000L;
+
+  /**
+   * Upper bounds of the layout histogram buckets in microseconds, the last bucket takes everything longer
+   */
+  private static final long[] BUCKET_LIMITS = {500, 1000, 2000, 4000, 8000, 16000, 33000};
+
+  /**
+   * Labels for the histogram buckets
+   */
+  private static final String BUCKET_LABELS = "<.5 <1 <2 <4 <8 <16 <33 33+";
+
+  private static final double HISTOGRAM_WIDTH = 200;
+  private static final double HISTOGRAM_HEIGHT = 40;
+  private static final Color BAR = Color.LIMEGREEN;
+  private static final Color SLOW_BAR = Color.ORANGERED;
+
+  /**
+   * Blocks drawn since the counter was last read, bumped by the board renderers
+   */
+  private static int repaints = 0;
+
+  private final Communicator communicator;
+  private final Label text = new Label();
+  private final Canvas histogramCanvas = new Canvas(HISTOGRAM_WIDTH, HISTOGRAM_HEIGHT);
+  private final StringBuilder builder = new StringBuilder(256);
+  private final int[] histogram = new int[BUCKET_LIMITS.length + 1];
+
+  private final Runnable preLayout = this::layoutStarted;
+  private final Runnable postLayout = this::layoutEnded;
+
+  private Scene scene;
+  private GamePane pane;
+  private boolean showing = false;
+
+  private long layoutStart;
+  private long lastUpdate;
+  private int frames;
+  private long layoutTotal;
+  private long layoutMax;
+
+  /**
+   * Create the HUD
+   * @param communicator communicator to show the queues of
+   */
+  public PerformanceHud(Communicator communicator) {
+    this.communicator = communicator;
+
+    setMouseTransparent(true);
+    setMaxSize(Region.USE_PREF_SIZE, Region.USE_PREF_SIZE);
+    setPadding(new Insets(6));
+    setSpacing(4);
+    setBackground(new Background(new BackgroundFill(Color.color(0, 0, 0, 0.65), null, null)));
+
+    text.setFont(Font.font("Monospaced", 11));
+    text.setTextFill(Color.WHITE);
+    Label bucketLabels = new Label(BUCKET_LABELS);
+    bucketLabels.setFont(Font.font("Monospaced", 9));
+    bucketLabels.setTextFill(Color.LIGHTGRAY);
+    getChildren().addAll(text, histogramCanvas, bucketLabels);
+  }
+
+  /**
+   * Count a block being drawn
+   */
+  public static void countRepaint() {
+    repaints++;
+  }
+
+  /**
+   * Move the HUD onto a newly shown scene
+   * @param scene scene
+   * @param pane root pane of the scene
+   */
+  public void attach(Scene scene, GamePane pane) {
+    boolean wasShowing = showing;
+    if (showing) {
+      hide();
+    }
+    this.scene = scene;
+    this.pane = pane;
+    if (wasShowing) {
+      show();
+    }
+  }
+
+  /**
+   * Show or hide the HUD
+   */
+  public void toggle() {
+    if (showing) {
+      hide();
+    } else {
+      show();
+    }
+  }
+
+  /**
+   * Whether the HUD is shown
+   * @return showing
+   */
+  public boolean isShowing() {
+    return showing;
+  }
+
+  /**
+   * Add the HUD to the current scene and start listening to pulses
+   */
+  private void show() {
+    if (scene == null || pane == null) {
+      return;
+    }
+    logger.info("Showing performance HUD");
+    resetWindow(System.nanoTime());
+    pane.getChildren().add(this);
+    scene.addPreLayoutPulseListener(preLayout);
+    scene.addPostLayoutPulseListener(postLayout);
+    showing = true;
+  }
+
+  /**
+   * Remove the HUD and its pulse listeners
+   */
+  private void hide() {
+    pane.getChildren().remove(this);
+    scene.removePreLayoutPulseListener(preLayout);
+    scene.removePostLayoutPulseListener(postLayout);
+    showing = false;
+  }
+
+  /**
+   * Note when the layout pass of the scene pulse started
+   */
+  private void layoutStarted() {
+    layoutStart = System.nanoTime();
+  }
+
+  /**
+   * Record how long the layout pass took and refresh the text when it is due. JavaFX only has listeners either side of
+   * layout, so CSS and rendering are not in this time
+   */
+  private void layoutEnded() {
+    long now = System.nanoTime();
+    long duration = now - layoutStart;
+    frames++;
+    layoutTotal += duration;
+    layoutMax = Math.max(layoutMax, duration);
+    histogram[bucket(duration / 1000)]++;
+
+    if (now - lastUpdate >= UPDATE_INTERVAL) {
+      update(now);
+    }
+  }
+
+  /**
+   * Rebuild the text and histogram
+   * @param now current time
+   */
+  private void update(long now) {
+    long elapsed = now - lastUpdate;
+    Runtime runtime = Runtime.getRuntime();
+    long usedHeap = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+
+    builder.setLength(0);
+    builder.append("FPS ");
+    appendTenths(builder, frames * 10_000_000_000L / Math.max(elapsed, 1));
+    builder.append("  layout avg ");
+    appendTenths(builder, layoutTotal / Math.max(frames, 1) / 100_000);
+    builder.append("ms max ");
+    appendTenths(builder, layoutMax / 100_000);
+    builder.append("ms\n");
+
+    builder.append("repaints/frame ");
+    appendTenths(builder, repaints * 10L / Math.max(frames, 1));
+    builder.append("  animations ").append(AnimationScheduler.get().getActiveCount()).append('\n');
+
+    builder.append("place ").append(EngineTimings.getAverageNanos(EngineTimings.Stage.PLACEMENT) / 1000);
+    builder.append("us  clear ").append(EngineTimings.getAverageNanos(EngineTimings.Stage.LINE_CLEAR) / 1000);
+    builder.append("us  score ").append(EngineTimings.getAverageNanos(EngineTimings.Stage.SCORE) / 1000);
+    builder.append("us\n");
+
+    builder.append("net send ").append(communicator.getSendQueueDepth());
+    builder.append("  recv ").append(communicator.getReceiveQueueDepth()).append('\n');
+
+    builder.append("heap ").append(usedHeap).append(" / ").append(runtime.maxMemory() >> 20).append(" MB");
+    text.setText(builder.toString());
+
+    drawHistogram();
+    resetWindow(now);
+  }
+
+  /**
+   * Draw the layout histogram, then halve it so it follows recent pulses
+   */
+  private void drawHistogram() {
+    GraphicsContext gc = histogramCanvas.getGraphicsContext2D();
+    gc.clearRect(0, 0, HISTOGRAM_WIDTH, HISTOGRAM_HEIGHT);
+    int max = 1;
+    for (int count : histogram) {
+      max = Math.max(max, count);
+    }
+    double barWidth = HISTOGRAM_WIDTH / histogram.length;
+    for (int i = 0; i < histogram.length; i++) {
+      double barHeight = HISTOGRAM_HEIGHT * histogram[i] / max;
+      //Layouts over a 60Hz frame are drawn in red
+      gc.setFill(i >= 6 ? SLOW_BAR : BAR);
+      gc.fillRect(i * barWidth + 1, HISTOGRAM_HEIGHT - barHeight, barWidth - 2, barHeight);
+      histogram[i] >>= 1;
+    }
+  }
+
+  /**
+   * Start a new measuring window
+   * @param now current time
+   */
+  private void resetWindow(long now) {
+    lastUpdate = now;
+    frames = 0;
+    layoutTotal = 0;
+    layoutMax = 0;
+    repaints = 0;
+  }
+
+  /**
+   * Find the histogram bucket for a layout pass
+   * @param micros layout duration in microseconds
+   * @return bucket index
+   */
+  private static int bucket(long micros) {
+    for (int i = 0; i < BUCKET_LIMITS.length; i++) {
+      if (micros < BUCKET_LIMITS[i]) {
+        return i;
+      }
+    }
+    return BUCKET_LIMITS.length;
+  }
+
+  /**
+   * Append a value held in tenths as a decimal, without going through String.format
+   * @param builder builder
+   * @param tenths value times ten
+   */
+  private static void appendTenths(StringBuilder builder, long tenths) {
+    builder.append(tenths / 10).append('.').append(tenths % 10);
+  }
+}
@@ -0,0 +1,136 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks, saves the results as CSV and compares them with a recorded baseline.
+ *
+ * Usage: BenchmarkRunner [--include regex] [--out results.csv] [--baseline baseline.csv] [--threshold percent]
+ *
+ * Every benchmark that is slower than the baseline by more than the threshold (10% by default) is listed, and the
+ * runner exits with status 1 so a script can catch regressions. Record a baseline by running once and keeping the
+ * output file.
+ */
+public class BenchmarkRunner {
+
+  private static final Logger logger = LogManager.getLogger(BenchmarkRunner.class);
+
+  /**
+   * Run the benchmarks
+   * @param args command line arguments
+   * @throws Exception if JMH fails
+   */
+  public static void main(String[] args) throws Exception {
+    String include = BenchmarkRunner.class.getPackageName();
+    Path out = Paths.get("bench-results.csv");
+    Path baseline = null;
+    double threshold = 10;
+
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      switch (args[i]) {
+        case "--include" -> include = args[i + 1];
+        case "--out" -> out = Paths.get(args[i + 1]);
+        case "--baseline" -> baseline = Paths.get(args[i + 1]);
+        case "--threshold" -> threshold = Double.parseDouble(args[i + 1]);
+        default -> logger.error("Unknown option: {}", args[i]);
+      }
+    }
+
+    ChainedOptionsBuilder options = new OptionsBuilder()
+        .include(include)
+        .resultFormat(ResultFormatType.CSV)
+        .result(out.toString());
+    new Runner(options.build()).run();
+
+    if (baseline != null && compare(read(baseline), read(out), threshold) > 0) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Print how each benchmark changed from the baseline
+   * @param baseline baseline scores
+   * @param current new scores
+   * @param threshold percentage slowdown counted as a regression
+   * @return number of regressions
+   */
+  static int compare(Map<String, Double> baseline, Map<String, Double> current, double threshold) {
+    int regressions = 0;
+    for (Map.Entry<String, Double> entry : current.entrySet()) {
+      Double before = baseline.get(entry.getKey());
+      if (before == null || before == 0) {
+        System.out.printf("%-90s %12.3f  (new)%n", entry.getKey(), entry.getValue());
+        continue;
+      }
+      //Scores are average times, so higher is slower
+      double change = (entry.getValue() - before) / before * 100;
+      boolean regressed = change > threshold;
+      if (regressed) {
+        regressions++;
+      }
+      System.out.printf("%-90s %12.3f -> %12.3f  %+7.1f%%%s%n", entry.getKey(), before, entry.getValue(), change,
+          regressed ? "  REGRESSION" : "");
+    }
+    System.out.printf("%d regression(s) over %.1f%%%n", regressions, threshold);
+    return regressions;
+  }
+
+  /**
+   * Read a JMH CSV result file
+   * @param file file
+   * @return score for each benchmark and set of parameters
+   * @throws IOException if the file cannot be read
+   */
+  static Map<String, Double> read(Path file) throws IOException {
+    Map<String, Double> scores = new LinkedHashMap<>();
+    List<String> lines = Files.readAllLines(file);
+    if (lines.isEmpty()) {
+      return scores;
+    }
+    String[] header = split(lines.get(0));
+    for (String line : lines.subList(1, lines.size())) {
+      String[] columns = split(line);
+      if (columns.length != header.length) {
+        continue;
+      }
+      //Name, then each parameter, make up the key
+      StringBuilder key = new StringBuilder(columns[0]);
+      double score = 0;
+      for (int i = 1; i < header.length; i++) {
+        if (header[i].equals("Score")) {
+          score = Double.parseDouble(columns[i]);
+        } else if (header[i].startsWith("Param: ")) {
+          key.append(' ').append(header[i].substring(7)).append('=').append(columns[i]);
+        }
+      }
+      scores.put(key.toString(), score);
+    }
+    return scores;
+  }
+
+  /**
+   * Split a CSV line written by JMH, which quotes text columns and never puts commas inside them
+   * @param line line
+   * @return columns without quotes
+   */
+  private static String[] split(String line) {
+    String[] columns = line.split(",");
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = columns[i].replace("\"", "");
+    }
+    return columns;
+  }
+}
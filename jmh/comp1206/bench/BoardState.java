@@ -0,0 +1,113 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.Random;
+
+/**
+ * A board of a given size filled to a given density, shared by the engine benchmarks.
+ *
+ * The fill is seeded so every run, and every machine, benchmarks the same boards.
+ */
+@State(Scope.Thread)
+public class BoardState {
+
+  /**
+   * Width and height of the board
+   */
+  @Param({"5", "8", "12"})
+  public int size;
+
+  /**
+   * Fraction of cells filled
+   */
+  @Param({"0.2", "0.5", "0.8"})
+  public double density;
+
+  /**
+   * Board to run against
+   */
+  public Grid grid;
+
+  /**
+   * Values of every cell, indexed y * size + x, to put the board back after a benchmark changes it
+   */
+  public int[] cells;
+
+  /**
+   * One of every piece
+   */
+  public GamePiece[] pieces;
+
+  /**
+   * Counter used to step through pieces and positions
+   */
+  public int step;
+
+  /**
+   * Fill the board
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(1206);
+    grid = new Grid(size, size);
+    cells = new int[size * size];
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] = random.nextDouble() < density ? 1 + random.nextInt(GamePiece.PIECES) : 0;
+    }
+    restore();
+
+    pieces = new GamePiece[GamePiece.PIECES];
+    for (int i = 0; i < pieces.length; i++) {
+      pieces[i] = GamePiece.createPiece(i);
+    }
+  }
+
+  /**
+   * Put the board back to how it was filled
+   */
+  public void restore() {
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        grid.set(x, y, cells[y * size + x]);
+      }
+    }
+  }
+
+  /**
+   * Move on to the next piece and position
+   */
+  public void next() {
+    step++;
+  }
+
+  /**
+   * Get the piece for this step
+   * @return piece
+   */
+  public GamePiece piece() {
+    return pieces[step % pieces.length];
+  }
+
+  /**
+   * Get the column for this step
+   * @return column
+   */
+  public int x() {
+    return (step / pieces.length) % size;
+  }
+
+  /**
+   * Get the row for this step
+   * @return row
+   */
+  public int y() {
+    return (step / (pieces.length * size)) % size;
+  }
+}
@@ -0,0 +1,118 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.component.CoordinateSet;
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing coordinates into sets: boxed GameBlockCoordinates in a HashSet against packed ints in a CoordinateSet
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoordinateBenchmark {
+
+  /**
+   * Width and height of the board
+   */
+  @Param({"5", "8", "12"})
+  public int size;
+
+  private Set<GameBlockCoordinate> filled;
+  private CoordinateSet packedFilled;
+  private CoordinateSet packedCleared;
+
+  /**
+   * Fill a set with every other cell
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    filled = new HashSet<>();
+    packedFilled = new CoordinateSet(size * size);
+    for (int i = 0; i < size * size; i += 2) {
+      filled.add(new GameBlockCoordinate(i % size, i / size));
+      packedFilled.add(i % size, i / size);
+    }
+    packedCleared = new CoordinateSet(size * 2);
+  }
+
+  /**
+   * Add every cell of a row and a column to a new set, like clearing a cross
+   * @return set size
+   */
+  @Benchmark
+  public int addCross() {
+    Set<GameBlockCoordinate> cleared = new HashSet<>();
+    for (int i = 0; i < size; i++) {
+      cleared.add(new GameBlockCoordinate(i, 0));
+      cleared.add(new GameBlockCoordinate(0, i));
+    }
+    return cleared.size();
+  }
+
+  /**
+   * Look up every cell of the board
+   * @return cells found
+   */
+  @Benchmark
+  public int contains() {
+    int found = 0;
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        if (filled.contains(new GameBlockCoordinate(x, y))) {
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Add every cell of a row and a column to a reused packed set
+   * @return set size
+   */
+  @Benchmark
+  public int addCrossPacked() {
+    packedCleared.clear();
+    for (int i = 0; i < size; i++) {
+      packedCleared.add(i, 0);
+      packedCleared.add(0, i);
+    }
+    return packedCleared.size();
+  }
+
+  /**
+   * Look up every cell of the board in the packed set
+   * @return cells found
+   */
+  @Benchmark
+  public int containsPacked() {
+    int found = 0;
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        if (packedFilled.contains(x, y)) {
+          found++;
+        }
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,162 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.LineClearResult;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line clearing and scoring after a piece is played.
+ *
+ * Clearing empties the lines it finds, so each benchmark refills the board first. The restore benchmark measures the
+ * refill on its own to subtract.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+  /**
+   * Width and height of the board
+   */
+  @Param({"5", "8", "12"})
+  public int size;
+
+  /**
+   * Number of full rows and columns on the board
+   */
+  @Param({"0", "1", "3"})
+  public int fullLines;
+
+  private Game game;
+  private int[] cells;
+  private LineClearResult result;
+  private LineClearResult scored;
+
+  /**
+   * Build a board with the requested number of full lines, split between rows and columns, and random filler elsewhere
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    game = new Game(size, size, null);
+    result = new LineClearResult(size, size);
+    Random random = new Random(1206);
+    cells = new int[size * size];
+    for (int i = 0; i < cells.length; i++) {
+      //Leave a gap in every line so only the chosen ones are full
+      cells[i] = (i % size == i / size) ? 0 : random.nextInt(2) * (1 + random.nextInt(15));
+    }
+    for (int line = 0; line < fullLines; line++) {
+      int index = line / 2;
+      for (int i = 0; i < size; i++) {
+        if (line % 2 == 0) {
+          cells[index * size + i] = 1;
+        } else {
+          cells[i * size + index] = 1;
+        }
+      }
+    }
+
+    //A result with the full lines already marked, for scoring on its own
+    scored = new LineClearResult(size, size);
+    for (int line = 0; line < fullLines; line++) {
+      if (line % 2 == 0) {
+        scored.markRow(line / 2);
+      } else {
+        scored.markColumn(line / 2);
+      }
+    }
+  }
+
+  /**
+   * Put the board back
+   * @return value of the first cell
+   */
+  @Benchmark
+  public int restore() {
+    refill();
+    return game.getGrid().get(0, 0);
+  }
+
+  /**
+   * Find and clear lines, then score them
+   * @return score
+   */
+  @Benchmark
+  public int afterPiece() {
+    refill();
+    game.afterPiece();
+    return game.getScores();
+  }
+
+  /**
+   * Find full rows
+   * @return rows found
+   */
+  @Benchmark
+  public int findFullRows() {
+    result.reset();
+    return game.findFullRows(result);
+  }
+
+  /**
+   * Find full columns
+   * @return columns found
+   */
+  @Benchmark
+  public int findFullColumns() {
+    result.reset();
+    return game.findFullColumns(result);
+  }
+
+  /**
+   * Find and clear every full line
+   * @return cells cleared
+   */
+  @Benchmark
+  public int clearLines() {
+    refill();
+    result.reset();
+    game.findFullRows(result);
+    game.findFullColumns(result);
+    game.clearLines(result);
+    return result.getBlockCount();
+  }
+
+  /**
+   * Score a clear without touching the board
+   * @return score
+   */
+  @Benchmark
+  public int score() {
+    game.score(scored);
+    return game.getScores();
+  }
+
+  /**
+   * Copy the saved cells back onto the board
+   */
+  private void refill() {
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        game.getGrid().set(x, y, cells[y * size + x]);
+      }
+    }
+  }
+}
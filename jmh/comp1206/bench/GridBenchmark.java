@@ -0,0 +1,60 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Placement checks and placing pieces on the grid
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmark {
+
+  /**
+   * Check one piece at one position, stepping through every piece and position
+   * @param board board
+   * @return whether the piece fits
+   */
+  @Benchmark
+  public boolean canPlayPiece(BoardState board) {
+    board.next();
+    return board.grid.canPlayPiece(board.piece(), board.x(), board.y());
+  }
+
+  /**
+   * Play a piece and put the board back, compare with restore to see the cost of playing alone
+   * @param board board
+   * @return value of the centre cell
+   */
+  @Benchmark
+  public int playPiece(BoardState board) {
+    board.next();
+    GamePiece piece = board.piece();
+    board.grid.playPiece(piece, board.x(), board.y());
+    int centre = board.grid.get(board.x(), board.y());
+    board.restore();
+    return centre;
+  }
+
+  /**
+   * Put the board back, the baseline for playPiece
+   * @param board board
+   * @return value of the first cell
+   */
+  @Benchmark
+  public int restore(BoardState board) {
+    board.restore();
+    return board.grid.get(0, 0);
+  }
+}
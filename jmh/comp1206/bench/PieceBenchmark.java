@@ -0,0 +1,61 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceQueue;
+import uk.ac.soton.comp1206.game.ShuffleBagGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating and rotating pieces
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PieceBenchmark {
+
+  private final GamePiece piece = GamePiece.createPiece(5);
+  private int next;
+  private final PieceQueue queue = new PieceQueue(new ShuffleBagGenerator(1206, 1), 3);
+
+  /**
+   * Create each piece in turn
+   * @return piece
+   */
+  @Benchmark
+  public GamePiece createPiece() {
+    next = (next + 1) % GamePiece.PIECES;
+    return GamePiece.createPiece(next);
+  }
+
+  /**
+   * Rotate a piece a quarter turn
+   * @return blocks after the turn
+   */
+  @Benchmark
+  public int[][] rotate() {
+    piece.rotate();
+    return piece.getBlocks();
+  }
+
+  /**
+   * Take a piece from the look-ahead queue, including the batched refills
+   * @return piece
+   */
+  @Benchmark
+  public GamePiece queueNext() {
+    return queue.next();
+  }
+}
@@ -0,0 +1,92 @@
+package uk.ac.soton.comp1206.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceMasks;
+import uk.ac.soton.comp1206.game.PlacementBatch;
+import uk.ac.soton.comp1206.game.PlacementEvaluator;
+import uk.ac.soton.comp1206.game.ScalarPlacementEvaluator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating every placement of every piece in every rotation on a board at once, scalar against the Vector API
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class PlacementBenchmark {
+
+  /**
+   * Every candidate for one board and the evaluator to run
+   */
+  @State(Scope.Thread)
+  public static class Candidates {
+
+    /**
+     * Which evaluator to measure
+     */
+    @Param({"scalar", "vector"})
+    public String evaluator;
+
+    PlacementEvaluator placements;
+    PlacementBatch batch;
+    int[] rows;
+
+    /**
+     * Build the batch
+     * @param board board
+     */
+    @Setup(Level.Trial)
+    public void setup(BoardState board) {
+      if (evaluator.equals("scalar")) {
+        placements = new ScalarPlacementEvaluator();
+      } else {
+        placements = PlacementEvaluator.create();
+        if (placements instanceof ScalarPlacementEvaluator) {
+          throw new IllegalStateException("Vector API not available, run with --add-modules jdk.incubator.vector");
+        }
+      }
+
+      rows = new int[board.size];
+      board.grid.copyRows(rows);
+
+      int anchors = board.size + 2;
+      batch = new PlacementBatch(GamePiece.PIECES * 4 * anchors * anchors);
+      for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+        for (int rotation = 0; rotation < 4; rotation++) {
+          for (int y = -1; y <= board.size; y++) {
+            for (int x = -1; x <= board.size; x++) {
+              batch.add(PieceMasks.mask(piece, rotation), x, y);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Evaluate the whole batch
+   * @param board board
+   * @param candidates candidates
+   * @return lines completed by the last candidate
+   */
+  @Benchmark
+  public int evaluate(BoardState board, Candidates candidates) {
+    candidates.placements.evaluate(candidates.rows, board.size, board.size, candidates.batch);
+    return candidates.batch.getLines(candidates.batch.size() - 1);
+  }
+}
@@ -0,0 +1,78 @@
+package uk.ac.soton.comp1206.bench;
+
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.soton.comp1206.network.OnlineScoreCache;
+import uk.ac.soton.comp1206.scene.LobbyScene;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the payloads of HISCORES and CHANNELS messages
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolBenchmark {
+
+  /**
+   * Number of scores or channels in the payload
+   */
+  @Param({"10", "100", "1000"})
+  public int entries;
+
+  private String scores;
+  private String channels;
+
+  /**
+   * Build the payloads
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    StringBuilder scoreBuilder = new StringBuilder();
+    StringBuilder channelBuilder = new StringBuilder();
+    for (int i = 0; i < entries; i++) {
+      if (i > 0) {
+        scoreBuilder.append('\n');
+        channelBuilder.append(',');
+      }
+      scoreBuilder.append("player").append(i).append(':').append(entries * 100 - i);
+      channelBuilder.append("channel").append(i);
+    }
+    scores = scoreBuilder.toString();
+    channels = channelBuilder.toString();
+  }
+
+  /**
+   * Parse a HISCORES payload
+   * @return scores
+   */
+  @Benchmark
+  public List<Pair<String, Integer>> hiscores() {
+    return OnlineScoreCache.parse(scores);
+  }
+
+  /**
+   * Parse a CHANNELS payload
+   * @return channel names
+   */
+  @Benchmark
+  public List<String> channels() {
+    return LobbyScene.parseChannels(channels);
+  }
+}
@@ -0,0 +1,263 @@
+package uk.ac.soton.comp1206.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the incremental features against a brute-force recompute of the whole board, after every change and after
+ * restore
+ */
+class FeatureExtractorTest {
+
+  @Test
+  void changesMatchRecompute() {
+    SplittableRandom random = new SplittableRandom(1206);
+    for (int size = 3; size <= 10; size++) {
+      FeatureExtractor features = new FeatureExtractor(size, size + 1);
+      int[] board = new int[size + 1];
+      check(features, board, size, size + 1);
+      for (int step = 0; step < 400; step++) {
+        randomStep(random, features, board, size, size + 1);
+        check(features, board, size, size + 1);
+      }
+    }
+  }
+
+  @Test
+  void restoreUndoesChanges() {
+    SplittableRandom random = new SplittableRandom(1206);
+    for (int size = 3; size <= 10; size++) {
+      FeatureExtractor features = new FeatureExtractor(size, size);
+      int[] board = new int[size];
+      for (int round = 0; round < 50; round++) {
+        randomStep(random, features, board, size, size);
+        int[] outer = board.clone();
+        int outerSnapshot = features.snapshot();
+        for (int step = random.nextInt(10); step > 0; step--) {
+          randomStep(random, features, board, size, size);
+        }
+        int[] inner = board.clone();
+        int innerSnapshot = features.snapshot();
+        for (int step = random.nextInt(10); step > 0; step--) {
+          randomStep(random, features, board, size, size);
+        }
+        //Nothing is read between the steps, so cells marked for a hole recheck pile up across the restores
+        features.restore(innerSnapshot);
+        check(features, inner, size, size);
+        for (int step = random.nextInt(10); step > 0; step--) {
+          randomStep(random, features, inner, size, size);
+        }
+        features.restore(outerSnapshot);
+        check(features, outer, size, size);
+        board = outer;
+      }
+    }
+  }
+
+  @Test
+  void followsGrid() {
+    SplittableRandom random = new SplittableRandom(1206);
+    Grid grid = new Grid(6, 5);
+    FeatureExtractor features = new FeatureExtractor(6, 5);
+    grid.set(2, 2, 1);
+    features.attach(grid);
+    for (int step = 0; step < 300; step++) {
+      GamePiece piece = GamePiece.createPiece(random.nextInt(GamePiece.PIECES), random.nextInt(4));
+      int x = random.nextInt(8) - 1;
+      int y = random.nextInt(7) - 1;
+      if (grid.canPlayPiece(piece, x, y)) {
+        grid.playPiece(piece, x, y);
+      } else {
+        //Empty a few cells in one batch
+        grid.beginBatch();
+        for (int i = 0; i < 3; i++) {
+          grid.set(random.nextInt(6), random.nextInt(5), 0);
+        }
+        grid.commit();
+      }
+      int[] board = new int[5];
+      grid.copyRows(board);
+      check(features, board, 6, 5);
+      assertEquals(grid.getHash(), features.getHash(), "hash against grid");
+    }
+  }
+
+  /**
+   * Make one random change to the extractor and the same change to the plain board
+   */
+  private static void randomStep(SplittableRandom random, FeatureExtractor features, int[] board, int cols, int rows) {
+    int choice = random.nextInt(3);
+    if (choice == 0) {
+      int x = random.nextInt(cols);
+      int y = random.nextInt(rows);
+      boolean fill = random.nextBoolean();
+      features.setCell(x, y, fill);
+      board[y] = fill ? board[y] | 1 << x : board[y] & ~(1 << x);
+      return;
+    }
+    int mask = PieceMasks.mask(random.nextInt(GamePiece.PIECES), random.nextInt(4));
+    int placeX = random.nextInt(cols + 2) - 1;
+    int placeY = random.nextInt(rows + 2) - 1;
+    boolean fits = fits(board, cols, rows, mask, placeX, placeY);
+    assertEquals(fits, features.fits(mask, placeX, placeY), "fits " + mask + " at " + placeX + "," + placeY);
+    if (!fits) {
+      return;
+    }
+    features.place(mask, placeX, placeY);
+    for (int row = 0; row < PieceMasks.SIZE; row++) {
+      for (int column = 0; column < PieceMasks.SIZE; column++) {
+        if ((PieceMasks.row(mask, row) >> column & 1) != 0) {
+          board[placeY - 1 + row] |= 1 << (placeX - 1 + column);
+        }
+      }
+    }
+    if (choice == 2) {
+      assertEquals(clearFullLines(board, cols, rows), features.clearFullLines(), "lines cleared");
+    }
+  }
+
+  /**
+   * Compare every feature with the same feature worked out from the whole board
+   */
+  private static void check(FeatureExtractor features, int[] board, int cols, int rows) {
+    int filled = 0;
+    int nearLines = 0;
+    int fullLines = 0;
+    int holes = 0;
+    for (int y = 0; y < rows; y++) {
+      int rowFill = Integer.bitCount(board[y]);
+      assertEquals(rowFill, features.getRowFill(y), "fill of row " + y);
+      filled += rowFill;
+      nearLines += rowFill == cols - 1 ? 1 : 0;
+      fullLines += rowFill == cols ? 1 : 0;
+    }
+    for (int x = 0; x < cols; x++) {
+      int columnFill = 0;
+      for (int y = 0; y < rows; y++) {
+        columnFill += board[y] >> x & 1;
+      }
+      assertEquals(columnFill, features.getColumnFill(x), "fill of column " + x);
+      nearLines += columnFill == rows - 1 ? 1 : 0;
+      fullLines += columnFill == rows ? 1 : 0;
+    }
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        boolean isFilled = (board[y] >> x & 1) != 0;
+        boolean hole = !isFilled && !coverable(board, cols, rows, x, y);
+        assertEquals(isFilled, features.isFilled(x, y), "filled " + x + "," + y);
+        assertEquals(hole, features.isHole(x, y), "hole " + x + "," + y);
+        holes += hole ? 1 : 0;
+      }
+    }
+    assertEquals(filled, features.getFilled(), "filled");
+    assertEquals(nearLines, features.getNearCompleteLines(), "near complete lines");
+    assertEquals(fullLines, features.getFullLines(), "full lines");
+    assertEquals(holes, features.getHoles(), "holes");
+    assertEquals(largestRegion(board, cols, rows), features.getLargestEmptyRegion(), "largest empty region");
+    assertEquals(Zobrist.board(board, rows), features.getHash(), "hash");
+  }
+
+  /**
+   * Check if a piece of more than one block fits anywhere covering a cell
+   */
+  private static boolean coverable(int[] board, int cols, int rows, int x, int y) {
+    for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+      for (int rotation = 0; rotation < 4; rotation++) {
+        int mask = PieceMasks.mask(piece, rotation);
+        if (Integer.bitCount(mask) < 2) {
+          continue;
+        }
+        for (int row = 0; row < PieceMasks.SIZE; row++) {
+          for (int column = 0; column < PieceMasks.SIZE; column++) {
+            //Anchor the piece so this block lands on the cell
+            int placeX = x + 1 - column;
+            int placeY = y + 1 - row;
+            if ((PieceMasks.row(mask, row) >> column & 1) != 0 && fits(board, cols, rows, mask, placeX, placeY)) {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check a piece lands on empty cells of the board, one block at a time
+   */
+  private static boolean fits(int[] board, int cols, int rows, int mask, int placeX, int placeY) {
+    for (int row = 0; row < PieceMasks.SIZE; row++) {
+      for (int column = 0; column < PieceMasks.SIZE; column++) {
+        if ((PieceMasks.row(mask, row) >> column & 1) == 0) {
+          continue;
+        }
+        int x = placeX - 1 + column;
+        int y = placeY - 1 + row;
+        if (x < 0 || x >= cols || y < 0 || y >= rows || (board[y] >> x & 1) != 0) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Empty every full row and column at once
+   * @return lines cleared
+   */
+  private static int clearFullLines(int[] board, int cols, int rows) {
+    int full = (1 << cols) - 1;
+    int fullColumns = full;
+    int fullRows = 0;
+    for (int y = 0; y < rows; y++) {
+      fullColumns &= board[y];
+      if (board[y] == full) {
+        fullRows |= 1 << y;
+      }
+    }
+    for (int y = 0; y < rows; y++) {
+      board[y] = (fullRows >> y & 1) != 0 ? 0 : board[y] & ~fullColumns;
+    }
+    return Integer.bitCount(fullRows) + Integer.bitCount(fullColumns);
+  }
+
+  /**
+   * Size of the largest group of empty cells joined up, down, left or right
+   */
+  private static int largestRegion(int[] board, int cols, int rows) {
+    boolean[] seen = new boolean[cols * rows];
+    int largest = 0;
+    for (int start = 0; start < cols * rows; start++) {
+      if (seen[start] || (board[start / cols] >> (start % cols) & 1) != 0) {
+        continue;
+      }
+      int[] stack = new int[cols * rows];
+      int top = 0;
+      int size = 0;
+      stack[top++] = start;
+      seen[start] = true;
+      while (top > 0) {
+        int cell = stack[--top];
+        size++;
+        int x = cell % cols;
+        int y = cell / cols;
+        int[][] neighbours = {{x - 1, y}, {x + 1, y}, {x, y - 1}, {x, y + 1}};
+        for (int[] next : neighbours) {
+          if (next[0] < 0 || next[0] >= cols || next[1] < 0 || next[1] >= rows) {
+            continue;
+          }
+          int index = next[1] * cols + next[0];
+          if (!seen[index] && (board[next[1]] >> next[0] & 1) == 0) {
+            seen[index] = true;
+            stack[top++] = index;
+          }
+        }
+      }
+      largest = Math.max(largest, size);
+    }
+    return largest;
+  }
+}
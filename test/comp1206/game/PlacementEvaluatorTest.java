@@ -0,0 +1,115 @@
+package uk.ac.soton.comp1206.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks both placement evaluators against a cell by cell reference, including anchors off the board
+ */
+class PlacementEvaluatorTest {
+
+  /**
+   * How far past the range Grid.fits accepts the anchors go
+   */
+  private static final int MARGIN = 4;
+
+  @Test
+  void scalarMatchesReference() {
+    check(new ScalarPlacementEvaluator());
+  }
+
+  @Test
+  void vectorMatchesReference() {
+    PlacementEvaluator evaluator = PlacementEvaluator.create();
+    assumeTrue(evaluator.getClass().getSimpleName().equals("VectorPlacementEvaluator"),
+        "Needs --add-modules jdk.incubator.vector");
+    check(evaluator);
+  }
+
+  private static void check(PlacementEvaluator evaluator) {
+    SplittableRandom random = new SplittableRandom(1206);
+    for (int size : new int[] {5, 8, 12}) {
+      for (int board = 0; board < 20; board++) {
+        int[] rows = randomBoard(random, size, size, random.nextDouble(0.2, 0.8));
+        PlacementBatch batch = new PlacementBatch(GamePiece.PIECES * 4 * (size + 2 * MARGIN + 2) * (size + 2 * MARGIN + 2));
+        for (int piece = 0; piece < GamePiece.PIECES; piece++) {
+          for (int rotation = 0; rotation < 4; rotation++) {
+            for (int y = -1 - MARGIN; y <= size + MARGIN; y++) {
+              for (int x = -1 - MARGIN; x <= size + MARGIN; x++) {
+                batch.add(PieceMasks.mask(piece, rotation), x, y);
+              }
+            }
+          }
+        }
+        evaluator.evaluate(rows, size, size, batch);
+        for (int i = 0; i < batch.size(); i++) {
+          int[] expected = reference(rows, size, size, batch.masks[i], batch.xs[i], batch.ys[i]);
+          String where = "size " + size + " mask " + batch.masks[i] + " at " + batch.xs[i] + "," + batch.ys[i];
+          assertEquals(expected[0] != 0, batch.isLegal(i), "legal, " + where);
+          assertEquals(expected[1], batch.getLines(i), "lines, " + where);
+          assertEquals(expected[2], batch.getBlocks(i), "blocks, " + where);
+        }
+      }
+    }
+  }
+
+  /**
+   * Fill a board at random, leaving no full lines
+   */
+  private static int[] randomBoard(SplittableRandom random, int cols, int rows, double density) {
+    int[] board = new int[rows];
+    for (int y = 0; y < rows; y++) {
+      for (int x = 0; x < cols; x++) {
+        if (random.nextDouble() < density) {
+          board[y] |= 1 << x;
+        }
+      }
+      board[y] &= ~(1 << random.nextInt(cols));
+    }
+    for (int x = 0; x < cols; x++) {
+      board[random.nextInt(rows)] &= ~(1 << x);
+    }
+    return board;
+  }
+
+  /**
+   * Legal, lines and blocks worked out one cell at a time
+   */
+  private static int[] reference(int[] board, int cols, int rows, int mask, int placeX, int placeY) {
+    int[] after = board.clone();
+    for (int row = 0; row < PieceMasks.SIZE; row++) {
+      for (int column = 0; column < PieceMasks.SIZE; column++) {
+        if ((PieceMasks.row(mask, row) >> column & 1) == 0) {
+          continue;
+        }
+        int x = placeX - 1 + column;
+        int y = placeY - 1 + row;
+        if (x < 0 || x >= cols || y < 0 || y >= rows || (after[y] >> x & 1) != 0) {
+          return new int[] {0, 0, 0};
+        }
+        after[y] |= 1 << x;
+      }
+    }
+    int fullRows = 0;
+    int fullCols = 0;
+    for (int y = 0; y < rows; y++) {
+      if (after[y] == (1 << cols) - 1) {
+        fullRows++;
+      }
+    }
+    for (int x = 0; x < cols; x++) {
+      boolean full = true;
+      for (int y = 0; y < rows; y++) {
+        full &= (after[y] >> x & 1) != 0;
+      }
+      if (full) {
+        fullCols++;
+      }
+    }
+    return new int[] {1, fullRows + fullCols, fullRows * cols + fullCols * rows - fullRows * fullCols};
+  }
+}